@@ -0,0 +1,102 @@
+package world.md2html.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the benchmark input pages. The pages are generated with a fixed seed, so every run
+ * gets the same input.
+ */
+public class BenchmarkPages {
+
+    public enum Size {
+        SMALL(2 * 1024),
+        MEDIUM(64 * 1024),
+        LARGE(4 * 1024 * 1024);
+
+        private final int length;
+
+        Size(int length) {
+            this.length = length;
+        }
+    }
+
+    private static final String[] WORDS = {"markdown", "page", "the", "document", "index",
+            "template", "of", "plugin", "a", "variable", "output", "is", "and", "section",
+            "relative", "path", "for", "metadata", "with", "glob"};
+
+    /**
+     * Returns a Markdown page of about the given size with headings, paragraphs, lists, code
+     * blocks, tables and metadata blocks, like the pages of a real documentation site.
+     */
+    public static String page(Size size) {
+        Random random = new Random(size.length);
+        StringBuilder page = new StringBuilder(size.length + 1024);
+        page.append("<!--VARIABLES {\"title\": \"Benchmark page\", \"SORT_ORDER\": 1}-->\n\n");
+        int section = 0;
+        while (page.length() < size.length) {
+            section++;
+            page.append("## Section ").append(section).append(" <!--index section ")
+                    .append(section).append("-->\n\n");
+            for (int i = 0; i < 3; i++) {
+                paragraph(page, random);
+            }
+            page.append("See <!--page section").append(section % 7)
+                    .append("--> and <!--path pict-->image.png.\n\n");
+            for (int i = 0; i < 4; i++) {
+                page.append("- ");
+                words(page, random, 8);
+                page.append('\n');
+            }
+            page.append("\n````java\npublic class Main {\n    // ");
+            words(page, random, 6);
+            page.append("\n}\n````\n\n| Name | Value |\n|------|-------|\n");
+            for (int i = 0; i < 3; i++) {
+                page.append("| ").append(WORDS[random.nextInt(WORDS.length)]).append(" | ")
+                        .append(random.nextInt(1000)).append(" |\n");
+            }
+            page.append('\n');
+        }
+        return page.toString();
+    }
+
+    /**
+     * Returns a page with metadata blocks nested `depth` levels deep.
+     */
+    public static String nestedMetadataPage(int depth, int blocks) {
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            block.append("<!--replace").append(i).append(" text ");
+        }
+        block.append("innermost");
+        for (int i = 0; i < depth; i++) {
+            block.append(" -->");
+        }
+        StringBuilder page = new StringBuilder();
+        Random random = new Random(depth);
+        for (int i = 0; i < blocks; i++) {
+            paragraph(page, random);
+            page.append(block).append("\n\n");
+        }
+        return page.toString();
+    }
+
+    static void paragraph(StringBuilder page, Random random) {
+        words(page, random, 40 + random.nextInt(40));
+        page.append(".\n\n");
+    }
+
+    static void words(StringBuilder page, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                page.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (random.nextInt(20) == 0) {
+                page.append("**").append(word).append("**");
+            } else {
+                page.append(word);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package world.md2html.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper.MetadataMatchObject;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetadataFinderBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "NESTED"})
+    public String page;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        this.text = "NESTED".equals(this.page) ? BenchmarkPages.nestedMetadataPage(20, 200) :
+                BenchmarkPages.page(BenchmarkPages.Size.valueOf(this.page));
+    }
+
+    @Benchmark
+    public void findMetadata(Blackhole blackhole) {
+        Iterator<MetadataMatchObject> iterator =
+                PageMetadataHandlersWrapper.metadataFinder(this.text);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package world.md2html.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.Utils;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RelativizeBenchmark {
+
+    @Param({"doc/pictures/image.png|doc/reference.html",
+            "styles/default.css|doc/sections/a/b/c/page.html",
+            "index.html|index.html"})
+    public String paths;
+
+    private String resource;
+    private String page;
+
+    @Setup
+    public void setUp() {
+        int separator = this.paths.indexOf('|');
+        this.resource = this.paths.substring(0, separator);
+        this.page = this.paths.substring(separator + 1);
+    }
+
+    @Benchmark
+    public String relativize() throws CheckedIllegalArgumentException {
+        return Utils.relativizeRelativeResource(this.resource, this.page);
+    }
+
+}
@@ -0,0 +1,51 @@
+package world.md2html.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import world.md2html.Md2HtmlRunner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a whole {@link SiteGenerator synthetic site} with the real runner. The site is
+ * generated once into the `target` directory, every build rewrites all the pages. As with the
+ * program itself, the environment variable `MD2HTML_HOME` must be set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SiteBuildBenchmark {
+
+    @Param({"1000"})
+    public int pages;
+
+    private String argumentFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path argumentFile = new SiteGenerator(Paths.get("target", "benchmark-site-" + this.pages))
+                .pages(this.pages).generate();
+        this.argumentFile = argumentFile.toString();
+    }
+
+    @Benchmark
+    public void build() throws Exception {
+        Md2HtmlRunner.main(new String[] {"--argument-file", this.argumentFile, "-f"});
+    }
+
+}
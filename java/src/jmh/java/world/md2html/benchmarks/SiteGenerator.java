@@ -0,0 +1,335 @@
+package world.md2html.benchmarks;
+
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Writes a synthetic site of the configurable size together with its argument file, for the
+ * scale tests and the benchmarks of the whole program. The same parameters always produce the
+ * same site.
+ * <br />
+ * The pages are grouped into chapters, each chapter is a page flow and a directory on its own
+ * `depth`-th level. Every page starts with a `page-variables` block defining the page title,
+ * code and sort order and contains index entries, links to other pages, included snippets and
+ * links to the wrapped code files. All the pages are also put into the page flow `nav`.
+ * <br />
+ * The paths in the argument file are relative to the current directory, so the program must
+ * be run from the same directory as the generator, e.g.:
+ * <pre>
+ * java ... world.md2html.benchmarks.SiteGenerator target/site --pages 10000
+ * java -jar target/md2html-bin.jar --argument-file target/site/md2html_args.json
+ * </pre>
+ */
+public class SiteGenerator {
+
+    public static final String ARGUMENT_FILE = "md2html_args.json";
+
+    private static final int SUBDIRECTORIES = 10;
+
+    private final Path siteDir;
+    private final String prefix;
+    private int pages = 1000;
+    private int depth = 3;
+    private int flowLength = 20;
+    private int indexMarkers = 3;
+    private int includes = 2;
+    private int wrapCodeFiles = 10;
+    private int variableBlocks = 1;
+    private int paragraphs = 5;
+    private long seed = 1;
+
+    public SiteGenerator(Path siteDir) {
+        this.siteDir = siteDir;
+        String prefix = Paths.get("").toAbsolutePath()
+                .relativize(siteDir.toAbsolutePath().normalize()).toString().replace('\\', '/');
+        this.prefix = prefix.isEmpty() ? "" : prefix + "/";
+    }
+
+    public SiteGenerator pages(int pages) {
+        this.pages = Math.max(1, pages);
+        return this;
+    }
+
+    /**
+     * The number of the directory levels the pages are put into, at least 1.
+     */
+    public SiteGenerator depth(int depth) {
+        this.depth = Math.max(1, depth);
+        return this;
+    }
+
+    /**
+     * The number of pages in a chapter page flow.
+     */
+    public SiteGenerator flowLength(int flowLength) {
+        this.flowLength = Math.max(1, flowLength);
+        return this;
+    }
+
+    public SiteGenerator indexMarkers(int indexMarkers) {
+        this.indexMarkers = indexMarkers;
+        return this;
+    }
+
+    /**
+     * The number of the snippets included in every page.
+     */
+    public SiteGenerator includes(int includes) {
+        this.includes = includes;
+        return this;
+    }
+
+    /**
+     * The number of the code files, every page links one of them.
+     */
+    public SiteGenerator wrapCodeFiles(int wrapCodeFiles) {
+        this.wrapCodeFiles = wrapCodeFiles;
+        return this;
+    }
+
+    /**
+     * The number of the `page-variables` blocks in every page, at least 1.
+     */
+    public SiteGenerator variableBlocks(int variableBlocks) {
+        this.variableBlocks = Math.max(1, variableBlocks);
+        return this;
+    }
+
+    public SiteGenerator paragraphs(int paragraphs) {
+        this.paragraphs = paragraphs;
+        return this;
+    }
+
+    public SiteGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes the site and returns the argument file path.
+     */
+    public Path generate() throws IOException {
+        Random random = new Random(this.seed);
+        int snippets = Math.max(1, this.pages / 10);
+        for (int i = 0; i < this.pages; i++) {
+            writePage(i, random, snippets);
+        }
+        if (this.includes > 0) {
+            for (int i = 0; i < snippets; i++) {
+                StringBuilder snippet = new StringBuilder();
+                BenchmarkPages.paragraph(snippet, random);
+                write("snippets/snippet_" + i + ".txt", snippet.toString());
+            }
+        }
+        for (int i = 0; i < this.wrapCodeFiles; i++) {
+            write("code/Example" + i + ".java", "public class Example" + i + " {\n\n" +
+                    "    public static void main(String[] args) {\n" +
+                    "        System.out.println(\"Example " + i + "\");\n    }\n\n}\n");
+        }
+        write("templates/page.html", PAGE_TEMPLATE);
+        write("templates/code.html", CODE_TEMPLATE);
+        write("html/site.css", "body { font-family: sans-serif; }\n");
+
+        ObjectMapper mapper = new ObjectMapper();
+        DefaultPrettyPrinter printer = new DefaultPrettyPrinter()
+                .withObjectIndenter(new DefaultIndenter("  ", "\n"));
+        Path argumentFile = this.siteDir.resolve(ARGUMENT_FILE);
+        mapper.writer(printer).writeValue(argumentFile.toFile(), argumentFile());
+        return argumentFile;
+    }
+
+    private void writePage(int page, Random random, int snippets) throws IOException {
+        int chapter = page / this.flowLength;
+        StringBuilder text = new StringBuilder();
+        text.append("<!--VARIABLES {\"title\": \"Page ").append(page)
+                .append("\", \"code\": \"page_").append(page)
+                .append("\", \"SORT_ORDER\": \"")
+                .append(String.format("%06d", page % this.flowLength)).append("\"}-->\n\n");
+        text.append("# Page ").append(page).append("\n\n");
+        for (int i = 1; i < this.variableBlocks; i++) {
+            text.append("<!--METADATA {\"block\": ").append(i).append("}-->\n");
+        }
+        for (int i = 0; i < this.indexMarkers; i++) {
+            text.append("<!--index [\"term ").append(random.nextInt(this.pages))
+                    .append("\"]-->\n");
+        }
+        for (int i = 0; i < this.paragraphs; i++) {
+            if (i == 1) {
+                int linkedPage = random.nextInt(this.pages);
+                text.append("See also [Page ").append(linkedPage).append("](<!--page page_")
+                        .append(linkedPage).append("-->) and the ")
+                        .append("[site styles](<!--path root-->html/site.css).\n\n");
+            }
+            if (i == 2 && this.wrapCodeFiles > 0) {
+                text.append("The example is [here](<!--wrap_java Example")
+                        .append(page % this.wrapCodeFiles).append(".java-->).\n\n");
+            }
+            if (i < this.includes) {
+                text.append("<!--include_snippet snippet_").append(random.nextInt(snippets))
+                        .append(".txt-->\n\n");
+            }
+            BenchmarkPages.paragraph(text, random);
+        }
+        for (int i = this.paragraphs; i < this.includes; i++) {
+            text.append("<!--include_snippet snippet_").append(random.nextInt(snippets))
+                    .append(".txt-->\n\n");
+        }
+        write("src/" + chapterDirectory(chapter) + "/page_" + page + ".txt", text.toString());
+    }
+
+    /**
+     * Returns the chapter directory relative to the input root. The directories above the
+     * chapters have up to {@value #SUBDIRECTORIES} subdirectories each.
+     */
+    private String chapterDirectory(int chapter) {
+        StringBuilder directory = new StringBuilder();
+        int parent = chapter;
+        for (int level = 1; level < this.depth; level++) {
+            parent /= SUBDIRECTORIES;
+            directory.insert(0, "part_" + (parent % SUBDIRECTORIES) + "/");
+        }
+        return directory.append("chapter_").append(chapter).toString();
+    }
+
+    private ObjectNode argumentFile() {
+        JsonNodeFactory nodes = JsonNodeFactory.instance;
+        ObjectNode root = nodes.objectNode();
+
+        ObjectNode defaults = root.putObject("default");
+        defaults.put("input-root", this.prefix + "src");
+        defaults.put("output-root", this.prefix + "html");
+        defaults.put("template", this.prefix + "templates/page.html");
+        defaults.putArray("link-css").add(this.prefix + "html/site.css");
+        defaults.put("title-from-variable", "title");
+        defaults.put("code-from-variable", "code");
+        defaults.put("sort-by-variable", "SORT_ORDER");
+
+        ArrayNode documents = root.putArray("documents");
+        int chapters = (this.pages + this.flowLength - 1) / this.flowLength;
+        for (int chapter = 0; chapter < chapters; chapter++) {
+            ObjectNode document = documents.addObject();
+            document.put("input-glob", chapterDirectory(chapter) + "/*.txt");
+            document.putArray("page-flows").add("nav").add("chapter_" + chapter);
+        }
+
+        ObjectNode plugins = root.putObject("plugins");
+        ObjectNode pageVariables = plugins.putObject("page-variables");
+        pageVariables.putObject("VARIABLES").put("only-at-page-start", true);
+        pageVariables.putObject("METADATA");
+        plugins.putObject("page-flows");
+        plugins.putObject("page-links").putArray("markers").add("page");
+        ObjectNode relativePaths = plugins.putObject("relative-paths");
+        relativePaths.putArray("markers").add("path");
+        relativePaths.putObject("paths").put("root", this.prefix);
+        plugins.putObject("index").putObject("index")
+                .put("output", "index_page.html")
+                .put("title", "Index")
+                .put("index-cache", this.prefix + "html/index_cache.json")
+                .put("letters", true);
+        if (this.wrapCodeFiles > 0) {
+            plugins.putObject("wrap-code").putObject("wrap_java")
+                    .put("style", "code")
+                    .put("input-root", this.prefix + "code/")
+                    .put("output-root", this.prefix + "html/code/")
+                    .put("template", this.prefix + "templates/code.html");
+        }
+        if (this.includes > 0) {
+            ObjectNode includeFile = plugins.putArray("include-file").addObject();
+            includeFile.putArray("markers").add("include_snippet");
+            includeFile.put("root-dir", this.prefix + "snippets/");
+        }
+        return root;
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = this.siteDir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final String PAGE_TEMPLATE = "<!DOCTYPE html>\n<html>\n" +
+            "<head><title>{{title}}</title>\n<meta charset=\"utf-8\">\n{{{styles}}}\n</head>\n" +
+            "<body>\n<div class=\"nav\">\n" +
+            "{{#nav.previous}}<a href=\"{{link}}\">{{title}}</a>{{/nav.previous}}\n" +
+            "{{#nav.next}}<a href=\"{{link}}\">{{title}}</a>{{/nav.next}}\n</div>\n" +
+            "{{{content}}}\n</body>\n</html>\n";
+
+    private static final String CODE_TEMPLATE = "<!DOCTYPE html>\n<html>\n" +
+            "<head><title>{{wrap_code_file_name}}</title>\n<meta charset=\"utf-8\">\n" +
+            "{{{styles}}}\n</head>\n<body>\n{{{content}}}\n</body>\n</html>\n";
+
+    private static Option intOption(String name, String description) {
+        return Option.builder(null).longOpt(name).hasArg().argName("N").desc(description)
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption(intOption("pages", "number of pages, 1000 by default"));
+        options.addOption(intOption("depth", "directory levels of the pages, 3 by default"));
+        options.addOption(intOption("flow-length",
+                "pages in a chapter page flow, 20 by default"));
+        options.addOption(intOption("index-markers", "index entries per page, 3 by default"));
+        options.addOption(intOption("includes", "included snippets per page, 2 by default"));
+        options.addOption(intOption("wrap-code", "wrapped code files, 10 by default"));
+        options.addOption(intOption("variable-blocks",
+                "page-variables blocks per page, 1 by default"));
+        options.addOption(intOption("paragraphs", "text paragraphs per page, 5 by default"));
+        options.addOption(intOption("seed", "random seed, 1 by default"));
+        String usage = "java " + SiteGenerator.class.getName() + " <site directory>";
+
+        CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+            if (commandLine.getArgs().length != 1) {
+                throw new ParseException("Exactly one site directory must be given");
+            }
+        } catch (ParseException e) {
+            System.out.println(e.getMessage());
+            new HelpFormatter().printHelp(usage, options);
+            System.exit(1);
+            return;
+        }
+
+        SiteGenerator generator = new SiteGenerator(Paths.get(commandLine.getArgs()[0]));
+        try {
+            generator.pages(intValue(commandLine, "pages", generator.pages))
+                    .depth(intValue(commandLine, "depth", generator.depth))
+                    .flowLength(intValue(commandLine, "flow-length", generator.flowLength))
+                    .indexMarkers(intValue(commandLine, "index-markers", generator.indexMarkers))
+                    .includes(intValue(commandLine, "includes", generator.includes))
+                    .wrapCodeFiles(intValue(commandLine, "wrap-code", generator.wrapCodeFiles))
+                    .variableBlocks(intValue(commandLine, "variable-blocks",
+                            generator.variableBlocks))
+                    .paragraphs(intValue(commandLine, "paragraphs", generator.paragraphs))
+                    .seed(intValue(commandLine, "seed", (int) generator.seed));
+        } catch (NumberFormatException e) {
+            System.out.println("Not a number: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Argument file written: " + generator.generate());
+    }
+
+    private static int intValue(CommandLine commandLine, String option, int defaultValue) {
+        String value = commandLine.getOptionValue(option);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+}
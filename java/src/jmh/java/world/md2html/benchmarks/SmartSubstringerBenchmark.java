@@ -0,0 +1,49 @@
+package world.md2html.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import world.md2html.utils.SmartSubstringer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cuts a section out of an included file the way the `include-file` plugin does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SmartSubstringerBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public BenchmarkPages.Size size;
+
+    private String text;
+    private SmartSubstringer substringer;
+
+    @Setup
+    public void setUp() {
+        this.text = BenchmarkPages.page(this.size);
+        // The last section is cut, so the whole text is scanned.
+        int lastSection = this.text.lastIndexOf("## Section ");
+        String startWith = this.text.substring(lastSection, this.text.indexOf('\n', lastSection));
+        this.substringer = new SmartSubstringer(startWith, "````", "", "");
+    }
+
+    @Benchmark
+    public String substring() {
+        return this.substringer.substring(this.text);
+    }
+
+}
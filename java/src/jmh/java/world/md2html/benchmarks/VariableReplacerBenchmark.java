@@ -0,0 +1,53 @@
+package world.md2html.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import world.md2html.utils.VariableReplacer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The replacement templates are compiled once per plugin configuration and applied to every
+ * marker found in the pages, so both are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VariableReplacerBenchmark {
+
+    private static final String TEMPLATE =
+            "<a href=\"${1}\" title=\"${2}\">${2}</a> {{escaped}} <span class=\"${3}\">${1}</span>";
+
+    private VariableReplacer replacer;
+    private List<String> substitutions;
+
+    @Setup
+    public void setUp() throws VariableReplacer.VariableReplacerException {
+        this.replacer = new VariableReplacer(TEMPLATE);
+        this.substitutions = Arrays.asList("doc/reference.html", "Reference", "link");
+    }
+
+    @Benchmark
+    public VariableReplacer compile() throws VariableReplacer.VariableReplacerException {
+        return new VariableReplacer(TEMPLATE);
+    }
+
+    @Benchmark
+    public String replace() {
+        return this.replacer.replace(this.substitutions);
+    }
+
+}
@@ -0,0 +1,259 @@
+package world.md2html;
+
+import world.md2html.dependencies.DependencyGraph;
+import world.md2html.options.model.Document;
+import world.md2html.options.model.PipelineOptions;
+import world.md2html.options.model.SessionOptions;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker.PageBudgetExceededError;
+import world.md2html.plugins.PageContext;
+import world.md2html.utils.ConsoleBuffer;
+import world.md2html.utils.UserError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Processes the documents in three stages connected by bounded queues: reading the page
+ * sources (I/O-bound), rendering the pages (CPU-bound) and writing the output files
+ * (I/O-bound). Every stage has its own threads. When a stage can't keep up, the queue before
+ * it fills up and the previous stages wait, so only a limited number of pages is kept in
+ * memory at any time regardless of the site size.
+ * <br />
+ * The console output of every document is buffered and printed in the documents order, so
+ * it's identical to the output of a serial run.
+ * <br />
+ * When a document fails, the documents after it (in the documents order) are cancelled: the
+ * stages don't take them any more, as a serial run would stop at the failed document. The
+ * documents before it are still completed. The documents after it that were written before
+ * the failure was detected keep their (correct) outputs. A document that exceeded its page
+ * budget fails alone, the other documents are not cancelled.
+ */
+public class BuildPipeline implements AutoCloseable {
+
+    private final List<Md2HtmlPlugin> plugins;
+    private final PageMetadataHandlersWrapper metadataHandlersWrapper;
+    private final SessionOptions options;
+    private final DependencyGraph dependencyGraph;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final Stage writeStage;
+    private final Stage renderStage;
+    private final Stage readStage;
+    /**
+     * Index of the first failed document (in the documents order) or `Integer.MAX_VALUE`.
+     */
+    private final AtomicInteger failedIndex = new AtomicInteger(Integer.MAX_VALUE);
+
+    public BuildPipeline(List<Md2HtmlPlugin> plugins,
+            PageMetadataHandlersWrapper metadataHandlersWrapper, SessionOptions options,
+            DependencyGraph dependencyGraph) {
+        this.plugins = plugins;
+        this.metadataHandlersWrapper = metadataHandlersWrapper;
+        this.options = options;
+        this.dependencyGraph = dependencyGraph;
+
+        PipelineOptions pipelineOptions = options.getPipeline() == null ?
+                PipelineOptions.DEFAULT : options.getPipeline();
+        int queueSize = pipelineOptions.getQueueSize();
+        this.writeStage = new Stage("write", pipelineOptions.getWriteThreads(), queueSize,
+                this::write, null);
+        this.renderStage = new Stage("render", Math.max(options.getJobs(), 1), queueSize,
+                this::render, this.writeStage);
+        this.readStage = new Stage("read", pipelineOptions.getReadThreads(), queueSize,
+                this::read, this.renderStage);
+    }
+
+    /**
+     * Processes the `documents`. On the first failed document (in the documents order) the
+     * documents after it are cancelled, and when the documents being processed are stopped,
+     * the `errorHandler` is called. The `errorHandler` is called for every document that
+     * exceeded its page budget, and the other documents are processed.
+     */
+    public void process(List<Document> documents, BiConsumer<Document, UserError> errorHandler)
+            throws IOException {
+
+        List<PageJob> jobs = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            jobs.add(new PageJob(jobs.size(),
+                    new PageContext(document, this.dependencyGraph)));
+        }
+
+        startThread("md2html-feeder", () -> {
+            try {
+                for (PageJob job : jobs) {
+                    if (isCancelled(job)) {
+                        job.done.countDown();
+                    } else {
+                        this.readStage.queue.put(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Pipeline is closed.
+            }
+        });
+
+        for (PageJob job : jobs) {
+            awaitJob(job);
+            job.output.flush();
+            if (job.error instanceof PageBudgetExceededError) {
+                errorHandler.accept(job.context.getDocument(), job.error);
+                continue;
+            }
+            if (job.error != null || job.failure != null) {
+                // Nothing is written after the error is reported (and the application
+                // possibly exits).
+                for (PageJob laterJob : jobs.subList(job.index + 1, jobs.size())) {
+                    awaitJob(laterJob);
+                }
+            }
+            if (job.error != null) {
+                errorHandler.accept(job.context.getDocument(), job.error);
+                return;
+            }
+            if (job.failure != null) {
+                if (job.failure instanceof IOException) {
+                    throw (IOException) job.failure;
+                } else if (job.failure instanceof RuntimeException) {
+                    throw (RuntimeException) job.failure;
+                } else if (job.failure instanceof Error) {
+                    throw (Error) job.failure;
+                }
+                throw new RuntimeException(job.failure);
+            }
+        }
+    }
+
+    private static void awaitJob(PageJob job) {
+        try {
+            job.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void cancelAfter(PageJob job) {
+        this.failedIndex.accumulateAndGet(job.index, Math::min);
+    }
+
+    private boolean isCancelled(PageJob job) {
+        return job.index > this.failedIndex.get();
+    }
+
+    @Override
+    public void close() {
+        this.threads.forEach(Thread::interrupt);
+    }
+
+    private boolean read(PageJob job) throws IOException {
+        job.mdText = Md2Html.readPage(job.context, this.plugins);
+        return job.mdText != null;
+    }
+
+    private boolean render(PageJob job) {
+        job.pageText = Md2Html.renderPage(job.context, job.mdText, this.plugins,
+                this.metadataHandlersWrapper, this.options);
+        job.mdText = null;
+        return true;
+    }
+
+    private boolean write(PageJob job) {
+        Md2Html.writePage(job.context, job.pageText);
+        job.pageText = null;
+        return true;
+    }
+
+    private void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        this.threads.add(thread);
+        thread.start();
+    }
+
+    private interface StageAction {
+        /**
+         * Returns `false` if the page must not be passed to the next stage.
+         */
+        boolean process(PageJob job) throws Exception;
+    }
+
+    private class Stage {
+
+        private final BlockingQueue<PageJob> queue;
+        private final StageAction action;
+        private final Stage next;
+
+        private Stage(String name, int threadCount, int queueSize, StageAction action,
+                Stage next) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.action = action;
+            this.next = next;
+            for (int i = 0; i < threadCount; i++) {
+                startThread("md2html-" + name + "-" + i, this::run);
+            }
+        }
+
+        private void run() {
+            try {
+                //noinspection InfiniteLoopStatement
+                while (true) {
+                    PageJob job = this.queue.take();
+                    if (isCancelled(job)) {
+                        job.done.countDown();
+                    } else if (processJob(job) && this.next != null) {
+                        this.next.queue.put(job);
+                    } else {
+                        job.done.countDown();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Pipeline is closed.
+            }
+        }
+
+        private boolean processJob(PageJob job) {
+            boolean[] passOn = new boolean[1];
+            try {
+                job.output.execute(() -> passOn[0] = this.action.process(job));
+            } catch (UserError e) {
+                job.error = e;
+                if (!(e instanceof PageBudgetExceededError)) {
+                    cancelAfter(job);
+                }
+            } catch (Throwable e) {
+                job.failure = e;
+                cancelAfter(job);
+            }
+            return passOn[0];
+        }
+    }
+
+    /**
+     * A document moving through the stages. The fields are passed from one stage to the
+     * next through the queues, so they are never accessed by two threads at the same time.
+     */
+    private static class PageJob {
+        private final int index;
+        private final PageContext context;
+        private final ConsoleBuffer output = new ConsoleBuffer();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private String mdText;
+        private String pageText;
+        private UserError error;
+        private Throwable failure;
+
+        private PageJob(int index, PageContext context) {
+            this.index = index;
+            this.context = context;
+        }
+    }
+
+}
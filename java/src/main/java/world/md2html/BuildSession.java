@@ -0,0 +1,258 @@
+package world.md2html;
+
+import lombok.Getter;
+import world.md2html.dependencies.DependencyGraph;
+import world.md2html.options.argfile.ArgFileParseException;
+import world.md2html.options.model.ArgFile;
+import world.md2html.options.model.CliOptions;
+import world.md2html.options.model.Document;
+import world.md2html.options.model.SessionOptions;
+import world.md2html.options.model.raw.ArgFileDocumentRaw;
+import world.md2html.options.model.raw.ArgFileRaw;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker.PageBudgetExceededError;
+import world.md2html.utils.FileCache;
+import world.md2html.utils.MustacheUtils;
+import world.md2html.utils.Profiler;
+import world.md2html.utils.UserError;
+import world.md2html.utils.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static world.md2html.options.argfile.ArgFileParsingHelper.readArgumentFileNode;
+import static world.md2html.utils.Utils.readStringFromCommentedFile;
+
+/**
+ * The parsed arguments of a run together with the state needed to process the documents.
+ * In the watch mode a new session is created every time the arguments must be parsed again.
+ */
+public class BuildSession {
+
+    private final ArgFileRaw argFileRaw;
+    @Getter
+    private final Path argumentFile;
+    @Getter
+    private final ArgFile argFile;
+    @Getter
+    private final PageMetadataHandlersWrapper metadataHandlersWrapper;
+    @Getter
+    private final DependencyGraph dependencyGraph;
+
+    private BuildSession(ArgFileRaw argFileRaw, Path argumentFile, ArgFile argFile,
+            DependencyGraph dependencyGraph) {
+        this.argFileRaw = argFileRaw;
+        this.argumentFile = argumentFile;
+        this.argFile = argFile;
+        // The plugins expand the nested metadata with the wrapper they were given, the same
+        // wrapper is used for the pages, so its kept expansions are invalidated at once.
+        this.metadataHandlersWrapper = argFile.getMetadataHandlers() != null ?
+                argFile.getMetadataHandlers() :
+                PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
+        this.dependencyGraph = dependencyGraph;
+    }
+
+    /**
+     * Parses the arguments. The `previousGraph` (may be `null`) is the dependency graph of the
+     * previous session in the watch mode.
+     */
+    public static BuildSession load(CliOptions cliOptions, DependencyGraph previousGraph) {
+
+        String argumentFileString;
+        String argumentFile = cliOptions.getArgumentFile();
+        if (argumentFile == null) {
+            argumentFileString =
+                    "{\"documents\": [{}], \n" +
+                    // When run without argument file, need to implicitly add
+                    // plugin for page title extraction from the source text.
+                    "\"plugins\": {\"page-variables\": \n" +
+                    "    {\"VARIABLES\": {\"only-at-page-start\": true}}} \n" +
+                    "}";
+        } else {
+            try {
+                argumentFileString = readStringFromCommentedFile(Paths.get(argumentFile),
+                        "#", StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UserError("Error reading argument file '" + argumentFile + "': " +
+                        e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        ArgFileRaw argFileRaw;
+        ArgFile argFile;
+        try (Profiler.Measurement ignored = Profiler.measure("parse-arguments")) {
+            argFileRaw = readArgumentFileNode(argumentFileString);
+            argFile = ArgumentsHelper.parseArgumentFile(argFileRaw, cliOptions);
+        } catch (ArgFileParseException e) {
+            throw new UserError("Error parsing argument file '" + argumentFile + "': " +
+                    e.getMessage());
+        }
+
+        SessionOptions options = argFile.getOptions();
+        Utils.fileCache().setBudget(options.getFileCacheSize() == null ?
+                FileCache.DEFAULT_BUDGET : options.getFileCacheSize() * 1024L * 1024L);
+
+        try (Profiler.Measurement ignored = Profiler.measure("compile-templates")) {
+            precompileTemplates(argFile);
+        }
+
+        Map<String, String> configuration = dependencyConfiguration(argFileRaw, options);
+        DependencyGraph dependencyGraph;
+        if (previousGraph != null) {
+            dependencyGraph = previousGraph.withConfiguration(configuration);
+        } else if (cliOptions.getServePort() != null) {
+            // The served pages are not written, so the recorded dependencies must not be
+            // persisted.
+            dependencyGraph = DependencyGraph.inMemory(configuration);
+        } else if (options.getDependencyFile() != null) {
+            dependencyGraph = DependencyGraph.load(Paths.get(options.getDependencyFile()),
+                    configuration);
+        } else if (cliOptions.isWatch()) {
+            dependencyGraph = DependencyGraph.inMemory(configuration);
+        } else {
+            dependencyGraph = null;
+        }
+
+        return new BuildSession(argFileRaw,
+                argumentFile == null ? null : Paths.get(argumentFile).normalize(), argFile,
+                dependencyGraph);
+    }
+
+    private static void precompileTemplates(ArgFile argFile) {
+        Set<Path> templates = new HashSet<>();
+        for (Document document : argFile.getDocuments()) {
+            if (document.getTemplate() != null) {
+                templates.add(Paths.get(document.getTemplate()));
+            }
+        }
+        for (Md2HtmlPlugin plugin : argFile.getPlugins()) {
+            for (String template : plugin.templates()) {
+                if (template != null) {
+                    templates.add(Paths.get(template));
+                }
+            }
+        }
+        MustacheUtils.precompileTemplates(templates, argFile.getOptions().isLegacyMode());
+    }
+
+    /**
+     * Returns the configuration blocks every page depends on. The rest of the argument file is
+     * reflected in the documents themselves.
+     */
+    private static Map<String, String> dependencyConfiguration(ArgFileRaw argFileRaw,
+            SessionOptions options) {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("legacy-mode", String.valueOf(options.isLegacyMode()));
+        if (argFileRaw.getPlugins() != null) {
+            argFileRaw.getPlugins().forEach((name, data) ->
+                    configuration.put("plugin:" + name, data.toString()));
+        }
+        return configuration;
+    }
+
+    /**
+     * Processes the `documents` and finalizes the plugins. The `errorHandler` is called for
+     * every failed document. A document that exceeded its page budget is skipped and the
+     * other documents are processed. On any other error the processing stops at the failed
+     * document (in the documents order) and the plugins are not finalized. Returns `false` if
+     * a document failed.
+     */
+    public boolean process(List<Document> documents,
+            BiConsumer<Document, UserError> errorHandler) throws IOException {
+        boolean[] stopped = {false};
+        boolean succeeded = processDocuments(documents, (document, error) -> {
+            if (!(error instanceof PageBudgetExceededError)) {
+                stopped[0] = true;
+            }
+            errorHandler.accept(document, error);
+        });
+        if (!stopped[0]) {
+            finalizePlugins();
+        }
+        return succeeded;
+    }
+
+    /**
+     * Same as {@link #process} but doesn't finalize the plugins.
+     */
+    public boolean processDocuments(List<Document> documents,
+            BiConsumer<Document, UserError> errorHandler) throws IOException {
+
+        SessionOptions options = this.argFile.getOptions();
+        boolean[] failed = {false};
+        BiConsumer<Document, UserError> failingErrorHandler = (document, error) -> {
+            failed[0] = true;
+            errorHandler.accept(document, error);
+        };
+
+        if (options.getJobs() > 1 || options.getPipeline() != null) {
+            try (BuildPipeline pipeline = new BuildPipeline(this.argFile.getPlugins(),
+                    this.metadataHandlersWrapper, options, this.dependencyGraph)) {
+                pipeline.process(documents, failingErrorHandler);
+            }
+        } else {
+            for (Document doc : documents) {
+                try {
+                    Md2Html.execute(doc, this.argFile.getPlugins(), this.metadataHandlersWrapper,
+                            options, this.dependencyGraph);
+                } catch (UserError e) {
+                    failingErrorHandler.accept(doc, e);
+                    if (!(e instanceof PageBudgetExceededError)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (this.dependencyGraph != null) {
+            this.dependencyGraph.save();
+        }
+        return !failed[0];
+    }
+
+    public void finalizePlugins() {
+        for (Md2HtmlPlugin plugin : this.argFile.getPlugins()) {
+            try (Profiler.Measurement ignored = Profiler.measure("finalize/" +
+                    plugin.getClass().getSimpleName())) {
+                plugin.finalizePlugin();
+            } catch (UserError ue) {
+                throw new UserError("Error executing finalization action in plugin '" +
+                        plugin.getClass().getSimpleName() + "': " + ue.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks whether some documents parameters (like titles or the documents order) may be
+     * taken from the documents content. If so, the arguments must be parsed again when the
+     * documents change.
+     */
+    public boolean dependsOnDocumentsContent() {
+        List<ArgFileDocumentRaw> documentsRaw = new ArrayList<>();
+        if (this.argFileRaw.getDefaultSection() != null) {
+            documentsRaw.add(this.argFileRaw.getDefaultSection());
+        }
+        if (this.argFileRaw.getDocuments() != null) {
+            documentsRaw.addAll(this.argFileRaw.getDocuments());
+        }
+        for (ArgFileDocumentRaw documentRaw : documentsRaw) {
+            if (documentRaw.getTitleFromVariable() != null ||
+                    documentRaw.getCodeFromVariable() != null ||
+                    documentRaw.getSortByVariable() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,11 +1,16 @@
 package world.md2html;
 
 import com.github.mustachejava.Mustache;
+import world.md2html.dependencies.DependencyGraph;
 import world.md2html.options.model.Document;
 import world.md2html.options.model.SessionOptions;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker;
+import world.md2html.plugins.PageContext;
 import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.ConsoleBuffer;
+import world.md2html.utils.Profiler;
 import world.md2html.utils.UserError;
 import world.md2html.utils.Utils;
 
@@ -13,6 +18,7 @@ import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -46,64 +52,158 @@ public class Md2Html {
     private static final String GENERATION_TIME_PLACEHOLDER = "generation_time";
     private static final String SOURCE_FILE_PLACEHOLDER = "source_file";
 
+    private static volatile PageOutput pageOutput = Md2Html::writeOutputFile;
+
+    /**
+     * Replaces the destination of the generated pages, `null` restores writing them to the
+     * output files.
+     */
+    public static void setPageOutput(PageOutput output) {
+        pageOutput = output == null ? Md2Html::writeOutputFile : output;
+    }
+
     public static void execute(Document document, List<Md2HtmlPlugin> plugins,
-            PageMetadataHandlersWrapper metadataHandlersWrapper, SessionOptions options)
+            PageMetadataHandlersWrapper metadataHandlersWrapper, SessionOptions options,
+            DependencyGraph dependencyGraph) throws IOException, UserError {
+        PageContext context = new PageContext(document, dependencyGraph);
+        String mdText = readPage(context, plugins);
+        if (mdText != null) {
+            String pageText = renderPage(context, mdText, plugins, metadataHandlersWrapper,
+                    options);
+            writePage(context, pageText);
+        }
+    }
+
+    /**
+     * The first, I/O-bound, page processing stage. Returns the page source text or `null` if
+     * the output file is up-to-date and the page must be skipped. With the dependency graph
+     * the output is up-to-date if its dependencies didn't change since the last build,
+     * otherwise if it's newer than the input file.
+     */
+    public static String readPage(PageContext context, List<Md2HtmlPlugin> plugins)
             throws IOException, UserError {
 
-        Path outputFile = Paths.get(document.getOutput());
-        Path inputFile = Paths.get(document.getInput());
+        Document document = context.getDocument();
+        try (Profiler.Measurement ignored = Profiler.measurePage(document.getOutput(), "read")) {
+            DependencyGraph dependencyGraph = context.getDependencyGraph();
+            Path outputFile = Paths.get(document.getOutput());
+            Path inputFile = Paths.get(document.getInput());
 
-        if (!document.isForce() && Files.exists(outputFile)) {
-            FileTime inputFileTime = Files.getLastModifiedTime(inputFile);
-            FileTime outputFileTime = Files.getLastModifiedTime(outputFile);
-            if (outputFileTime.compareTo(inputFileTime) > 0) {
-                if (document.isVerbose()) {
-                    System.out.println("The output file is up-to-date. Skipping: "
-                            + document.getOutput());
+            if (dependencyGraph != null) {
+                context.getDependencies().setFacts(dependencyGraph.pageFacts(document, plugins));
+            }
+
+            if (!document.isForce() && Files.exists(outputFile)) {
+                boolean upToDate;
+                if (dependencyGraph != null) {
+                    upToDate = dependencyGraph.isUpToDate(document.getOutput(),
+                            context.getDependencies().getFacts());
+                } else {
+                    FileTime inputFileTime = Files.getLastModifiedTime(inputFile);
+                    FileTime outputFileTime = Files.getLastModifiedTime(outputFile);
+                    upToDate = outputFileTime.compareTo(inputFileTime) > 0;
+                }
+                if (upToDate) {
+                    if (document.isVerbose()) {
+                        ConsoleBuffer.println("The output file is up-to-date. Skipping: "
+                                + document.getOutput());
+                    }
+                    return null;
                 }
-                return;
             }
-        }
 
-        for (Md2HtmlPlugin plugin : plugins) {
-            plugin.newPage(document);
+            context.getDependencies().addFile(inputFile);
+            return supplyWithFileExceptionAsUserError(
+                    () -> getCachedString(inputFile, Utils::readStringFromUtf8File),
+                    "Error processing page"
+            );
         }
+    }
 
-        String mdText = supplyWithFileExceptionAsUserError(
-                () -> getCachedString(inputFile, Utils::readStringFromUtf8File),
-                "Error processing page"
-        );
+    /**
+     * The second, CPU-bound, page processing stage: applies the page metadata handlers,
+     * converts Markdown into HTML and executes the template. Returns the output page text.
+     */
+    public static String renderPage(PageContext context, String mdText,
+            List<Md2HtmlPlugin> plugins, PageMetadataHandlersWrapper metadataHandlersWrapper,
+            SessionOptions options) throws UserError {
 
-        mdText = metadataHandlersWrapper.applyMetadataHandlers(mdText, document);
+        Document document = context.getDocument();
+        try (Profiler.Measurement ignored =
+                     Profiler.measurePage(document.getOutput(), "render-page")) {
+            context.startBudget(options.getPageBudget());
+            PageBudgetTracker budgetTracker = context.getBudgetTracker();
+            for (Md2HtmlPlugin plugin : plugins) {
+                plugin.newPage(context);
+            }
 
-        Map<String, Object> substitutions = new HashMap<>();
+            mdText = metadataHandlersWrapper.applyMetadataHandlers(mdText, context,
+                    document.getMetadataScan());
 
-        String htmlText = generateHtml(mdText);
+            Map<String, Object> substitutions = new HashMap<>();
 
-        substitutions.put(CONTENT_PLACEHOLDER, htmlText);
-        try {
-            substitutions.put(SOURCE_FILE_PLACEHOLDER,
-                    relativizeRelativeResource(document.getInput(), document.getOutput()));
-        } catch (CheckedIllegalArgumentException e) {
-            throw new RuntimeException(e);
+            String htmlText = generateHtml(mdText, document.getRenderingProfile());
+            if (budgetTracker != null) {
+                budgetTracker.checkTime();
+            }
+
+            substitutions.put(CONTENT_PLACEHOLDER, htmlText);
+            try {
+                substitutions.put(SOURCE_FILE_PLACEHOLDER,
+                        relativizeRelativeResource(document.getInput(), document.getOutput()));
+            } catch (CheckedIllegalArgumentException e) {
+                throw new RuntimeException(e);
+            }
+
+            String pageText = renderTemplate(context, plugins, substitutions, options, null);
+            if (budgetTracker != null) {
+                budgetTracker.checkTime();
+            }
+            return pageText;
         }
+    }
 
-        outputPage(document, plugins, substitutions, options, null);
+    /**
+     * The last, I/O-bound, page processing stage: writes the output page and records its
+     * dependencies in the dependency graph.
+     */
+    public static void writePage(PageContext context, String pageText) {
+
+        Document document = context.getDocument();
+        try (Profiler.Measurement ignored =
+                     Profiler.measurePage(document.getOutput(), "write")) {
+            pageOutput.write(document, pageText);
+        }
+        if (context.getDependencyGraph() != null) {
+            context.getDependencyGraph().update(document.getOutput(), context.getDependencies());
+        }
 
         if (document.isVerbose()) {
-            System.out.println("Output file generated: " + document.getOutput());
+            ConsoleBuffer.println("Output file generated: " + document.getOutput());
         }
         if (document.isReport()) {
-            System.out.println(document.getOutput());
+            ConsoleBuffer.println(document.getOutput());
         }
     }
 
-    public static void outputPage(Document document, List<Md2HtmlPlugin> plugins,
+    public static void outputPage(PageContext context, List<Md2HtmlPlugin> plugins,
                                   Map<String, Object> substitutions, SessionOptions options,
                                   Map<String, Object> overrideSubstitutions) {
+        String pageText = renderTemplate(context, plugins, substitutions, options,
+                overrideSubstitutions);
+        try (Profiler.Measurement ignored = Profiler.measure("write")) {
+            pageOutput.write(context.getDocument(), pageText);
+        }
+    }
+
+    public static String renderTemplate(PageContext context, List<Md2HtmlPlugin> plugins,
+                                        Map<String, Object> substitutions, SessionOptions options,
+                                        Map<String, Object> overrideSubstitutions) {
 
         // TODO Probably move to `Md2HtmlUtils`.
 
+        Document document = context.getDocument();
+
         substitutions = new HashMap<>(substitutions);
 
         substitutions.put(TITLE_PLACEHOLDER, firstNotNull(document.getTitle(), ""));
@@ -117,9 +217,13 @@ public class Md2Html {
         substitutions.put(GENERATION_TIME_PLACEHOLDER, dateTime.format(timeFormatter));
 
         substitutions.put(STYLES_PLACEHOLDER, generateDocumentStyles(document));
+        if (document.getIncludeCss() != null) {
+            document.getIncludeCss().forEach(css ->
+                    context.getDependencies().addFile(Paths.get(css)));
+        }
 
         for (Md2HtmlPlugin plugin : plugins) {
-            substitutions.putAll(plugin.variables(document));
+            substitutions.putAll(plugin.variables(context));
         }
 
         if (options.isLegacyMode()) {
@@ -143,6 +247,29 @@ public class Md2Html {
             substitutions.putAll(overrideSubstitutions);
         }
 
+        context.getDependencies().addFile(Paths.get(document.getTemplate()));
+        Mustache mustache;
+        try {
+            if (options.isLegacyMode()) {
+                mustache = createCachedMustacheRendererLegacy(Paths.get(document.getTemplate()));
+            } else {
+                mustache = createCachedMustacheRenderer(Paths.get(document.getTemplate()));
+            }
+        } catch (FileNotFoundException e) {
+            throw new UserError(String.format("Error reading template file '%s': %s: %s",
+                    document.getTemplate(), e.getClass().getSimpleName(),
+                    e.getMessage()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        StringWriter writer = new StringWriter();
+        try (Profiler.Measurement ignored = Profiler.measure("template")) {
+            mustache.execute(writer, substitutions);
+        }
+        return writer.toString();
+    }
+
+    private static void writeOutputFile(Document document, String pageText) {
         Path  outputDirPath = Paths.get((document.getOutput())).normalize().getParent();
         if (outputDirPath != null && !Files.exists(outputDirPath)) {
             try {
@@ -154,20 +281,7 @@ public class Md2Html {
         }
         try (Writer writer = new BufferedWriter(new OutputStreamWriter(
                 Files.newOutputStream(Paths.get(document.getOutput())), StandardCharsets.UTF_8))) {
-            Mustache mustache;
-            try {
-                if (options.isLegacyMode()) {
-                    mustache = createCachedMustacheRendererLegacy(Paths.get(document.getTemplate()));
-                } else {
-                    mustache = createCachedMustacheRenderer(Paths.get(document.getTemplate()));
-                }
-            } catch (FileNotFoundException e) {
-                throw new UserError(String.format("Error reading template file '%s': %s: %s",
-                        document.getTemplate(), e.getClass().getSimpleName(),
-                        e.getMessage()));
-            }
-            mustache.execute(writer, substitutions);
-            writer.flush();
+            writer.write(pageText);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,23 +1,19 @@
 package world.md2html;
 
-import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.cli.CliArgumentsException;
 import world.md2html.options.cli.CliParser;
-import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
 import world.md2html.options.model.Document;
-import world.md2html.options.model.raw.ArgFileRaw;
-import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
-import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker.PageBudgetExceededError;
+import world.md2html.utils.MustacheUtils;
+import world.md2html.utils.Profiler;
 import world.md2html.utils.UserError;
+import world.md2html.utils.Utils;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
-import static world.md2html.options.argfile.ArgFileParsingHelper.readArgumentFileNode;
 import static world.md2html.utils.Utils.formatNanoSeconds;
-import static world.md2html.utils.Utils.readStringFromCommentedFile;
 
 public class Md2HtmlRunner {
 
@@ -41,62 +37,52 @@ public class Md2HtmlRunner {
             throw new UserError(e.getPrintText());
         }
 
-        String argumentFileString;
-        String argumentFile = cliOptions.getArgumentFile();
-        if (argumentFile == null) {
-            argumentFileString =
-                    "{\"documents\": [{}], \n" +
-                    // When run without argument file, need to implicitly add
-                    // plugin for page title extraction from the source text.
-                    "\"plugins\": {\"page-variables\": \n" +
-                    "    {\"VARIABLES\": {\"only-at-page-start\": true}}} \n" +
-                    "}";
-        } else {
-            try {
-                argumentFileString = readStringFromCommentedFile(Paths.get(argumentFile),
-                        "#", StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                throw new UserError("Error reading argument file '" + argumentFile + "': " +
-                        e.getClass().getSimpleName() + ": " + e.getMessage());
-            }
+        // The preview server works until it's stopped, so it's not profiled.
+        if (cliOptions.getProfile() != null && cliOptions.getServePort() == null) {
+            Profiler.start();
         }
 
-        ArgFile argFile;
-        try {
-            ArgFileRaw argFileRaw = readArgumentFileNode(argumentFileString);
-            argFile = ArgumentsHelper.parseArgumentFile(argFileRaw, cliOptions);
-        } catch (ArgFileParseException e) {
-            throw new UserError("Error parsing argument file '" + argumentFile + "': " +
-                    e.getMessage());
+        if (cliOptions.isWatch() || cliOptions.getServePort() != null) {
+            // The files may change while the program works.
+            Utils.fileCache().setRevalidate(true);
+            MustacheUtils.setRevalidate(true);
         }
 
-        PageMetadataHandlersWrapper metadataHandlersWrapper =
-                PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
-
-        for (Document doc : argFile.getDocuments()) {
-            try {
-                Md2Html.execute(doc, argFile.getPlugins(), metadataHandlersWrapper,
-                        argFile.getOptions());
-            } catch(UserError e) {
-                System.out.println("Error processing input file '" + doc.getInput() +
-                        "': " + e.getClass().getSimpleName() + ": " + e.getMessage());
-                System.exit(1);
-            }
+        BuildSession session = BuildSession.load(cliOptions, null);
+        if (cliOptions.getServePort() != null) {
+            new Md2HtmlServer(cliOptions, session).serve();
+            return;
         }
 
-        for (Md2HtmlPlugin plugin : argFile.getPlugins()) {
-            try {
-                plugin.finalizePlugin();
-            } catch (UserError ue) {
-                throw new UserError("Error executing finalization action in plugin '" +
-                        plugin.getClass().getSimpleName() + "': " + ue.getMessage());
-            }
+        boolean succeeded = session.process(session.getArgFile().getDocuments(),
+                Md2HtmlRunner::documentError);
+
+        Profiler profiler = Profiler.stop();
+        if (profiler != null) {
+            profiler.writeReport(Paths.get(cliOptions.getProfile()));
         }
 
-        if (argFile.getOptions().isVerbose()) {
+        if (session.getArgFile().getOptions().isVerbose()) {
             long end = System.nanoTime();
             System.out.println("Finished in: " + formatNanoSeconds(end - start));
         }
+
+        if (!succeeded) {
+            // Some pages exceeded their budgets, the other pages were generated.
+            System.exit(1);
+        }
+
+        if (cliOptions.isWatch()) {
+            new Md2HtmlWatcher(cliOptions, session).watch();
+        }
+    }
+
+    private static void documentError(Document doc, UserError e) {
+        System.out.println("Error processing input file '" + doc.getInput() +
+                "': " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        if (!(e instanceof PageBudgetExceededError)) {
+            System.exit(1);
+        }
     }
 
 }
@@ -0,0 +1,255 @@
+package world.md2html;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import world.md2html.options.model.CliOptions;
+import world.md2html.options.model.Document;
+import world.md2html.utils.UserError;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the pages for a preview without writing the output files. The request path is the
+ * output file path relative to the current directory. A page is rendered when it's requested
+ * for the first time and kept in memory until the files it was generated from change.
+ * <br />
+ * The pages generated by the plugins after all the documents are processed (like the index
+ * page) are generated when such a page is requested, and generated again on request after any
+ * change. The CSS files linked to the pages are served from the disk.
+ */
+public class Md2HtmlServer implements Md2HtmlWatcher.ChangeHandler {
+
+    private static class Page {
+        /**
+         * The output as it's recorded in the dependency graph.
+         */
+        private final String output;
+        private final byte[] content;
+
+        private Page(String output, byte[] content) {
+            this.output = output;
+            this.content = content;
+        }
+    }
+
+    private final CliOptions cliOptions;
+    private BuildSession session;
+    private Md2HtmlWatcher watcher;
+    private volatile Map<String, Document> documentsByOutput;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Set<String> linkedCssFiles = ConcurrentHashMap.newKeySet();
+    /**
+     * Whether all the documents were processed and the plugins finalized since the last change.
+     */
+    private boolean complete = false;
+
+    public Md2HtmlServer(CliOptions cliOptions, BuildSession session) {
+        this.cliOptions = cliOptions;
+        setSession(session);
+    }
+
+    /**
+     * Starts the server and watches the changes until the program is stopped.
+     */
+    public void serve() throws IOException {
+        Md2Html.setPageOutput(this::pageGenerated);
+        this.watcher = new Md2HtmlWatcher(this.cliOptions, this.session, this);
+        HttpServer server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), this.cliOptions.getServePort()), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        System.out.println("Serving at http://localhost:" + server.getAddress().getPort() + "/");
+        try {
+            this.watcher.watch();
+        } finally {
+            server.stop(0);
+            Md2Html.setPageOutput(null);
+        }
+    }
+
+    private void setSession(BuildSession session) {
+        this.session = session;
+        Map<String, Document> documentsByOutput = new LinkedHashMap<>();
+        for (Document document : session.getArgFile().getDocuments()) {
+            documentsByOutput.putIfAbsent(normalize(document.getOutput()), document);
+        }
+        this.documentsByOutput = documentsByOutput;
+    }
+
+    private void pageGenerated(Document document, String pageText) {
+        this.pages.put(normalize(document.getOutput()), new Page(document.getOutput(),
+                pageText.getBytes(StandardCharsets.UTF_8)));
+        if (document.getLinkCss() != null) {
+            document.getLinkCss().forEach(css -> this.linkedCssFiles.add(normalize(css)));
+        }
+    }
+
+    @Override
+    public synchronized void documentsChanged(BuildSession session, List<Document> documents,
+            Set<String> changedFiles) {
+        if (session != this.session) {
+            setSession(session);
+            new ArrayList<>(this.pages.keySet()).forEach(this::forget);
+        } else {
+            documents.forEach(document -> forget(normalize(document.getOutput())));
+            // Includes the generated files depending on the changed files.
+            changedFiles.forEach(this::forget);
+        }
+        this.complete = false;
+    }
+
+    /**
+     * Removes the page from memory. The page is also removed from the dependency graph, so
+     * it's not considered up-to-date when it's processed next time.
+     */
+    private void forget(String file) {
+        Page page = this.pages.remove(file);
+        if (page != null) {
+            this.session.getDependencyGraph().remove(page.output);
+        }
+    }
+
+    private synchronized byte[] page(String file) throws IOException {
+        Page page = this.pages.get(file);
+        Document document = this.documentsByOutput.get(file);
+        if (document != null) {
+            if (page == null) {
+                process(Collections.singletonList(document));
+                page = this.pages.get(file);
+            }
+        } else if (!this.complete) {
+            List<Document> documents = new ArrayList<>();
+            for (Map.Entry<String, Document> entry : this.documentsByOutput.entrySet()) {
+                if (!this.pages.containsKey(entry.getKey())) {
+                    documents.add(entry.getValue());
+                }
+            }
+            process(documents);
+            this.session.finalizePlugins();
+            this.complete = true;
+            page = this.pages.get(file);
+        }
+        return page == null ? null : page.content;
+    }
+
+    private void process(List<Document> documents) throws IOException {
+        try {
+            this.session.processDocuments(documents, (document, e) -> {
+                throw new UserError("Error processing input file '" + document.getInput() +
+                        "': " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            });
+        } finally {
+            this.watcher.dependenciesChanged();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                sendText(exchange, 405, "Method not allowed");
+                return;
+            }
+            String file = normalize(exchange.getRequestURI().getPath().replaceFirst("^/+", ""));
+            if (file.isEmpty() && !this.documentsByOutput.isEmpty()) {
+                exchange.getResponseHeaders().set("Location",
+                        "/" + this.documentsByOutput.keySet().iterator().next()
+                                .replace('\\', '/'));
+                exchange.sendResponseHeaders(302, -1);
+                return;
+            }
+            if (file.isEmpty() || file.startsWith("..") || Paths.get(file).isAbsolute()) {
+                sendText(exchange, 404, "Not found");
+                return;
+            }
+
+            byte[] content;
+            try {
+                content = page(file);
+            } catch (UserError e) {
+                System.out.println(e.getMessage());
+                sendText(exchange, 500, e.getMessage());
+                return;
+            }
+            if (content != null) {
+                send(exchange, 200, "text/html; charset=utf-8", content);
+            } else if (this.linkedCssFiles.contains(file)) {
+                sendFile(exchange, Paths.get(file), "text/css");
+            } else {
+                sendText(exchange, 404, "Not found");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text)
+            throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType,
+            byte[] content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, content.length);
+            exchange.getResponseBody().write(content);
+        }
+    }
+
+    /**
+     * Sends the file without reading it into memory. The HTTP server exposes the connection
+     * only as a stream, so the file channel chooses the cheapest transfer it can do to it.
+     */
+    private static void sendFile(HttpExchange exchange, Path file, String contentType)
+            throws IOException {
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            sendText(exchange, 404, "Not found");
+            return;
+        }
+        try (FileChannel channel = fileChannel) {
+            long size = channel.size();
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, size);
+            WritableByteChannel target = Channels.newChannel(exchange.getResponseBody());
+            long position = 0;
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private static String normalize(String file) {
+        return Paths.get(file).normalize().toString();
+    }
+
+}
@@ -1,96 +1,175 @@
 package world.md2html;
 
-import com.vladsch.flexmark.ext.attributes.AttributesExtension;
-import com.vladsch.flexmark.ext.tables.TablesExtension;
-import com.vladsch.flexmark.ext.toc.TocExtension;
-import com.vladsch.flexmark.ext.typographic.TypographicExtension;
-import com.vladsch.flexmark.html.HtmlRenderer;
-import com.vladsch.flexmark.parser.Parser;
-import com.vladsch.flexmark.util.ast.Node;
-import com.vladsch.flexmark.util.data.MutableDataSet;
-import world.md2html.extentions.admonition.PythonMarkdownCompatibleAdmonitionExtension;
+import lombok.Value;
 import world.md2html.options.model.Document;
 import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.Profiler;
 import world.md2html.utils.Utils;
 
-import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.function.Consumer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+import static world.md2html.utils.Utils.getCachedString;
 import static world.md2html.utils.Utils.relativizeRelativeResource;
 
 public class Md2HtmlUtils {
 
+    @Value
+    private static class LinkBlockKey {
+        List<String> linkCss;
+        /**
+         * The output page location up to the last separator, the relative links depend only on
+         * it.
+         */
+        String outputDirectory;
+    }
+
+    private static class StyleBlock {
+        private final String styles;
+        /**
+         * The included CSS file contents the `styles` were generated from.
+         */
+        private final String[] includedContents;
+
+        private StyleBlock(String styles, String[] includedContents) {
+            this.styles = styles;
+            this.includedContents = includedContents;
+        }
+    }
+
+    /**
+     * Usually many pages share the same styles and output directory, so the generated blocks
+     * are kept for reuse. The `link` elements depend on the output directory, the `style`
+     * elements only on the included files, so the included CSS is kept once for all the
+     * directories. The number of different blocks is small, the caches are not bounded.
+     */
+    private static final Map<LinkBlockKey, String> CACHED_LINK_BLOCKS =
+            new ConcurrentHashMap<>();
+    private static final Map<List<String>, StyleBlock> CACHED_STYLE_BLOCKS =
+            new ConcurrentHashMap<>();
+    private static final LongAdder STYLE_BLOCK_HITS = new LongAdder();
+    private static final LongAdder STYLE_BLOCK_MISSES = new LongAdder();
+
+    static {
+        Profiler.registerCounters("style-blocks", Md2HtmlUtils::styleBlockStats);
+    }
+
     private Md2HtmlUtils() {
     }
 
+    /**
+     * Generates the `link` and `style` elements of the `document` page. The included CSS files
+     * are read through the file cache. The generated `style` elements are reused while the
+     * included CSS file contents the file cache returns are the same instances.
+     */
     public static String generateDocumentStyles(Document document) {
-        StringBuilder styles = new StringBuilder();
-        boolean[] firstStyle = {true};
+        String output = document.getOutput();
+        LinkBlockKey key = new LinkBlockKey(document.getLinkCss(),
+                output.substring(0, Math.max(output.lastIndexOf('/'),
+                        output.lastIndexOf('\\')) + 1));
+        String links = CACHED_LINK_BLOCKS.get(key);
+        if (links == null) {
+            links = generateLinks(document.getLinkCss(), output);
+            CACHED_LINK_BLOCKS.put(key, links);
+        }
+
+        String styles = includedStyles(document.getIncludeCss());
+        if (styles.isEmpty()) {
+            return links;
+        } else if (links.isEmpty()) {
+            return styles;
+        }
+        return links + "\n" + styles;
+    }
 
-        Consumer<String> styleAppender = item -> {
-            if (!firstStyle[0]) {
+    private static String includedStyles(List<String> includeCss) {
+        if (includeCss == null || includeCss.isEmpty()) {
+            return "";
+        }
+        String[] includedContents = new String[includeCss.size()];
+        for (int i = 0; i < includedContents.length; i++) {
+            Path cssFile = Paths.get(includeCss.get(i));
+            try {
+                includedContents[i] = getCachedString(cssFile, Utils::readStringFromUtf8File);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        StyleBlock block = CACHED_STYLE_BLOCKS.get(includeCss);
+        if (block != null && sameInstances(block.includedContents, includedContents)) {
+            STYLE_BLOCK_HITS.increment();
+            return block.styles;
+        }
+        STYLE_BLOCK_MISSES.increment();
+        StringBuilder styles = new StringBuilder();
+        for (String content : includedContents) {
+            if (styles.length() > 0) {
                 styles.append("\n");
             }
-            styles.append(item);
-            firstStyle[0] = false;
-        };
-
-        if (document.getLinkCss() != null) {
-            document.getLinkCss().forEach(css -> {
-                String relativizedCss;
-                try {
-                    relativizedCss = relativizeRelativeResource(css, document.getOutput());
-                } catch (CheckedIllegalArgumentException e) {
-                    throw new RuntimeException(e);
-                }
-                // TODO Consider applying HTML encoding to the `href` value. Not sure
-                //  it's required.
-                styleAppender.accept("<link rel=\"stylesheet\" type=\"text/css\" href=\"" +
-                                relativizedCss + "\">");
-            });
+            styles.append("<style>\n").append(content).append("\n</style>");
+        }
+        block = new StyleBlock(styles.toString(), includedContents);
+        CACHED_STYLE_BLOCKS.put(includeCss, block);
+        return block.styles;
+    }
+
+    private static boolean sameInstances(String[] strings1, String[] strings2) {
+        for (int i = 0; i < strings1.length; i++) {
+            if (strings1[i] != strings2[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String generateLinks(List<String> linkCss, String output) {
+        if (linkCss == null) {
+            return "";
         }
-        if (document.getIncludeCss() != null) {
-            document.getIncludeCss().forEach(item -> {
-                try {
-                    styleAppender.accept("<style>\n" +
-                            Utils.readStringFromUtf8File(Paths.get(item)) + "\n</style>");
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        StringBuilder links = new StringBuilder();
+        for (String css : linkCss) {
+            String relativizedCss;
+            try {
+                relativizedCss = relativizeRelativeResource(css, output);
+            } catch (CheckedIllegalArgumentException e) {
+                throw new RuntimeException(e);
+            }
+            if (links.length() > 0) {
+                links.append("\n");
+            }
+            // TODO Consider applying HTML encoding to the `href` value. Not sure
+            //  it's required.
+            links.append("<link rel=\"stylesheet\" type=\"text/css\" href=\"")
+                    .append(relativizedCss).append("\">");
         }
-        return styles.toString();
+        return links.toString();
+    }
+
+    static Map<String, Long> styleBlockStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", STYLE_BLOCK_HITS.sum());
+        stats.put("misses", STYLE_BLOCK_MISSES.sum());
+        stats.put("entries", (long) (CACHED_LINK_BLOCKS.size() + CACHED_STYLE_BLOCKS.size()));
+        return stats;
     }
 
     public static String generateHtml(String mdText) {
-        MutableDataSet options = new MutableDataSet()
-                .set(
-                        Parser.EXTENSIONS,
-                        Arrays.asList(
-                                TablesExtension.create(),
-                                //StrikethroughExtension.create(),
-                                TocExtension.create(),
-                                //InsExtension.create(),
-                                TypographicExtension.create(),
-                                PythonMarkdownCompatibleAdmonitionExtension.create(),
-                                AttributesExtension.create()
-                        ))
-                .set(TocExtension.LEVELS, 126) // generate ToC for all header levels
-                // TODO looks like the following option doesn't work. Probably need to
-                //  rewrite to `TypographicExtension` in order to use only `EM_DASH`.
-                .set(TypographicExtension.EN_DASH, "--")
-                .set(TypographicExtension.ENABLE_QUOTES, false) // disable &ndash;
-                .set(AttributesExtension.ASSIGN_TEXT_ATTRIBUTES, false);
-
-        // TODO Try to wrap table of contents into a `div` block.
-        //  It's really unclear how to do it.
-        //  See https://github.com/vsch/flexmark-java/wiki/Table-of-Contents-Extension
-
-        Parser parser = Parser.builder(options).build();
-        HtmlRenderer renderer = HtmlRenderer.builder(options).build();
-        Node document = parser.parse(mdText);
-        return renderer.render(document);
+        return generateHtml(mdText, null);
+    }
+
+    /**
+     * Renders the `mdText` with the `profile` or with the default profile if the `profile`
+     * is `null`.
+     */
+    public static String generateHtml(String mdText, RenderingProfile profile) {
+        return (profile == null ? RenderingProfile.defaultProfile() : profile).render(mdText);
     }
 }
@@ -0,0 +1,333 @@
+package world.md2html;
+
+import world.md2html.dependencies.DependencyGraph;
+import world.md2html.options.argfile.DocumentGlobMatcher;
+import world.md2html.options.model.CliOptions;
+import world.md2html.options.model.Document;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.utils.ConsoleBuffer;
+import world.md2html.utils.MustacheUtils;
+import world.md2html.utils.UserError;
+import world.md2html.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static world.md2html.utils.Utils.formatNanoSeconds;
+
+/**
+ * Watches the files the documents were generated from and processes again the documents
+ * affected by the changes. The documents are found by the dependencies recorded in the
+ * dependency graph, so after editing a template or an included file only the pages that use
+ * it are regenerated. When the argument file changes, a file matching a documents' glob is
+ * created or deleted, or a known file is deleted, the arguments are parsed again and all the
+ * documents are checked against their fingerprints. Other created and deleted files (like
+ * the editors' temporary files) are ignored.
+ * <br />
+ * Only the directories containing the known files are watched, the new subdirectories are
+ * picked up after the arguments are parsed again.
+ */
+public class Md2HtmlWatcher {
+
+    /**
+     * Editors often save a file in several steps, the events arriving within this time are
+     * processed together.
+     */
+    private static final long DEBOUNCE_MILLIS = 50;
+    private static final long REGISTRATION_CHECK_MILLIS = 1000;
+
+    /**
+     * Reacts on the changes after the caches are updated. The changes are processed while
+     * holding the handler's monitor, so the handler may synchronize on itself to access the
+     * session from other threads.
+     */
+    @FunctionalInterface
+    public interface ChangeHandler {
+        /**
+         * The `documents` are affected by the `changedFiles`. If the arguments were parsed
+         * again, the `session` is a new one and all its documents are passed.
+         */
+        void documentsChanged(BuildSession session, List<Document> documents,
+                Set<String> changedFiles) throws IOException;
+    }
+
+    private final CliOptions cliOptions;
+    private BuildSession session;
+    private final ChangeHandler changeHandler;
+    private final Map<Path, WatchKey> watchedDirectories = new HashMap<>();
+    private volatile boolean dependenciesChanged = true;
+
+    /**
+     * Creates a watcher that processes the affected documents again.
+     */
+    public Md2HtmlWatcher(CliOptions cliOptions, BuildSession session) {
+        this(cliOptions, session, Md2HtmlWatcher::processDocuments);
+    }
+
+    public Md2HtmlWatcher(CliOptions cliOptions, BuildSession session,
+            ChangeHandler changeHandler) {
+        this.cliOptions = cliOptions;
+        this.session = session;
+        this.changeHandler = changeHandler;
+    }
+
+    /**
+     * Makes the watcher look for new directories to watch. Must be called when documents are
+     * processed outside the watcher, as the processed documents may depend on new files.
+     */
+    public void dependenciesChanged() {
+        this.dependenciesChanged = true;
+    }
+
+    public void watch() throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            System.out.println("Watching for changes. Press Ctrl+C to stop.");
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                if (this.dependenciesChanged) {
+                    this.dependenciesChanged = false;
+                    registerDirectories(watchService);
+                }
+                WatchKey key = watchService.poll(REGISTRATION_CHECK_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+                List<WatchEvent<?>> events = new ArrayList<>();
+                List<Path> eventDirectories = new ArrayList<>();
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        events.add(event);
+                        eventDirectories.add(directory);
+                    }
+                    if (!key.reset()) {
+                        this.watchedDirectories.values().remove(key);
+                    }
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                processEvents(events, eventDirectories);
+                this.dependenciesChanged = true;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped.
+        }
+    }
+
+    private void processEvents(List<WatchEvent<?>> events, List<Path> eventDirectories)
+            throws IOException {
+
+        Set<String> ignoredFiles = ignoredFiles();
+        Set<String> knownFiles = knownFiles();
+        Set<String> changedFiles = new HashSet<>();
+        boolean reload = false;
+        for (int i = 0; i < events.size(); i++) {
+            WatchEvent<?> event = events.get(i);
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                reload = true;
+                continue;
+            }
+            String file = eventDirectories.get(i).resolve((Path) event.context()).normalize()
+                    .toString();
+            if (ignoredFiles.contains(file)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                if (knownFiles.contains(file)) {
+                    changedFiles.add(file);
+                }
+            } else if (knownFiles.contains(file)) {
+                // An editor may save a file by replacing it, that's only a modification.
+                changedFiles.add(file);
+                if (!Files.exists(Paths.get(file))) {
+                    reload = true;
+                }
+            } else if (mayChangeDocuments(file, knownFiles)) {
+                changedFiles.add(file);
+                reload = true;
+            }
+        }
+        if (changedFiles.isEmpty() && !reload) {
+            return;
+        }
+        synchronized (this.changeHandler) {
+            documentsChanged(changedFiles, reload);
+        }
+    }
+
+    private void documentsChanged(Set<String> changedFiles, boolean reload) throws IOException {
+
+        // The generated files (like the wrapped code pages) that depend on the changed files
+        // change as well.
+        DependencyGraph dependencyGraph = this.session.getDependencyGraph();
+        Set<String> affectedOutputs = new HashSet<>();
+        Set<String> newlyChangedFiles = new HashSet<>(changedFiles);
+        while (!newlyChangedFiles.isEmpty()) {
+            Set<String> outputs = dependencyGraph.outputsDependingOn(newlyChangedFiles);
+            newlyChangedFiles = new HashSet<>();
+            for (String output : outputs) {
+                if (affectedOutputs.add(output)) {
+                    newlyChangedFiles.add(normalize(output));
+                }
+            }
+            changedFiles.addAll(newlyChangedFiles);
+        }
+
+        ConsoleBuffer.resetPrintedOnce();
+        Utils.invalidateCachedFiles(changedFiles);
+        MustacheUtils.invalidateCachedRenderers(changedFiles);
+        this.session.getMetadataHandlersWrapper().invalidateExpandedBlocks(changedFiles);
+        dependencyGraph.filesChanged(changedFiles);
+        for (Md2HtmlPlugin plugin : this.session.getArgFile().getPlugins()) {
+            plugin.filesChanged(changedFiles);
+        }
+
+        Path argumentFile = this.session.getArgumentFile();
+        if (argumentFile != null && changedFiles.contains(argumentFile.toString())) {
+            reload = true;
+        }
+        List<Document> documents = this.session.getArgFile().getDocuments();
+        if (!reload && this.session.dependsOnDocumentsContent()) {
+            // Titles or the documents order may have changed.
+            reload = documents.stream().anyMatch(document ->
+                    changedFiles.contains(normalize(document.getInput())));
+        }
+
+        if (reload) {
+            try {
+                this.session = BuildSession.load(this.cliOptions, dependencyGraph);
+            } catch (UserError e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+            documents = this.session.getArgFile().getDocuments();
+        } else {
+            List<Document> affectedDocuments = new ArrayList<>();
+            for (Document document : documents) {
+                if (changedFiles.contains(normalize(document.getInput())) ||
+                        affectedOutputs.contains(document.getOutput())) {
+                    affectedDocuments.add(document);
+                }
+            }
+            documents = affectedDocuments;
+        }
+
+        this.changeHandler.documentsChanged(this.session, documents, changedFiles);
+    }
+
+    private static void processDocuments(BuildSession session, List<Document> documents,
+            Set<String> changedFiles) throws IOException {
+        long start = System.nanoTime();
+        try {
+            session.process(documents, Md2HtmlWatcher::printDocumentError);
+        } catch (UserError e) {
+            System.out.println(e.getMessage());
+        }
+        if (session.getArgFile().getOptions().isVerbose()) {
+            long end = System.nanoTime();
+            System.out.println("Finished in: " + formatNanoSeconds(end - start));
+        }
+    }
+
+    /**
+     * Whether the created or deleted `file` that is not known may be a new document or a
+     * directory containing documents. The other files (like the editors' temporary files) are
+     * ignored.
+     */
+    private boolean mayChangeDocuments(String file, Set<String> knownFiles) {
+        Path path = Paths.get(file);
+        DocumentGlobMatcher documentGlobs = this.session.getArgFile().getDocumentGlobs();
+        if (documentGlobs != null && (documentGlobs.mayMatch(path, false) ||
+                Files.isDirectory(path) && documentGlobs.mayMatch(path, true))) {
+            return true;
+        }
+        // A directory with known files was deleted or renamed.
+        String directoryPrefix = file + path.getFileSystem().getSeparator();
+        for (String knownFile : knownFiles) {
+            if (knownFile.startsWith(directoryPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the files read while generating the documents.
+     */
+    private Set<String> knownFiles() {
+        Set<String> files = new HashSet<>(this.session.getDependencyGraph().dependencyFiles());
+        for (Document document : this.session.getArgFile().getDocuments()) {
+            files.add(normalize(document.getInput()));
+        }
+        if (this.session.getArgumentFile() != null) {
+            files.add(this.session.getArgumentFile().toString());
+        }
+        return files;
+    }
+
+    /**
+     * Returns the files written while generating the documents, the changes in them must
+     * not cause processing the documents again.
+     */
+    private Set<String> ignoredFiles() {
+        Set<String> files = new HashSet<>();
+        DependencyGraph dependencyGraph = this.session.getDependencyGraph();
+        for (String output : dependencyGraph.outputs()) {
+            files.add(normalize(output));
+        }
+        for (Document document : this.session.getArgFile().getDocuments()) {
+            files.add(normalize(document.getOutput()));
+        }
+        Path dependencyFile = dependencyGraph.getFile();
+        if (dependencyFile != null) {
+            files.add(dependencyFile.normalize().toString());
+            files.add(dependencyFile.resolveSibling(dependencyFile.getFileName() + ".tmp")
+                    .normalize().toString());
+        }
+        return files;
+    }
+
+    private void registerDirectories(WatchService watchService) throws IOException {
+        for (String file : knownFiles()) {
+            Path directory = Paths.get(file).getParent();
+            if (directory == null) {
+                directory = Paths.get("");
+            }
+            if (!this.watchedDirectories.containsKey(directory) &&
+                    Files.isDirectory(directory)) {
+                // An empty path is not accepted by the watch service.
+                Path watchedPath = directory.toString().isEmpty() ? Paths.get(".") : directory;
+                WatchKey key = watchedPath.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                this.watchedDirectories.put(directory, key);
+            }
+        }
+    }
+
+    private static String normalize(String file) {
+        return Paths.get(file).normalize().toString();
+    }
+
+    private static void printDocumentError(Document doc, UserError e) {
+        System.out.println("Error processing input file '" + doc.getInput() +
+                "': " + e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+
+}
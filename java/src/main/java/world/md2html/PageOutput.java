@@ -0,0 +1,14 @@
+package world.md2html;
+
+import world.md2html.options.model.Document;
+
+/**
+ * Receives the generated pages. By default the pages are written to the output files, the
+ * preview server keeps them in memory instead.
+ */
+@FunctionalInterface
+public interface PageOutput {
+
+    void write(Document document, String pageText);
+
+}
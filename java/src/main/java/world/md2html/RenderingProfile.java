@@ -0,0 +1,148 @@
+package world.md2html;
+
+import com.vladsch.flexmark.ext.attributes.AttributesExtension;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
+import com.vladsch.flexmark.ext.toc.TocExtension;
+import com.vladsch.flexmark.ext.typographic.TypographicExtension;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.misc.Extension;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+import world.md2html.extentions.admonition.PythonMarkdownCompatibleAdmonitionExtension;
+import world.md2html.utils.Profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Markdown to HTML rendering setup: the set of the flexmark extensions and their options.
+ * <br />
+ * A profile's parser and renderer are built once and are immutable, so a profile may be used
+ * by several threads at the same time. Profiles with equal settings are the same object.
+ */
+public class RenderingProfile {
+
+    public static final String DEFAULT_PROFILE_NAME = "default";
+
+    public enum MarkdownExtension {
+        TABLES("tables", TablesExtension::create),
+        TOC("toc", TocExtension::create),
+        TYPOGRAPHIC("typographic", TypographicExtension::create),
+        ADMONITION("admonition", PythonMarkdownCompatibleAdmonitionExtension::create),
+        ATTRIBUTES("attributes", AttributesExtension::create);
+
+        @Getter
+        private final String name;
+        private final Supplier<Extension> factory;
+
+        MarkdownExtension(String name, Supplier<Extension> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public static MarkdownExtension fromName(String name) {
+            for (MarkdownExtension extension : values()) {
+                if (extension.name.equals(name)) {
+                    return extension;
+                }
+            }
+            throw new IllegalArgumentException("Unknown Markdown extension: " + name);
+        }
+    }
+
+    @Value
+    @Builder(toBuilder = true)
+    public static class Settings {
+        Set<MarkdownExtension> extensions;
+        /**
+         * Header levels (1 to 6) included into the table of contents.
+         */
+        Set<Integer> tocLevels;
+        boolean typographicQuotes;
+        boolean typographicSmarts;
+    }
+
+    public static final Settings DEFAULT_SETTINGS = Settings.builder()
+            .extensions(Collections.unmodifiableSet(EnumSet.allOf(MarkdownExtension.class)))
+            .tocLevels(Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(1, 2, 3, 4, 5, 6))))
+            .typographicQuotes(false)
+            .typographicSmarts(true)
+            .build();
+
+    private static final Map<Settings, RenderingProfile> PROFILES = new ConcurrentHashMap<>();
+
+    @Getter
+    private final Settings settings;
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+
+    private RenderingProfile(Settings settings) {
+
+        List<Extension> extensions = new ArrayList<>();
+        // Keeping the extensions order stable as it may affect the result.
+        for (MarkdownExtension extension : MarkdownExtension.values()) {
+            if (settings.getExtensions().contains(extension)) {
+                extensions.add(extension.factory.get());
+            }
+        }
+
+        int tocLevels = 0;
+        for (int level : settings.getTocLevels()) {
+            tocLevels |= 1 << level;
+        }
+
+        MutableDataSet options = new MutableDataSet()
+                .set(Parser.EXTENSIONS, extensions)
+                .set(TocExtension.LEVELS, tocLevels)
+                // TODO looks like the following option doesn't work. Probably need to
+                //  rewrite to `TypographicExtension` in order to use only `EM_DASH`.
+                .set(TypographicExtension.EN_DASH, "--")
+                .set(TypographicExtension.ENABLE_QUOTES, settings.isTypographicQuotes())
+                .set(TypographicExtension.ENABLE_SMARTS, settings.isTypographicSmarts())
+                .set(AttributesExtension.ASSIGN_TEXT_ATTRIBUTES, false);
+
+        // TODO Try to wrap table of contents into a `div` block.
+        //  It's really unclear how to do it.
+        //  See https://github.com/vsch/flexmark-java/wiki/Table-of-Contents-Extension
+
+        this.settings = settings;
+        this.parser = Parser.builder(options).build();
+        this.renderer = HtmlRenderer.builder(options).build();
+    }
+
+    public static RenderingProfile forSettings(Settings settings) {
+        return PROFILES.computeIfAbsent(settings, RenderingProfile::new);
+    }
+
+    public static RenderingProfile defaultProfile() {
+        return forSettings(DEFAULT_SETTINGS);
+    }
+
+    public String render(String mdText) {
+        Node document;
+        try (Profiler.Measurement ignored = Profiler.measure("markdown-parse")) {
+            document = this.parser.parse(mdText);
+        }
+        try (Profiler.Measurement ignored = Profiler.measure("markdown-render")) {
+            return this.renderer.render(document);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenderingProfile(settings=" + this.settings + ")";
+    }
+
+}
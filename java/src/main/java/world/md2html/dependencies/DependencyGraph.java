@@ -0,0 +1,362 @@
+package world.md2html.dependencies;
+
+import world.md2html.Constants;
+import world.md2html.options.model.Document;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.utils.Hashing;
+import world.md2html.utils.UserError;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The build manifest: the dependencies of the output files recorded while rendering them,
+ * persisted between runs.
+ * <br />
+ * Every output has a fingerprint computed from the content hashes of the files it was
+ * generated from and the hashes of the configuration it depends on. An output file is
+ * rebuilt only if its fingerprint differs from the one of the last successful build. File
+ * content is hashed again only if the file's modification time or size changed, so a file
+ * touched (or restored by `git checkout`) with the same content doesn't cause a rebuild.
+ */
+public class DependencyGraph {
+
+    private static final int MAGIC = 0x4D443248;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final FileState MISSING_FILE = new FileState(-1, -1, 0);
+
+    private static class FileState {
+        private final long modified;
+        private final long size;
+        private final long hash;
+
+        private FileState(long modified, long size, long hash) {
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    private static class Entry {
+        private final long fingerprint;
+        private final String[] files;
+
+        private Entry(long fingerprint, String[] files) {
+            this.fingerprint = fingerprint;
+            this.files = files;
+        }
+    }
+
+    private final Path file;
+    private final String configurationHash;
+    private final Map<String, Entry> entries;
+    /**
+     * File states as they were recorded in the manifest.
+     */
+    private final Map<String, FileState> recordedFiles;
+    /**
+     * File states checked in the current run (in the watch mode, since the last change of the
+     * file).
+     */
+    private final Map<String, FileState> currentFiles;
+
+    private DependencyGraph(Path file, String configurationHash, Map<String, Entry> entries,
+            Map<String, FileState> recordedFiles) {
+        this(file, configurationHash, entries, recordedFiles, new ConcurrentHashMap<>());
+    }
+
+    private DependencyGraph(Path file, String configurationHash, Map<String, Entry> entries,
+            Map<String, FileState> recordedFiles, Map<String, FileState> currentFiles) {
+        this.file = file;
+        this.configurationHash = configurationHash;
+        this.entries = entries;
+        this.recordedFiles = recordedFiles;
+        this.currentFiles = currentFiles;
+    }
+
+    /**
+     * Loads the manifest from the `file`. A missing or unreadable file results in an empty
+     * manifest, i.e. all the outputs are rebuilt. The `configuration` maps the names of the
+     * configuration blocks all the pages depend on to their content.
+     */
+    public static DependencyGraph load(Path file, Map<String, String> configuration) {
+        String configurationHash = configurationHash(configuration);
+
+        DependencyGraph graph = null;
+        if (Files.exists(file)) {
+            try {
+                graph = read(file, configurationHash);
+            } catch (IOException e) {
+                // Intentional ignore: the outputs will be rebuilt and the file rewritten.
+            }
+        }
+        return graph != null ? graph : new DependencyGraph(file, configurationHash,
+                new ConcurrentHashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Creates an empty graph that is not persisted. Is used in the watch mode to find the
+     * documents affected by the changed files.
+     */
+    public static DependencyGraph inMemory(Map<String, String> configuration) {
+        return new DependencyGraph(null, configurationHash(configuration),
+                new ConcurrentHashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Creates a graph with the same dependencies and the new `configuration`. Is used when the
+     * arguments are parsed again in the watch mode.
+     */
+    public DependencyGraph withConfiguration(Map<String, String> configuration) {
+        return new DependencyGraph(this.file, configurationHash(configuration), this.entries,
+                this.recordedFiles, this.currentFiles);
+    }
+
+    private static String configurationHash(Map<String, String> configuration) {
+        StringBuilder configurationText = new StringBuilder();
+        new TreeMap<>(configuration).forEach((name, block) -> configurationText.append(name)
+                .append('=').append(hashToString(Hashing.hash64(block))).append('\n'));
+        return hashToString(Hashing.hash64(configurationText.toString()));
+    }
+
+    private static DependencyGraph read(Path file, String configurationHash)
+            throws IOException {
+        // The whole file is read at once and parsed in memory, this is much faster than
+        // reading it through a stream.
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported dependency file format: " + file);
+            }
+            String[] paths = new String[buffer.getInt()];
+            Map<String, FileState> recordedFiles = new HashMap<>(capacity(paths.length));
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = readString(buffer);
+                recordedFiles.put(paths[i], new FileState(buffer.getLong(), buffer.getLong(),
+                        buffer.getLong()));
+            }
+            int entryCount = buffer.getInt();
+            Map<String, Entry> entries = new ConcurrentHashMap<>(capacity(entryCount));
+            for (int i = 0; i < entryCount; i++) {
+                String output = readString(buffer);
+                long fingerprint = buffer.getLong();
+                String[] files = new String[buffer.getInt()];
+                for (int j = 0; j < files.length; j++) {
+                    files[j] = paths[buffer.getInt()];
+                }
+                entries.put(output, new Entry(fingerprint, files));
+            }
+            return new DependencyGraph(file, configurationHash, entries, recordedFiles);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted dependency file: " + file, e);
+        }
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String result = new String(buffer.array(), buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public void save() {
+        if (this.file == null) {
+            return;
+        }
+        Map<String, Integer> fileIndexes = new LinkedHashMap<>();
+        Map<String, Entry> sortedEntries = new TreeMap<>(this.entries);
+        for (Entry entry : sortedEntries.values()) {
+            for (String path : entry.files) {
+                fileIndexes.putIfAbsent(path, fileIndexes.size());
+            }
+        }
+        Path tempFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try {
+            Path parent = this.file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(fileIndexes.size());
+                for (String path : fileIndexes.keySet()) {
+                    FileState state = this.currentFiles.getOrDefault(path,
+                            this.recordedFiles.getOrDefault(path, MISSING_FILE));
+                    writeString(output, path);
+                    output.writeLong(state.modified);
+                    output.writeLong(state.size);
+                    output.writeLong(state.hash);
+                }
+                output.writeInt(sortedEntries.size());
+                for (Map.Entry<String, Entry> entry : sortedEntries.entrySet()) {
+                    writeString(output, entry.getKey());
+                    output.writeLong(entry.getValue().fingerprint);
+                    output.writeInt(entry.getValue().files.length);
+                    for (String path : entry.getValue().files) {
+                        output.writeInt(fileIndexes.get(path));
+                    }
+                }
+            }
+            Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UserError("Error writing dependency file '" + this.file + "': " +
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the facts the `document` output depends on in the current run.
+     */
+    public Map<String, String> pageFacts(Document document, Iterable<Md2HtmlPlugin> plugins) {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("version", Constants.EXEC_VERSION);
+        facts.put("configuration", this.configurationHash);
+        // The flags that affect only the way the document is processed.
+        facts.put("document", hashToString(Hashing.hash64(document.toBuilder().force(false)
+                .verbose(false).report(false).build().toString())));
+        for (Md2HtmlPlugin plugin : plugins) {
+            String fact = plugin.dependencyFact(document);
+            if (fact != null) {
+                facts.put("plugin:" + plugin.getClass().getSimpleName(), fact);
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * Checks whether the `output` file fingerprint computed from the current state of its
+     * dependencies equals the fingerprint of the last successful build.
+     */
+    public boolean isUpToDate(String output, Map<String, String> facts) {
+        Entry entry = this.entries.get(output);
+        return entry != null && entry.fingerprint == fingerprint(facts, entry.files);
+    }
+
+    public void update(String output, PageDependencies dependencies) {
+        String[] files = dependencies.getFiles().toArray(new String[0]);
+        Arrays.sort(files);
+        this.entries.put(output, new Entry(fingerprint(dependencies.getFacts(), files), files));
+    }
+
+    /**
+     * Forgets the `output`, so it's not up-to-date any more.
+     */
+    public void remove(String output) {
+        this.entries.remove(output);
+    }
+
+    /**
+     * Makes the graph check the `files` again. Is used in the watch mode when the files change.
+     */
+    public void filesChanged(Set<String> files) {
+        files.forEach(this.currentFiles::remove);
+    }
+
+    /**
+     * Returns the outputs generated from any of the `files`.
+     */
+    public Set<String> outputsDependingOn(Set<String> files) {
+        Set<String> outputs = new HashSet<>();
+        this.entries.forEach((output, entry) -> {
+            for (String path : entry.files) {
+                if (files.contains(path)) {
+                    outputs.add(output);
+                    break;
+                }
+            }
+        });
+        return outputs;
+    }
+
+    /**
+     * Returns all the files the outputs depend on.
+     */
+    public Set<String> dependencyFiles() {
+        Set<String> files = new HashSet<>();
+        this.entries.values().forEach(entry -> files.addAll(Arrays.asList(entry.files)));
+        return files;
+    }
+
+    /**
+     * Returns the outputs recorded in the graph.
+     */
+    public Set<String> outputs() {
+        return new HashSet<>(this.entries.keySet());
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    private long fingerprint(Map<String, String> facts, String[] files) {
+        StringBuilder text = new StringBuilder();
+        new TreeMap<>(facts).forEach((key, value) ->
+                text.append(key).append('=').append(value).append('\n'));
+        for (String path : files) {
+            FileState state = this.currentFiles.computeIfAbsent(path, this::readFileState);
+            text.append("file:").append(path).append('=');
+            text.append(state == MISSING_FILE ? "-" : hashToString(state.hash)).append('\n');
+        }
+        return Hashing.hash64(text.toString());
+    }
+
+    private FileState readFileState(String path) {
+        Path filePath = Paths.get(path);
+        try {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(filePath, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            FileState recorded = this.recordedFiles.get(path);
+            if (recorded != null && recorded.modified == modified && recorded.size == size) {
+                return recorded;
+            }
+            return new FileState(modified, size, Hashing.hash64(Files.readAllBytes(filePath)));
+        } catch (NoSuchFileException e) {
+            return MISSING_FILE;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading dependency file '" + path + "'", e);
+        }
+    }
+
+    public static String hashToString(long hash) {
+        return Long.toHexString(hash);
+    }
+
+}
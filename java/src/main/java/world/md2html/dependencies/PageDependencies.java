@@ -0,0 +1,69 @@
+package world.md2html.dependencies;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the output of a page depends on: the files read while rendering the page and the
+ * facts (the configuration and the data of other pages) that are not files.
+ */
+public class PageDependencies {
+
+    private final Set<String> files = new HashSet<>();
+    private Map<String, String> facts = Collections.emptyMap();
+    /**
+     * The recordings in progress, the innermost one is the last.
+     */
+    private final List<Set<String>> recordings = new ArrayList<>();
+
+    public void addFile(Path file) {
+        addFiles(Collections.singleton(file.normalize().toString()));
+    }
+
+    /**
+     * Adds the `files` given as normalized path strings, e.g. recorded before.
+     */
+    public void addFiles(Collection<String> files) {
+        this.files.addAll(files);
+        for (Set<String> recording : this.recordings) {
+            recording.addAll(files);
+        }
+    }
+
+    /**
+     * Starts collecting only the files added from now on into the returned set. A file added
+     * before gets into the set only when it's added again. The recordings may be nested and
+     * must be stopped in the reverse order.
+     */
+    public Set<String> startRecording() {
+        Set<String> recording = new HashSet<>();
+        this.recordings.add(recording);
+        return recording;
+    }
+
+    public void stopRecording(Set<String> recording) {
+        Set<String> last = this.recordings.remove(this.recordings.size() - 1);
+        if (last != recording) {
+            throw new IllegalStateException("Recordings must be stopped in the reverse order.");
+        }
+    }
+
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(this.files);
+    }
+
+    public Map<String, String> getFacts() {
+        return this.facts;
+    }
+
+    public void setFacts(Map<String, String> facts) {
+        this.facts = facts;
+    }
+
+}
@@ -7,30 +7,34 @@ import com.fasterxml.jackson.databind.node.BooleanNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.javatuples.Pair;
 import world.md2html.Constants;
+import world.md2html.RenderingProfile;
 import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
 import world.md2html.options.model.Document;
+import world.md2html.options.model.PageBudget;
+import world.md2html.options.model.PipelineOptions;
 import world.md2html.options.model.SessionOptions;
 import world.md2html.options.model.raw.ArgFileDocumentRaw;
 import world.md2html.options.model.raw.ArgFileOptionsRaw;
+import world.md2html.options.model.raw.ArgFilePageBudgetRaw;
+import world.md2html.options.model.raw.ArgFilePipelineRaw;
 import world.md2html.options.model.raw.ArgFileRaw;
+import world.md2html.options.model.raw.ArgFileRenderingProfileRaw;
+import world.md2html.pagemetadata.MetadataScan;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageContext;
+import world.md2html.utils.Profiler;
 import world.md2html.utils.UserError;
 import world.md2html.utils.Utils;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -39,6 +43,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import static world.md2html.utils.JsonUtils.JsonValidationException;
@@ -62,6 +67,11 @@ public class ArgFileParsingHelper {
     private ArgFileParsingHelper() {
     }
 
+    /**
+     * Parses and validates the argument file content. When the `validation-cache` option is
+     * defined and the content is the same as in the last run that validated it, the schema
+     * validation is skipped.
+     */
     public static ArgFileRaw readArgumentFileNode(String argumentFileContent)
             throws ArgFileParseException {
         JsonNode argFileJsonNode;
@@ -78,10 +88,22 @@ public class ArgFileParsingHelper {
             throw new ArgFileParseException("Argument file content is not a JSON object: " +
                     argFileJsonNode);
         }
-        try {
-            validateJsonAgainstSchemaFromResource(argFileNode, "args_file_schema.json");
-        } catch (JsonValidationException e) {
-            throw new ArgFileParseException("Argument file validation error: " + e.getMessage());
+        // Read before the validation, so only a string value is taken into account.
+        String validationCache = argFileNode.path("options").path("validation-cache")
+                .textValue();
+        Path validationCacheFile = validationCache == null ? null : Paths.get(validationCache);
+        if (validationCacheFile == null ||
+                !ArgFileValidationCache.isValidated(validationCacheFile, argumentFileContent)) {
+            try {
+                validateJsonAgainstSchemaFromResource(argFileNode, "args_file_schema.json");
+            } catch (JsonValidationException e) {
+                throw new ArgFileParseException("Argument file validation error: " +
+                        e.getMessage());
+            }
+            if (validationCacheFile != null) {
+                ArgFileValidationCache.recordValidated(validationCacheFile,
+                        argumentFileContent);
+            }
         }
         ArgFileRaw argFileRaw;
         try {
@@ -152,6 +174,7 @@ public class ArgFileParsingHelper {
                 ArgFileOptionsRaw.builder().build());
         boolean verbose = cliOptions.isVerbose() || options.isVerbose();
         boolean legacyMode = cliOptions.isLegacyMode() || options.isLegacyMode();
+        Integer jobs = firstNotNull(cliOptions.getJobs(), options.getJobs());
 
         if (verbose && cliOptions.isReport()) {
             throw new UserError("'verbose' parameter in 'options' section is incompatible " +
@@ -161,6 +184,14 @@ public class ArgFileParsingHelper {
         return ArgFileOptionsRaw.builder()
                 .verbose(verbose)
                 .legacyMode(legacyMode)
+                .jobs(jobs)
+                .renderingProfiles(options.getRenderingProfiles())
+                .pipeline(options.getPipeline())
+                .dependencyFile(options.getDependencyFile())
+                .fileCacheSize(options.getFileCacheSize())
+                .validationCache(options.getValidationCache())
+                .listingCache(options.getListingCache())
+                .pageBudget(options.getPageBudget())
                 .build();
     }
 
@@ -215,6 +246,8 @@ public class ArgFileParsingHelper {
             argFileDocumentRawBuilder.sortByFilePath(sortByFilePath);
             argFileDocumentRawBuilder.sortByVariable(sortByVariable);
             argFileDocumentRawBuilder.sortByTitle(sortByTitle);
+            argFileDocumentRawBuilder.inputGlobExclude(firstNotNull(
+                    documentRaw.getInputGlobExclude(), defaults.getInputGlobExclude()));
         }
 
         String output = firstNotNull(cliOptions.getOutput(), documentRaw.getOutput(),
@@ -326,6 +359,9 @@ public class ArgFileParsingHelper {
         }
         argFileDocumentRawBuilder.pageFlows(pageFlows);
 
+        argFileDocumentRawBuilder.renderingProfile(firstNotNull(documentRaw.getRenderingProfile(),
+                defaults.getRenderingProfile()));
+
         return argFileDocumentRawBuilder.build();
     }
 
@@ -348,12 +384,16 @@ public class ArgFileParsingHelper {
         extraPluginData.put("page-flows", documentsPageFlowsPlugin);
 
         List<ArgFileDocumentRaw> documentsRaw;
-        try {
-            documentsRaw = expandDocumentGlobs(canonizedArgFileRaw.getDocuments(), plugins);
+        try (Profiler.Measurement ignored = Profiler.measure("glob-expansion")) {
+            documentsRaw = expandDocumentGlobs(canonizedArgFileRaw.getDocuments(), plugins,
+                    optionsRaw.getListingCache());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        Map<String, RenderingProfile> renderingProfiles =
+                createRenderingProfiles(optionsRaw.getRenderingProfiles());
+
         List<Document> documents = new ArrayList<>(documentsRaw.size());
 
         Set<String> uniqueCodes = new HashSet<>();
@@ -378,6 +418,9 @@ public class ArgFileParsingHelper {
                     .force(enrichedDocumentRaw.isForce())
                     .verbose(enrichedDocumentRaw.isVerbose())
                     .report(enrichedDocumentRaw.isReport())
+                    .renderingProfile(findRenderingProfile(renderingProfiles,
+                            enrichedDocumentRaw))
+                    .metadataScan(enrichedDocumentRaw.getTechMetadataScan())
                     .build();
 
             if (uniqueCodes.contains(document.getCode())) {
@@ -409,16 +452,111 @@ public class ArgFileParsingHelper {
                 .options(SessionOptions.builder()
                         .verbose(optionsRaw.isVerbose())
                         .legacyMode(optionsRaw.isLegacyMode())
+                        .jobs(resolveJobCount(optionsRaw.getJobs()))
+                        .pipeline(createPipelineOptions(optionsRaw.getPipeline()))
+                        .dependencyFile(optionsRaw.getDependencyFile())
+                        .fileCacheSize(optionsRaw.getFileCacheSize())
+                        .pageBudget(createPageBudget(optionsRaw.getPageBudget()))
                         .build())
                 .documents(documents)
+                .documentGlobs(new DocumentGlobMatcher(
+                        documentGlobs(canonizedArgFileRaw.getDocuments())))
                 .build();
 
         return new Pair<>(argFile, extraPluginData);
     }
 
+    /**
+     * Creates the rendering profiles defined in the `options` section. The `default` profile
+     * is always defined but may be redefined in the argument file.
+     */
+    private static Map<String, RenderingProfile> createRenderingProfiles(
+            Map<String, ArgFileRenderingProfileRaw> profilesRaw) {
+        Map<String, RenderingProfile> profiles = new HashMap<>();
+        profiles.put(RenderingProfile.DEFAULT_PROFILE_NAME, RenderingProfile.defaultProfile());
+        if (profilesRaw != null) {
+            profilesRaw.forEach((name, profileRaw) -> profiles.put(name,
+                    RenderingProfile.forSettings(createRenderingProfileSettings(profileRaw))));
+        }
+        return profiles;
+    }
+
+    private static RenderingProfile.Settings createRenderingProfileSettings(
+            ArgFileRenderingProfileRaw profileRaw) {
+        RenderingProfile.Settings.SettingsBuilder settingsBuilder =
+                RenderingProfile.DEFAULT_SETTINGS.toBuilder();
+        if (profileRaw.getExtensions() != null) {
+            Set<RenderingProfile.MarkdownExtension> extensions =
+                    EnumSet.noneOf(RenderingProfile.MarkdownExtension.class);
+            profileRaw.getExtensions().forEach(name ->
+                    extensions.add(RenderingProfile.MarkdownExtension.fromName(name)));
+            settingsBuilder.extensions(extensions);
+        }
+        if (profileRaw.getTocLevels() != null) {
+            settingsBuilder.tocLevels(new TreeSet<>(profileRaw.getTocLevels()));
+        }
+        if (profileRaw.getTypographicQuotes() != null) {
+            settingsBuilder.typographicQuotes(profileRaw.getTypographicQuotes());
+        }
+        if (profileRaw.getTypographicSmarts() != null) {
+            settingsBuilder.typographicSmarts(profileRaw.getTypographicSmarts());
+        }
+        return settingsBuilder.build();
+    }
+
+    private static RenderingProfile findRenderingProfile(
+            Map<String, RenderingProfile> renderingProfiles, ArgFileDocumentRaw documentRaw) {
+        String name = firstNotNull(documentRaw.getRenderingProfile(),
+                RenderingProfile.DEFAULT_PROFILE_NAME);
+        RenderingProfile profile = renderingProfiles.get(name);
+        if (profile == null) {
+            throw new UserError("Undefined rendering profile '" + name +
+                    "' for 'documents' item: " + refineToString(documentRaw));
+        }
+        return profile;
+    }
+
+    private static int resolveJobCount(Integer jobs) {
+        if (jobs == null) {
+            return 1;
+        } else if (jobs == 0) {
+            return Runtime.getRuntime().availableProcessors();
+        } else {
+            return jobs;
+        }
+    }
+
+    private static PipelineOptions createPipelineOptions(ArgFilePipelineRaw pipelineRaw) {
+        if (pipelineRaw == null) {
+            return null;
+        }
+        PipelineOptions defaults = PipelineOptions.DEFAULT;
+        return PipelineOptions.builder()
+                .readThreads(firstNotNull(pipelineRaw.getReadThreads(),
+                        defaults.getReadThreads()))
+                .writeThreads(firstNotNull(pipelineRaw.getWriteThreads(),
+                        defaults.getWriteThreads()))
+                .queueSize(firstNotNull(pipelineRaw.getQueueSize(), defaults.getQueueSize()))
+                .build();
+    }
+
+    private static PageBudget createPageBudget(ArgFilePageBudgetRaw pageBudgetRaw) {
+        if (pageBudgetRaw == null) {
+            return null;
+        }
+        PageBudget unlimited = PageBudget.UNLIMITED;
+        return PageBudget.builder()
+                .maxExpandedSize(firstNotNull(pageBudgetRaw.getMaxExpandedSize(),
+                        unlimited.getMaxExpandedSize()))
+                .maxHandlerCalls(firstNotNull(pageBudgetRaw.getMaxHandlerCalls(),
+                        unlimited.getMaxHandlerCalls()))
+                .maxTime(firstNotNull(pageBudgetRaw.getMaxTime(), unlimited.getMaxTime()))
+                .build();
+    }
+
     private static List<ArgFileDocumentRaw> expandDocumentGlobs(
-            List<ArgFileDocumentRaw> documentsRaw, Map<String, Md2HtmlPlugin> plugins)
-            throws IOException {
+            List<ArgFileDocumentRaw> documentsRaw, Map<String, Md2HtmlPlugin> plugins,
+            String listingCache) throws IOException {
 
         // TODO Test the case when page metadata is absent. Must work correctly.
 
@@ -431,14 +569,28 @@ public class ArgFileParsingHelper {
                     Collections.singletonList(pageVariablesPlugin));
         }
 
+        // The trees are walked once for all the documents.
+        List<GlobWalker.Glob> globs = documentGlobs(documentsRaw);
+        Map<GlobWalker.Glob, List<Path>> globPaths;
+        if (globs.isEmpty()) {
+            globPaths = Collections.emptyMap();
+        } else if (listingCache != null) {
+            DirectoryListingCache directoryListingCache =
+                    DirectoryListingCache.load(Paths.get(listingCache));
+            globPaths = GlobWalker.expand(globs, directoryListingCache);
+            directoryListingCache.save();
+        } else {
+            globPaths = GlobWalker.expand(globs);
+        }
+
         for (ArgFileDocumentRaw documentRaw : documentsRaw) {
             if (isNullOrEmpty(documentRaw.getInputGlob())) {
                 expandedDocumentRawList.add(documentRaw);
             } else {
                 Path inputRootPath = Paths.get(documentRaw.getInputRoot());
                 // TODO Check whether right slashes are used in Linux and Windows.
-                List<Path> globPathList = new ArrayList<>(expandGlob(documentRaw.getInputGlob(),
-                        inputRootPath));
+                List<Path> globPathList = new ArrayList<>(globPaths.get(
+                        documentGlob(documentRaw)));
 
                 // TODO Consider moving this sort lower where the final input file path is defined.
                 if (documentRaw.isSortByFilePath()) {
@@ -452,6 +604,7 @@ public class ArgFileParsingHelper {
                     ArgFileDocumentRaw.ArgFileDocumentRawBuilder globDocumentRawBuilder =
                             documentRaw.toBuilder();
                     globDocumentRawBuilder.inputGlob(null);
+                    globDocumentRawBuilder.inputGlobExclude(null);
                     globDocumentRawBuilder.input(inputRootPath.toAbsolutePath()
                             .relativize(globPath.toAbsolutePath()).toString());
 
@@ -459,15 +612,19 @@ public class ArgFileParsingHelper {
                             documentRaw.getCodeFromVariable() != null ||
                             documentRaw.getSortByVariable() != null) &&
                             pageMetadataHandlersWrapper != null) {
-                        pageVariablesPlugin.newPage(null);
+                        PageContext pageContext = new PageContext(null);
+                        pageVariablesPlugin.newPage(pageContext);
                         String inputFileString = supplyWithFileExceptionAsUserError(
                                 () -> getCachedString(globPath, Utils::readStringFromUtf8File),
                                 "Error processing GLOB path '" + globPath + "'"
                         );
+                        // Kept for the rendering to not scan the page again.
+                        MetadataScan metadataScan = MetadataScan.of(inputFileString);
+                        globDocumentRawBuilder.techMetadataScan(metadataScan);
                         pageMetadataHandlersWrapper.applyMetadataHandlers(inputFileString,
-                                null);
+                                pageContext, metadataScan);
                         Map<String, Object> pageVariables =
-                                pageVariablesPlugin.variables(null);
+                                pageVariablesPlugin.variables(pageContext);
 
                         Optional.ofNullable(documentRaw.getTitleFromVariable())
                                 .flatMap(titleVar ->
@@ -503,26 +660,25 @@ public class ArgFileParsingHelper {
         return expandedDocumentRawList;
     }
 
-    public static List<Path> expandGlob(String glob, Path relativeTo)
-            throws IOException {
-
-        List<Path> pathList = new ArrayList<>();
-        final PathMatcher pathMatcher = FileSystems.getDefault()
-                .getPathMatcher("glob:" + glob.replace("**/", "**"));
-
-        Files.walkFileTree(relativeTo, new SimpleFileVisitor<Path>() {
-
-            @Override
-            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-                Path relativePath = relativeTo.toAbsolutePath().relativize(path.toAbsolutePath());
-                if (pathMatcher.matches(relativePath)) {
-                    pathList.add(path);
-                }
-                return FileVisitResult.CONTINUE;
+    private static List<GlobWalker.Glob> documentGlobs(List<ArgFileDocumentRaw> documentsRaw) {
+        List<GlobWalker.Glob> globs = new ArrayList<>();
+        for (ArgFileDocumentRaw documentRaw : documentsRaw) {
+            if (!isNullOrEmpty(documentRaw.getInputGlob())) {
+                globs.add(documentGlob(documentRaw));
             }
-        });
+        }
+        return globs;
+    }
+
+    private static GlobWalker.Glob documentGlob(ArgFileDocumentRaw documentRaw) {
+        return new GlobWalker.Glob(documentRaw.getInputGlob(),
+                Paths.get(documentRaw.getInputRoot()), documentRaw.getInputGlobExclude());
+    }
 
-        return pathList;
+    public static List<Path> expandGlob(String glob, Path relativeTo)
+            throws IOException {
+        GlobWalker.Glob walkerGlob = new GlobWalker.Glob(glob, relativeTo, null);
+        return GlobWalker.expand(Collections.singletonList(walkerGlob)).get(walkerGlob);
     }
 
     public static ArgFileDocumentRaw enrichDocument(ArgFileDocumentRaw documentRaw) {
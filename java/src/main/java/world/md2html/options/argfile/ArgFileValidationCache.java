@@ -0,0 +1,52 @@
+package world.md2html.options.argfile;
+
+import world.md2html.utils.Hashing;
+import world.md2html.utils.UserError;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static world.md2html.Constants.EXEC_VERSION;
+
+/**
+ * Keeps the hash of the last argument file that passed the schema validation in the file
+ * defined by the `validation-cache` option. While the argument file content doesn't change,
+ * its schema validation is skipped. The program version is a part of the hash as the schema
+ * may change between the versions.
+ */
+class ArgFileValidationCache {
+
+    private ArgFileValidationCache() {
+    }
+
+    static boolean isValidated(Path cacheFile, String argumentFileContent) {
+        String recordedHash;
+        try {
+            recordedHash = new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Missing or unreadable, the argument file will be validated.
+            return false;
+        }
+        return recordedHash.trim().equals(hash(argumentFileContent));
+    }
+
+    static void recordValidated(Path cacheFile, String argumentFileContent) {
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(cacheFile, hash(argumentFileContent).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UserError("Error writing validation cache file '" + cacheFile + "': " +
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private static String hash(String argumentFileContent) {
+        return String.format("%016x", Hashing.hash64(EXEC_VERSION + "\n" + argumentFileContent));
+    }
+
+}
@@ -0,0 +1,186 @@
+package world.md2html.options.argfile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the directory listings of the GLOB expansion in the file defined by the
+ * `listing-cache` option. A directory whose modification time didn't change since it was
+ * listed is not listed again, as adding, removing or renaming an entry changes it.
+ * <br />
+ * A listing is not kept if the directory was modified shortly before it was listed: another
+ * change within the file system time resolution may not change the modification time.
+ */
+class DirectoryListingCache {
+
+    private static final int MAGIC = 0x4D44324C;
+    private static final int FORMAT_VERSION = 1;
+    private static final long MIN_LISTING_AGE = TimeUnit.SECONDS.toMillis(2);
+
+    private static class Listing {
+        private final long modified;
+        private final GlobWalker.DirectoryEntry[] entries;
+
+        private Listing(long modified, GlobWalker.DirectoryEntry[] entries) {
+            this.modified = modified;
+            this.entries = entries;
+        }
+    }
+
+    private final Path file;
+    /**
+     * The listings read from the file, by the absolute directory paths.
+     */
+    private final Map<String, Listing> recordedListings;
+    /**
+     * The listings of the directories walked in this run, only they are saved.
+     */
+    private final Map<String, Listing> currentListings = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    private DirectoryListingCache(Path file, Map<String, Listing> recordedListings) {
+        this.file = file;
+        this.recordedListings = recordedListings;
+    }
+
+    /**
+     * Loads the listings from the `file`. A missing or unreadable file results in an empty
+     * cache, i.e. all the directories are listed.
+     */
+    static DirectoryListingCache load(Path file) {
+        Map<String, Listing> listings = null;
+        if (Files.exists(file)) {
+            try {
+                listings = read(file);
+            } catch (IOException e) {
+                // Intentional ignore: the directories will be listed and the file rewritten.
+            }
+        }
+        return new DirectoryListingCache(file, listings != null ? listings : new TreeMap<>());
+    }
+
+    private static Map<String, Listing> read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported listing cache file format: " + file);
+            }
+            int directoryCount = readCount(buffer);
+            Map<String, Listing> listings = new TreeMap<>();
+            for (int i = 0; i < directoryCount; i++) {
+                String directory = readString(buffer);
+                long modified = buffer.getLong();
+                GlobWalker.DirectoryEntry[] entries =
+                        new GlobWalker.DirectoryEntry[readCount(buffer)];
+                for (int j = 0; j < entries.length; j++) {
+                    String name = readString(buffer);
+                    entries[j] = new GlobWalker.DirectoryEntry(name, buffer.get() != 0);
+                }
+                listings.put(directory, new Listing(modified, entries));
+            }
+            return listings;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException |
+                IllegalArgumentException e) {
+            throw new IOException("Corrupted listing cache file: " + file, e);
+        }
+    }
+
+    /**
+     * Reads a count or length. Every counted item takes at least one byte, so a larger value
+     * than the remaining bytes means the file is corrupted, it must not be allocated.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readCount(buffer);
+        String result = new String(buffer.array(), buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Returns the `directory` entries in the order the file system lists them.
+     */
+    GlobWalker.DirectoryEntry[] list(Path directory) throws IOException {
+        String key = directory.toAbsolutePath().normalize().toString();
+        long modified = Files.getLastModifiedTime(directory).toMillis();
+        Listing listing = this.recordedListings.get(key);
+        if (listing == null || listing.modified != modified) {
+            long listed = System.currentTimeMillis();
+            listing = new Listing(modified, GlobWalker.listDirectory(directory));
+            this.changed = true;
+            if (listed - modified < MIN_LISTING_AGE) {
+                return listing.entries;
+            }
+        }
+        this.currentListings.put(key, listing);
+        return listing.entries;
+    }
+
+    /**
+     * Writes the listings of the directories walked in this run if any of them changed. As the
+     * cache is optional, a write failure is reported but doesn't fail the build.
+     */
+    void save() {
+        if (!this.changed && this.currentListings.size() == this.recordedListings.size()) {
+            return;
+        }
+        Map<String, Listing> sortedListings = new TreeMap<>(this.currentListings);
+        Path tempFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try {
+            Path parent = this.file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(sortedListings.size());
+                for (Map.Entry<String, Listing> entry : sortedListings.entrySet()) {
+                    writeString(output, entry.getKey());
+                    output.writeLong(entry.getValue().modified);
+                    output.writeInt(entry.getValue().entries.length);
+                    for (GlobWalker.DirectoryEntry directoryEntry : entry.getValue().entries) {
+                        writeString(output, directoryEntry.getName());
+                        output.writeByte(directoryEntry.isDirectory() ? 1 : 0);
+                    }
+                }
+            }
+            Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Warning: Error writing listing cache file '" + this.file +
+                    "': " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+                // The next run will overwrite it.
+            }
+        }
+    }
+
+}
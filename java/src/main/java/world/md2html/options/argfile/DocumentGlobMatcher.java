@@ -0,0 +1,64 @@
+package world.md2html.options.argfile;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells whether a file may be a document found by the documents' GLOBs without walking the
+ * input trees. Used in the watch mode to find out whether a created or deleted file changes
+ * the documents list.
+ */
+public class DocumentGlobMatcher {
+
+    private final List<Path> roots = new ArrayList<>();
+    private final List<GlobWalker.CompiledGlob> globs = new ArrayList<>();
+
+    DocumentGlobMatcher(List<GlobWalker.Glob> globs) {
+        for (GlobWalker.Glob glob : globs) {
+            this.roots.add(glob.getRoot().toAbsolutePath().normalize());
+            this.globs.add(new GlobWalker.CompiledGlob(glob));
+        }
+    }
+
+    /**
+     * Whether the file `path` matches one of the GLOBs or, if it's a `directory`, may contain
+     * the matching files.
+     */
+    public boolean mayMatch(Path path, boolean directory) {
+        Path absolutePath = path.toAbsolutePath().normalize();
+        for (int i = 0; i < this.globs.size(); i++) {
+            Path root = this.roots.get(i);
+            if (!absolutePath.startsWith(root)) {
+                continue;
+            }
+            Path relativePath = root.relativize(absolutePath);
+            if (relativePath.toString().isEmpty()) {
+                if (directory) {
+                    return true;
+                }
+                continue;
+            }
+            GlobWalker.CompiledGlob glob = this.globs.get(i);
+            if (isWalked(glob, relativePath.getParent()) && (directory ?
+                    glob.mayMatchUnder(relativePath) : glob.matchesFile(relativePath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the GLOB walker enters the `relativeDirectory` (`null` for the root).
+     */
+    private static boolean isWalked(GlobWalker.CompiledGlob glob, Path relativeDirectory) {
+        for (Path directory = relativeDirectory; directory != null;
+                directory = directory.getParent()) {
+            if (!glob.mayMatchUnder(directory)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,296 @@
+package world.md2html.options.argfile;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the files matching the documents' GLOBs. The tree under every input root is walked
+ * once for all the GLOBs relative to it, the subdirectories are walked in parallel. The
+ * subdirectories that cannot contain matching files (outside the GLOB literal prefix, deeper
+ * than the GLOB without `**` or excluded) are not entered.
+ * <br />
+ * The files are returned in the order {@link Files#walkFileTree} would visit them, the
+ * symbolic links are not followed the same way.
+ */
+class GlobWalker {
+
+    private static final String GLOB_SPECIAL_CHARS = "*?[{";
+
+    @Value
+    static class Glob {
+        String glob;
+        Path root;
+        /**
+         * The GLOBs of the files and directories that must be skipped, relative to the `root`.
+         */
+        List<String> excludes;
+    }
+
+    @Value
+    static class DirectoryEntry {
+        String name;
+        boolean directory;
+    }
+
+    static class CompiledGlob {
+        private final PathMatcher matcher;
+        /**
+         * The directories the matching files must be in, `null` if unknown.
+         */
+        private final Path literalPrefix;
+        /**
+         * The number of the name elements of the matching files relative to the root.
+         */
+        private final int maxDepth;
+        private final List<PathMatcher> excludes = new ArrayList<>();
+
+        CompiledGlob(Glob glob) {
+            this.matcher = pathMatcher(glob.getGlob());
+            if (glob.getExcludes() != null) {
+                for (String exclude : glob.getExcludes()) {
+                    this.excludes.add(pathMatcher(exclude));
+                }
+            }
+
+            String pattern = glob.getGlob();
+            // The escapes, absolute and Windows paths are not analyzed.
+            if (pattern.indexOf('\\') >= 0 || pattern.indexOf(':') >= 0 ||
+                    pattern.startsWith("/")) {
+                this.literalPrefix = null;
+                this.maxDepth = Integer.MAX_VALUE;
+                return;
+            }
+            String[] segments = pattern.split("/", -1);
+            List<String> prefix = new ArrayList<>();
+            // The last segment is the file name.
+            for (int i = 0; i < segments.length - 1; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty() || segment.equals(".") || segment.equals("..") ||
+                        hasSpecialChars(segment)) {
+                    break;
+                }
+                prefix.add(segment);
+            }
+            this.literalPrefix = prefix.isEmpty() ? null :
+                    Paths.get(prefix.get(0), prefix.subList(1, prefix.size())
+                            .toArray(new String[0]));
+            this.maxDepth = pattern.contains("**") || pattern.indexOf('{') >= 0 ?
+                    Integer.MAX_VALUE : segments.length;
+        }
+
+        private boolean isExcluded(Path relativePath) {
+            for (PathMatcher exclude : this.excludes) {
+                if (exclude.matches(relativePath)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean matchesFile(Path relativePath) {
+            return this.matcher.matches(relativePath) && !isExcluded(relativePath);
+        }
+
+        /**
+         * Whether the files under the directory may match.
+         */
+        boolean mayMatchUnder(Path relativeDirectory) {
+            if (relativeDirectory.getNameCount() + 1 > this.maxDepth ||
+                    isExcluded(relativeDirectory)) {
+                return false;
+            }
+            return this.literalPrefix == null ||
+                    relativeDirectory.startsWith(this.literalPrefix) ||
+                    this.literalPrefix.startsWith(relativeDirectory);
+        }
+    }
+
+    private GlobWalker() {
+    }
+
+    private static PathMatcher pathMatcher(String glob) {
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob.replace("**/", "**"));
+    }
+
+    private static boolean hasSpecialChars(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (GLOB_SPECIAL_CHARS.indexOf(segment.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the `directory` entries in the order the file system lists them. The symbolic
+     * links are not followed.
+     */
+    static DirectoryEntry[] listDirectory(Path directory) throws IOException {
+        List<DirectoryEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                entries.add(new DirectoryEntry(path.getFileName().toString(),
+                        attributes.isDirectory()));
+            }
+        }
+        return entries.toArray(new DirectoryEntry[0]);
+    }
+
+    static Map<Glob, List<Path>> expand(Collection<Glob> globs) throws IOException {
+        return expand(globs, null);
+    }
+
+    /**
+     * Returns the files matching each of the `globs`. The directories are listed through the
+     * `listingCache` if it's not `null`.
+     */
+    static Map<Glob, List<Path>> expand(Collection<Glob> globs,
+            DirectoryListingCache listingCache) throws IOException {
+        Map<Path, List<Glob>> globsByRoot = new LinkedHashMap<>();
+        for (Glob glob : globs) {
+            globsByRoot.computeIfAbsent(glob.getRoot(), root -> new ArrayList<>()).add(glob);
+        }
+        Map<Glob, List<Path>> result = new HashMap<>();
+        for (Map.Entry<Path, List<Glob>> entry : globsByRoot.entrySet()) {
+            List<Glob> rootGlobs = entry.getValue();
+            CompiledGlob[] compiledGlobs = new CompiledGlob[rootGlobs.size()];
+            int[] allGlobs = new int[rootGlobs.size()];
+            for (int i = 0; i < compiledGlobs.length; i++) {
+                compiledGlobs[i] = new CompiledGlob(rootGlobs.get(i));
+                allGlobs[i] = i;
+            }
+            List<Path>[] files;
+            try {
+                files = ForkJoinPool.commonPool().invoke(new DirectoryTask(entry.getKey(), null,
+                        compiledGlobs, allGlobs, listingCache));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (int i = 0; i < compiledGlobs.length; i++) {
+                result.put(rootGlobs.get(i), files[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks a directory for the GLOBs that may match there. Returns the matching files per
+     * GLOB, in the same order as the GLOBs.
+     */
+    private static class DirectoryTask extends RecursiveTask<List<Path>[]> {
+
+        private final Path directory;
+        /**
+         * Relative to the root, `null` for the root itself.
+         */
+        private final Path relativeDirectory;
+        private final CompiledGlob[] globs;
+        /**
+         * The indexes of the GLOBs that may match in the directory.
+         */
+        private final int[] activeGlobs;
+        private final DirectoryListingCache listingCache;
+
+        private DirectoryTask(Path directory, Path relativeDirectory, CompiledGlob[] globs,
+                int[] activeGlobs, DirectoryListingCache listingCache) {
+            this.directory = directory;
+            this.relativeDirectory = relativeDirectory;
+            this.globs = globs;
+            this.activeGlobs = activeGlobs;
+            this.listingCache = listingCache;
+        }
+
+        @Override
+        protected List<Path>[] compute() {
+            // The matching files and the subdirectory tasks in the walking order.
+            List<Object> entries = new ArrayList<>();
+            try {
+                DirectoryEntry[] directoryEntries = this.listingCache == null ?
+                        listDirectory(this.directory) : this.listingCache.list(this.directory);
+                for (DirectoryEntry directoryEntry : directoryEntries) {
+                    Path path = this.directory.resolve(directoryEntry.getName());
+                    Path relativePath = this.relativeDirectory == null ?
+                            path.getFileName() : this.relativeDirectory.resolve(path.getFileName());
+                    if (directoryEntry.isDirectory()) {
+                        int[] subdirectoryGlobs = subdirectoryGlobs(relativePath);
+                        if (subdirectoryGlobs.length > 0) {
+                            DirectoryTask task = new DirectoryTask(path, relativePath,
+                                    this.globs, subdirectoryGlobs, this.listingCache);
+                            task.fork();
+                            entries.add(task);
+                        }
+                    } else {
+                        for (int glob : this.activeGlobs) {
+                            if (this.globs[glob].matchesFile(relativePath)) {
+                                entries.add(new MatchedFile(path, glob));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            @SuppressWarnings("unchecked")
+            List<Path>[] result = new List[this.globs.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new ArrayList<>();
+            }
+            for (Object entry : entries) {
+                if (entry instanceof MatchedFile) {
+                    MatchedFile file = (MatchedFile) entry;
+                    result[file.glob].add(file.path);
+                } else {
+                    List<Path>[] subdirectoryResult = ((DirectoryTask) entry).join();
+                    for (int i = 0; i < result.length; i++) {
+                        result[i].addAll(subdirectoryResult[i]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private int[] subdirectoryGlobs(Path relativeDirectory) {
+            int[] result = new int[this.activeGlobs.length];
+            int count = 0;
+            for (int glob : this.activeGlobs) {
+                if (this.globs[glob].mayMatchUnder(relativeDirectory)) {
+                    result[count++] = glob;
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+
+    private static class MatchedFile {
+        private final Path path;
+        private final int glob;
+
+        private MatchedFile(Path path, int glob) {
+            this.path = path;
+            this.glob = glob;
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import world.md2html.options.model.CliOptions;
 import world.md2html.options.model.Document;
 import world.md2html.options.model.raw.ArgFileRaw;
 import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.utils.Profiler;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -63,8 +64,11 @@ public class PluginHelper {
         Map<String, List<JsonNode>> extraPluginData = new HashMap<>();
 
         for (Md2HtmlPlugin plugin : plugins.values()) {
-            Map<String, JsonNode> singleExtraPluginData = plugin.preInitialize(argFileRaw,
-                    cliOptions, plugins);
+            Map<String, JsonNode> singleExtraPluginData;
+            try (Profiler.Measurement ignored = Profiler.measure("pre-initialize/" +
+                    plugin.getClass().getSimpleName())) {
+                singleExtraPluginData = plugin.preInitialize(argFileRaw, cliOptions, plugins);
+            }
             for (Map.Entry<String, JsonNode> singleData : singleExtraPluginData.entrySet()) {
                 List<JsonNode> dataForPlugin = extraPluginData.computeIfAbsent(singleData.getKey(),
                         k -> new ArrayList<>());
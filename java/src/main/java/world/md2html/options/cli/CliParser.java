@@ -46,6 +46,11 @@ public class CliParser {
     private static final String VERBOSE = "v";
     private static final String REPORT = "r";
     private static final String LEGACY_MODE = "legacy-mode";
+    private static final String JOBS = "j";
+    private static final String WATCH = "watch";
+    private static final String SERVE = "serve";
+    private static final int DEFAULT_SERVE_PORT = 8000;
+    private static final String PROFILE = "profile";
 
     private static final int HELP_WIDTH = 80;
 
@@ -151,6 +156,27 @@ public class CliParser {
                         "program prior to 1.0.0. It's still recommended to migrate the " +
                         "documentation projects to the newer version")
                 .build());
+        cliOptions.addOption(Option.builder(JOBS).longOpt("jobs")
+                .hasArg().numberOfArgs(1)
+                .desc("number of documents processed concurrently. Defaults to 1. Zero means " +
+                        "the number of available processors")
+                .build());
+        cliOptions.addOption(Option.builder(null).longOpt(WATCH)
+                .hasArg(false)
+                .desc("after processing the documents, keeps running and processes again " +
+                        "the documents affected by the changed files")
+                .build());
+        cliOptions.addOption(Option.builder(null).longOpt(SERVE)
+                .hasArg().optionalArg(true).argName("PORT")
+                .desc("instead of writing the output files, serves the pages rendered on " +
+                        "request on the given port of the local host. Defaults to " +
+                        DEFAULT_SERVE_PORT)
+                .build());
+        cliOptions.addOption(Option.builder(null).longOpt(PROFILE)
+                .hasArg().numberOfArgs(1).argName("FILE")
+                .desc("writes the time and the memory spent on the processing stages of " +
+                        "every document into the JSON file")
+                .build());
 
         return cliOptions;
     }
@@ -245,6 +271,40 @@ public class CliParser {
 
         cliOptionsBuilder.legacyMode(commandLine.hasOption(LEGACY_MODE));
 
+        String jobs = commandLine.getOptionValue(JOBS);
+        if (jobs != null) {
+            int jobCount;
+            try {
+                jobCount = Integer.parseInt(jobs.trim());
+            } catch (NumberFormatException e) {
+                throw errorAsException(cliOptions, "Number of jobs is not an integer: " + jobs);
+            }
+            if (jobCount < 0) {
+                throw errorAsException(cliOptions, "Number of jobs cannot be negative: " + jobs);
+            }
+            cliOptionsBuilder.jobs(jobCount);
+        }
+
+        cliOptionsBuilder.watch(commandLine.hasOption(WATCH));
+
+        if (commandLine.hasOption(SERVE)) {
+            String port = commandLine.getOptionValue(SERVE);
+            int portNumber = DEFAULT_SERVE_PORT;
+            if (port != null) {
+                try {
+                    portNumber = Integer.parseInt(port.trim());
+                } catch (NumberFormatException e) {
+                    throw errorAsException(cliOptions, "Port is not an integer: " + port);
+                }
+                if (portNumber < 0 || portNumber > 65535) {
+                    throw errorAsException(cliOptions, "Port is out of range: " + port);
+                }
+            }
+            cliOptionsBuilder.servePort(portNumber);
+        }
+
+        cliOptionsBuilder.profile(commandLine.getOptionValue(PROFILE));
+
         return cliOptionsBuilder.build();
     }
 
@@ -2,6 +2,7 @@ package world.md2html.options.model;
 
 import lombok.Builder;
 import lombok.Value;
+import world.md2html.options.argfile.DocumentGlobMatcher;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.plugins.Md2HtmlPlugin;
 
@@ -14,4 +15,5 @@ public class ArgFile {
     List<Document> documents;
     List<Md2HtmlPlugin> plugins;
     PageMetadataHandlersWrapper metadataHandlers;
+    DocumentGlobMatcher documentGlobs;
 }
@@ -36,5 +36,12 @@ public class CliOptions {
     boolean verbose;
     boolean report;
     boolean legacyMode;
+    Integer jobs;
+    boolean watch;
+    /**
+     * The port of the preview server, `null` if the pages must be written to the output files.
+     */
+    Integer servePort;
+    String profile;
 
 }
@@ -1,7 +1,11 @@
 package world.md2html.options.model;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.Value;
+import world.md2html.RenderingProfile;
+import world.md2html.pagemetadata.MetadataScan;
 
 import java.util.List;
 
@@ -20,5 +24,12 @@ public class Document {
     boolean force;
     boolean verbose;
     boolean report;
+    RenderingProfile renderingProfile;
+    /**
+     * The metadata blocks found when the document was expanded from a GLOB or `null`.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    MetadataScan metadataScan;
 
 }
@@ -0,0 +1,32 @@
+package world.md2html.options.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Limits of the resources a single page may use while its metadata is expanded and it is
+ * rendered. They protect the build from a runaway recursive definition.
+ */
+@Value
+@Builder(toBuilder = true)
+public class PageBudget {
+
+    public static final PageBudget UNLIMITED = PageBudget.builder()
+            .maxExpandedSize(Integer.MAX_VALUE)
+            .maxHandlerCalls(Integer.MAX_VALUE)
+            .maxTime(Long.MAX_VALUE)
+            .build();
+
+    /**
+     * Maximum length of the page text after the metadata expansion, in characters.
+     */
+    int maxExpandedSize;
+    /**
+     * Maximum number of the metadata handler calls.
+     */
+    int maxHandlerCalls;
+    /**
+     * Maximum time of the metadata expansion and rendering, in milliseconds.
+     */
+    long maxTime;
+}
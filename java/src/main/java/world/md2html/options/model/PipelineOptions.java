@@ -0,0 +1,26 @@
+package world.md2html.options.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Sizes of the build pipeline stages. The number of the CPU-bound (rendering) threads is
+ * defined by the `jobs` option.
+ */
+@Value
+@Builder(toBuilder = true)
+public class PipelineOptions {
+
+    public static final PipelineOptions DEFAULT = PipelineOptions.builder()
+            .readThreads(2)
+            .writeThreads(2)
+            .queueSize(16)
+            .build();
+
+    int readThreads;
+    int writeThreads;
+    /**
+     * Maximum number of pages waiting before each stage.
+     */
+    int queueSize;
+}
@@ -8,4 +8,22 @@ import lombok.Value;
 public class SessionOptions {
     boolean verbose;
     boolean legacyMode;
+    int jobs;
+    /**
+     * Build pipeline stage sizes or `null` if not defined in the argument file.
+     */
+    PipelineOptions pipeline;
+    /**
+     * Path of the file the outputs' dependencies are kept in between runs or `null`.
+     */
+    String dependencyFile;
+    /**
+     * Size limit of the read files kept in memory, in megabytes, or `null` if not defined in
+     * the argument file.
+     */
+    Integer fileCacheSize;
+    /**
+     * Resource limits of every page or `null` if the pages are not limited.
+     */
+    PageBudget pageBudget;
 }
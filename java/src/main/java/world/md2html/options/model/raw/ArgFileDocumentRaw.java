@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Builder;
 import lombok.Value;
+import world.md2html.pagemetadata.MetadataScan;
 
 import java.util.List;
 
@@ -18,6 +19,8 @@ public class ArgFileDocumentRaw {
     String input;
     @JsonProperty("input-glob")
     String inputGlob;
+    @JsonProperty("input-glob-exclude")
+    List<String> inputGlobExclude;
     @JsonProperty("sort-by-file-path")
     boolean sortByFilePath;
     @JsonProperty("sort-by-variable")
@@ -47,9 +50,13 @@ public class ArgFileDocumentRaw {
     List<String> addIncludeCss;
     @JsonProperty("add-page-flows")
     List<String> addPageFlows;
+    @JsonProperty("rendering-profile")
+    String renderingProfile;
     boolean verbose;
     boolean force;
     boolean report;
     @JsonIgnore
     String techSortBy;
+    @JsonIgnore
+    MetadataScan techMetadataScan;
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Builder;
 import lombok.Value;
 
+import java.util.Map;
+
 @Value
 @Builder
 @JsonDeserialize(builder = ArgFileOptionsRaw.ArgFileOptionsRawBuilder.class)
@@ -12,4 +14,18 @@ public class ArgFileOptionsRaw {
     boolean verbose;
     @JsonProperty("legacy-mode")
     boolean legacyMode;
+    Integer jobs;
+    @JsonProperty("rendering-profiles")
+    Map<String, ArgFileRenderingProfileRaw> renderingProfiles;
+    ArgFilePipelineRaw pipeline;
+    @JsonProperty("dependency-file")
+    String dependencyFile;
+    @JsonProperty("file-cache-size")
+    Integer fileCacheSize;
+    @JsonProperty("validation-cache")
+    String validationCache;
+    @JsonProperty("listing-cache")
+    String listingCache;
+    @JsonProperty("page-budget")
+    ArgFilePageBudgetRaw pageBudget;
 }
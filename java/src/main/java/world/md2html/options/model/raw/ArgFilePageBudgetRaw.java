@@ -0,0 +1,18 @@
+package world.md2html.options.model.raw;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+@JsonDeserialize(builder = ArgFilePageBudgetRaw.ArgFilePageBudgetRawBuilder.class)
+public class ArgFilePageBudgetRaw {
+    @JsonProperty("max-expanded-size")
+    Integer maxExpandedSize;
+    @JsonProperty("max-handler-calls")
+    Integer maxHandlerCalls;
+    @JsonProperty("max-time")
+    Long maxTime;
+}
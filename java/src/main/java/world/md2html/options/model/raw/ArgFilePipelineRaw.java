@@ -0,0 +1,18 @@
+package world.md2html.options.model.raw;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+@JsonDeserialize(builder = ArgFilePipelineRaw.ArgFilePipelineRawBuilder.class)
+public class ArgFilePipelineRaw {
+    @JsonProperty("read-threads")
+    Integer readThreads;
+    @JsonProperty("write-threads")
+    Integer writeThreads;
+    @JsonProperty("queue-size")
+    Integer queueSize;
+}
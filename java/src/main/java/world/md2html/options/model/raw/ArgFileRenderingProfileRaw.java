@@ -0,0 +1,21 @@
+package world.md2html.options.model.raw;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+@JsonDeserialize(builder = ArgFileRenderingProfileRaw.ArgFileRenderingProfileRawBuilder.class)
+public class ArgFileRenderingProfileRaw {
+    List<String> extensions;
+    @JsonProperty("toc-levels")
+    List<Integer> tocLevels;
+    @JsonProperty("typographic-quotes")
+    Boolean typographicQuotes;
+    @JsonProperty("typographic-smarts")
+    Boolean typographicSmarts;
+}
@@ -0,0 +1,189 @@
+package world.md2html.pagemetadata;
+
+import world.md2html.plugins.PageMetadataHandler;
+import world.md2html.plugins.PageMetadataHandlerInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable case-insensitive trie over the registered markers. Resolves a marker found in the
+ * page text in one pass over its characters without taking it as a string.
+ * <br />
+ * A marker in the page text consists of the word characters (see {@link MetadataScanner}), so
+ * only the registered markers that consist of them after upper-casing are kept, the rest can
+ * never match.
+ */
+class MarkerDispatcher {
+
+    private static final int ALPHABET_SIZE = 10 + 26 + 1;
+
+    /**
+     * The child nodes of the node `n` are at `n * ALPHABET_SIZE + symbol`, `0` for no child
+     * (the root node `0` is never a child).
+     */
+    private final int[] transitions;
+    /**
+     * Per node, `null` for the nodes that are not the end of a marker.
+     */
+    private final String[] markers;
+    private final List<PageMetadataHandler>[] pageStartHandlers;
+    private final List<PageMetadataHandler>[] handlers;
+    /**
+     * Per node, whether all the handlers are page independent, see
+     * {@link PageMetadataHandlerInfo#isPageIndependent()}.
+     */
+    private final boolean[] pageStartHandlersPageIndependent;
+    private final boolean[] handlersPageIndependent;
+
+    /**
+     * The maps are keyed by the upper-cased markers. The `pageStartHandlers` are applied only
+     * to the blocks at the page start.
+     */
+    MarkerDispatcher(Map<String, List<PageMetadataHandlerInfo>> pageStartHandlers,
+            Map<String, List<PageMetadataHandlerInfo>> handlers) {
+        List<int[]> transitionList = new ArrayList<>();
+        List<String> markerList = new ArrayList<>();
+        transitionList.add(new int[ALPHABET_SIZE]);
+        markerList.add(null);
+        for (Map<String, List<PageMetadataHandlerInfo>> map : Arrays.asList(pageStartHandlers,
+                handlers)) {
+            for (String marker : map.keySet()) {
+                int node = 0;
+                for (int i = 0; i < marker.length() && node >= 0; i++) {
+                    int symbol = symbol(marker.charAt(i));
+                    if (symbol < 0) {
+                        node = -1;
+                    } else if (transitionList.get(node)[symbol] == 0) {
+                        transitionList.get(node)[symbol] = transitionList.size();
+                        node = transitionList.size();
+                        transitionList.add(new int[ALPHABET_SIZE]);
+                        markerList.add(null);
+                    } else {
+                        node = transitionList.get(node)[symbol];
+                    }
+                }
+                if (node > 0) {
+                    markerList.set(node, marker);
+                }
+            }
+        }
+
+        int nodeCount = transitionList.size();
+        this.transitions = new int[nodeCount * ALPHABET_SIZE];
+        for (int node = 0; node < nodeCount; node++) {
+            System.arraycopy(transitionList.get(node), 0, this.transitions,
+                    node * ALPHABET_SIZE, ALPHABET_SIZE);
+        }
+        this.markers = markerList.toArray(new String[0]);
+        this.pageStartHandlers = handlerArray(pageStartHandlers, nodeCount);
+        this.handlers = handlerArray(handlers, nodeCount);
+        this.pageStartHandlersPageIndependent = pageIndependentArray(pageStartHandlers,
+                nodeCount);
+        this.handlersPageIndependent = pageIndependentArray(handlers, nodeCount);
+    }
+
+    private List<PageMetadataHandler>[] handlerArray(
+            Map<String, List<PageMetadataHandlerInfo>> handlerMap, int nodeCount) {
+        @SuppressWarnings("unchecked")
+        List<PageMetadataHandler>[] result = new List[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            if (this.markers[node] != null) {
+                List<PageMetadataHandlerInfo> infos = handlerMap.get(this.markers[node]);
+                if (infos != null) {
+                    List<PageMetadataHandler> nodeHandlers = new ArrayList<>();
+                    for (PageMetadataHandlerInfo info : infos) {
+                        nodeHandlers.add(info.getPageMetadataHandler());
+                    }
+                    result[node] = Collections.unmodifiableList(nodeHandlers);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean[] pageIndependentArray(
+            Map<String, List<PageMetadataHandlerInfo>> handlerMap, int nodeCount) {
+        boolean[] result = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            if (this.markers[node] != null) {
+                List<PageMetadataHandlerInfo> infos = handlerMap.get(this.markers[node]);
+                if (infos != null) {
+                    result[node] = infos.stream()
+                            .allMatch(PageMetadataHandlerInfo::isPageIndependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Maps the word characters ignoring case, `-1` for the rest.
+     */
+    private static int symbol(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'A' && c <= 'Z') {
+            return 10 + c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return 10 + c - 'a';
+        } else if (c == '_') {
+            return 36;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the node of the marker `text[start, end)` or `-1` if the marker is not
+     * registered.
+     */
+    int resolve(CharSequence text, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            int symbol = symbol(text.charAt(i));
+            if (symbol < 0) {
+                return -1;
+            }
+            node = this.transitions[node * ALPHABET_SIZE + symbol];
+            if (node == 0) {
+                return -1;
+            }
+        }
+        return this.markers[node] == null ? -1 : node;
+    }
+
+    /**
+     * The upper-cased marker as registered.
+     */
+    String marker(int node) {
+        return this.markers[node];
+    }
+
+    /**
+     * Returns the handlers of the resolved marker `node` registered for the blocks at the page
+     * start or `null` if there are none.
+     */
+    List<PageMetadataHandler> pageStartHandlers(int node) {
+        return this.pageStartHandlers[node];
+    }
+
+    /**
+     * Returns the handlers of the resolved marker `node` registered for the blocks anywhere
+     * on the page or `null` if there are none.
+     */
+    List<PageMetadataHandler> handlers(int node) {
+        return this.handlers[node];
+    }
+
+    boolean isPageStartHandlersPageIndependent(int node) {
+        return this.pageStartHandlersPageIndependent[node];
+    }
+
+    boolean isHandlersPageIndependent(int node) {
+        return this.handlersPageIndependent[node];
+    }
+
+}
@@ -0,0 +1,66 @@
+package world.md2html.pagemetadata;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * The metadata blocks found in a page text. The scan is made when the page is read before the
+ * rendering (e.g. to get the page variables for a GLOB document) and is kept with the
+ * document, so the rendering doesn't scan the same text again.
+ * <br />
+ * The scan refers to the text weakly and is used only for the same text instance, i.e. while
+ * the text stays in the file cache. So it doesn't keep the page texts in memory and can never
+ * be applied to a changed file.
+ */
+public class MetadataScan {
+
+    /**
+     * Every block is kept as the block start, the marker end and the block end.
+     */
+    static final int BLOCK_SIZE = 3;
+
+    private final WeakReference<String> text;
+    private final int[] blocks;
+
+    private MetadataScan(String text, int[] blocks) {
+        this.text = new WeakReference<>(text);
+        this.blocks = blocks;
+    }
+
+    public static MetadataScan of(String text) {
+        int[] blocks = new int[0];
+        int count = 0;
+        if (text.contains(MetadataScanner.METADATA_START)) {
+            blocks = new int[BLOCK_SIZE * 4];
+            MetadataScanner scanner = new MetadataScanner(text);
+            while (scanner.find()) {
+                if (count == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                }
+                blocks[count++] = scanner.blockStart();
+                blocks[count++] = scanner.markerEnd();
+                blocks[count++] = scanner.blockEnd();
+            }
+        }
+        return new MetadataScan(text, Arrays.copyOf(blocks, count));
+    }
+
+    /**
+     * Whether the scan was made for this `text` instance.
+     */
+    public boolean isFor(String text) {
+        return this.text.get() == text;
+    }
+
+    public int blockCount() {
+        return this.blocks.length / BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the scanner replaying the found blocks in the `text` the scan is for.
+     */
+    MetadataScanner scanner(String text) {
+        return new MetadataScanner(text, this.blocks);
+    }
+
+}
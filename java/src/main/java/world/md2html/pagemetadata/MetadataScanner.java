@@ -0,0 +1,181 @@
+package world.md2html.pagemetadata;
+
+/**
+ * Finds the metadata blocks `<!--MARKER metadata-->` in the text one by one. The blocks may
+ * be nested, only the outermost blocks are reported. A closing delimiter without an opening
+ * one is ignored. A block is reported if its content starts with a word character, the
+ * marker is the longest run of the word characters at the content start, the metadata is the
+ * rest of the content.
+ * <br />
+ * The scanner doesn't copy the text, it reports the offsets of the last found block. So the
+ * callers may take the strings of only the blocks they are interested in. The scanner may also
+ * replay the blocks found before, see {@link MetadataScan}.
+ */
+class MetadataScanner {
+
+    static final String METADATA_START = "<!--";
+    static final String METADATA_END = "-->";
+    private static final int METADATA_START_LEN = METADATA_START.length();
+    private static final int METADATA_END_LEN = METADATA_END.length();
+
+    private final CharSequence text;
+    private final int length;
+    /**
+     * The blocks to replay or `null` to scan the text, see {@link MetadataScan}.
+     */
+    private final int[] recordedBlocks;
+    private int recordedIndex = 0;
+    private int position = 0;
+    private int previousEnd = 0;
+    private int blockStart = -1;
+    private int blockEnd = -1;
+    private int markerEnd = -1;
+
+    MetadataScanner(CharSequence text) {
+        this(text, null);
+    }
+
+    MetadataScanner(CharSequence text, int[] recordedBlocks) {
+        this.text = text;
+        this.length = text.length();
+        this.recordedBlocks = recordedBlocks;
+    }
+
+    /**
+     * Finds the next block. Returns `false` if there are no more blocks.
+     */
+    boolean find() {
+        if (this.blockEnd >= 0) {
+            this.previousEnd = this.blockEnd;
+        }
+        if (this.recordedBlocks != null) {
+            return replay();
+        }
+        // Only the outermost opening delimiter position is needed, the nested ones are just
+        // counted.
+        int depth = 0;
+        int start = -1;
+        int i = this.position;
+        while (i < this.length) {
+            char c = this.text.charAt(i);
+            if (c == '<' && startsWith(i, METADATA_START)) {
+                if (depth == 0) {
+                    start = i;
+                }
+                depth++;
+                i += METADATA_START_LEN;
+            } else if (c == '-' && startsWith(i, METADATA_END)) {
+                i += METADATA_END_LEN;
+                if (depth == 0) {
+                    continue;
+                }
+                depth--;
+                if (depth == 0) {
+                    int contentStart = start + METADATA_START_LEN;
+                    int contentEnd = i - METADATA_END_LEN;
+                    int wordEnd = contentStart;
+                    while (wordEnd < contentEnd && isWordChar(this.text.charAt(wordEnd))) {
+                        wordEnd++;
+                    }
+                    if (wordEnd > contentStart) {
+                        this.position = i;
+                        this.blockStart = start;
+                        this.blockEnd = i;
+                        this.markerEnd = wordEnd;
+                        return true;
+                    }
+                }
+            } else {
+                i++;
+            }
+        }
+        this.position = this.length;
+        this.blockStart = -1;
+        this.blockEnd = -1;
+        this.markerEnd = -1;
+        return false;
+    }
+
+    private boolean replay() {
+        if (this.recordedIndex < this.recordedBlocks.length) {
+            this.blockStart = this.recordedBlocks[this.recordedIndex];
+            this.markerEnd = this.recordedBlocks[this.recordedIndex + 1];
+            this.blockEnd = this.recordedBlocks[this.recordedIndex + 2];
+            this.recordedIndex += MetadataScan.BLOCK_SIZE;
+            return true;
+        }
+        this.blockStart = -1;
+        this.blockEnd = -1;
+        this.markerEnd = -1;
+        return false;
+    }
+
+    private boolean startsWith(int offset, String delimiter) {
+        if (offset + delimiter.length() > this.length) {
+            return false;
+        }
+        for (int i = 1; i < delimiter.length(); i++) {
+            if (this.text.charAt(offset + i) != delimiter.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as `\w` in the Java regular expressions without the Unicode character classes.
+     */
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    /**
+     * The end of the previous block or `0`, i.e. the start of the text before the found block.
+     */
+    int previousEnd() {
+        return this.previousEnd;
+    }
+
+    int blockStart() {
+        return this.blockStart;
+    }
+
+    /**
+     * Exclusive, after the closing delimiter.
+     */
+    int blockEnd() {
+        return this.blockEnd;
+    }
+
+    int markerStart() {
+        return this.blockStart + METADATA_START_LEN;
+    }
+
+    /**
+     * Exclusive, also the start of the metadata.
+     */
+    int markerEnd() {
+        return this.markerEnd;
+    }
+
+    /**
+     * Exclusive, before the closing delimiter.
+     */
+    int metadataEnd() {
+        return this.blockEnd - METADATA_END_LEN;
+    }
+
+    /**
+     * Whether the text before the found block (since the previous block) consists of
+     * whitespace and control characters only, as {@link String#trim()} defines them.
+     */
+    boolean isBlankBefore() {
+        for (int i = this.previousEnd; i < this.blockStart; i++) {
+            if (this.text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
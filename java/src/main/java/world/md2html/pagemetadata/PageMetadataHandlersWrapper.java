@@ -2,51 +2,89 @@ package world.md2html.pagemetadata;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import world.md2html.options.model.Document;
+import lombok.Value;
+import world.md2html.dependencies.PageDependencies;
 import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker;
+import world.md2html.plugins.PageContext;
 import world.md2html.plugins.PageMetadataHandler;
 import world.md2html.plugins.PageMetadataHandlerInfo;
+import world.md2html.utils.Profiler;
+import world.md2html.utils.TextSegments;
 import world.md2html.utils.UserError;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PageMetadataHandlersWrapper {
 
-    private static final Pattern METADATA_PATTERN =
-            Pattern.compile("^([\\w_][\\w\\d_]*)([^\\w\\d_]*.*)$", Pattern.DOTALL);
+    private final static int RECURSIVE_MAX_DEPTH = 100;
+    private final static int MAX_EXPANDED_BLOCKS = 10_000;
 
-    private static final String METADATA_START = "<!--";
-    private static final String METADATA_END = "-->";
-    private final static int METADATA_START_LEN = METADATA_START.length();
-    private final static int METADATA_END_LEN = METADATA_END.length();
-    private static final Pattern METADATA_DELIMITERS_PATTERN =
-            Pattern.compile(METADATA_START.replace("|", "\\|") +  "|" +
-                    METADATA_END.replace("|", "\\|"));
+    @Value
+    private static class ExpandedBlockKey {
+        List<PageMetadataHandler> handlers;
+        String metadataBlock;
+    }
 
-    private final static int RECURSIVE_MAX_DEPTH = 100;
+    private static class ExpandedBlock {
+        private final String text;
+        /**
+         * The files the `text` depends on, as {@link PageDependencies} keeps them.
+         */
+        private final Set<String> files;
+
+        private ExpandedBlock(String text, Set<String> files) {
+            this.text = text;
+            this.files = files;
+        }
+    }
 
-    private final Map<MarkerKey, List<PageMetadataHandler>> markerHandlers;
+    /**
+     * The expansions in progress on the current thread whose results may be reused, the
+     * innermost one is the first. A flag is set if a page dependent handler took part in the
+     * expansion.
+     */
+    private static final ThreadLocal<Deque<boolean[]>> REUSABLE_EXPANSIONS =
+            ThreadLocal.withInitial(ArrayDeque::new);
+    private static final LongAdder EXPANDED_BLOCK_HITS = new LongAdder();
+    private static final LongAdder EXPANDED_BLOCK_MISSES = new LongAdder();
+
+    static {
+        Profiler.registerCounters("expanded-blocks", PageMetadataHandlersWrapper::stats);
+    }
+
+    private final MarkerDispatcher markerDispatcher;
     private final boolean allOnlyAtPageStart;
+    /**
+     * The expansions of the blocks handled by the page independent handlers only, e.g. the
+     * same footer included into every page.
+     */
+    private final Map<ExpandedBlockKey, ExpandedBlock> expandedBlocks =
+            new ConcurrentHashMap<>();
 
-    private PageMetadataHandlersWrapper(
-            Map<MarkerKey, List<PageMetadataHandler>> markerHandlers, boolean allOnlyAtPageStart) {
-        this.markerHandlers = markerHandlers;
+    private PageMetadataHandlersWrapper(MarkerDispatcher markerDispatcher,
+            boolean allOnlyAtPageStart) {
+        this.markerDispatcher = markerDispatcher;
         this.allOnlyAtPageStart = allOnlyAtPageStart;
     }
 
     public static PageMetadataHandlersWrapper fromPlugins(List<Md2HtmlPlugin> plugins) {
-        Map<MarkerKey, List<PageMetadataHandler>> markerHandlers = new HashMap<>();
+        Map<String, List<PageMetadataHandlerInfo>> pageStartHandlers = new HashMap<>();
+        Map<String, List<PageMetadataHandlerInfo>> handlers = new HashMap<>();
         boolean allOnlyAtPageStart = true;
         for (Md2HtmlPlugin plugin : plugins) {
             List<PageMetadataHandlerInfo> handlerInfoList = plugin.pageMetadataHandlers();
@@ -55,22 +93,62 @@ public class PageMetadataHandlersWrapper {
                     if (!info.isOnlyAtPageStart()) {
                         allOnlyAtPageStart = false;
                     }
-                    MarkerKey markerKey = new MarkerKey(info.getMarker().toUpperCase(),
-                            info.isOnlyAtPageStart());
-                    List<PageMetadataHandler> handlers = new ArrayList<>();
-                    List<PageMetadataHandler> OldValue = markerHandlers.putIfAbsent(markerKey,
-                            handlers);
-                    handlers = OldValue == null ? handlers : OldValue;
-                    handlers.add(info.getPageMetadataHandler());
+                    (info.isOnlyAtPageStart() ? pageStartHandlers : handlers)
+                            .computeIfAbsent(info.getMarker().toUpperCase(Locale.ROOT),
+                                    marker -> new ArrayList<>())
+                            .add(info);
                 }
             }
         }
-        return new PageMetadataHandlersWrapper(markerHandlers, allOnlyAtPageStart);
+        return new PageMetadataHandlersWrapper(
+                new MarkerDispatcher(pageStartHandlers, handlers), allOnlyAtPageStart);
     }
 
-    public String applyMetadataHandlers(String text, Document document,
+    public String applyMetadataHandlers(String text, PageContext context,
                                         Set<String> visitedMarkers,
                                         String recursiveMarker) {
+        try (Profiler.Measurement ignored = Profiler.measure("metadata")) {
+            return doExpandMetadataHandlers(text, context, visitedMarkers, recursiveMarker,
+                    null, null).toString();
+        }
+    }
+
+    /**
+     * Same as {@link #applyMetadataHandlers(String, PageContext)} but uses the blocks found
+     * before if the `scan` (may be `null`) was made for this `pageText` instance.
+     */
+    public String applyMetadataHandlers(String pageText, PageContext context,
+                                        MetadataScan scan) {
+        try (Profiler.Measurement ignored = Profiler.measure("metadata")) {
+            return doExpandMetadataHandlers(pageText, context, null, null,
+                    scan != null && scan.isFor(pageText) ? scan : null, null).toString();
+        }
+    }
+
+    /**
+     * Same as {@link #applyMetadataHandlers} but appends the result to the `output`. The
+     * handlers that expand the metadata in their own content should use this method in
+     * {@link PageMetadataHandler#appendPageMetadata}, so the nested expansions are copied only
+     * once, when the page text is converted into a string.
+     */
+    public void expandMetadataHandlers(String text, PageContext context,
+                                       Set<String> visitedMarkers, String recursiveMarker,
+                                       TextSegments output) {
+        try (Profiler.Measurement ignored = Profiler.measure("metadata")) {
+            doExpandMetadataHandlers(text, context, visitedMarkers, recursiveMarker, null,
+                    output);
+        }
+    }
+
+    /**
+     * The `scan` is `null` or made for the `text`. Appends the result to the `output` and
+     * returns it. If the `output` is `null`, returns the result, the `text` itself if nothing
+     * was replaced.
+     */
+    private CharSequence doExpandMetadataHandlers(String text, PageContext context,
+                                                  Set<String> visitedMarkers,
+                                                  String recursiveMarker, MetadataScan scan,
+                                                  TextSegments output) {
 
         if (recursiveMarker != null) {
             visitedMarkers = visitedMarkers == null ? new LinkedHashSet<>() : visitedMarkers;
@@ -88,31 +166,60 @@ public class PageMetadataHandlersWrapper {
             }
         }
 
-        StringBuilder newText = new StringBuilder();
+        // Most pages have no metadata blocks at all.
+        if (scan == null ? text.indexOf(MetadataScanner.METADATA_START) < 0 :
+                scan.blockCount() == 0) {
+            if (recursiveMarker != null) {
+                visitedMarkers.remove(recursiveMarker);
+            }
+            return output == null ? text : output.append(text);
+        }
+
+        // Unless given, created on the first replacement, until then the text stays unchanged.
+        // The strings are taken from the text only for the blocks that have handlers.
+        TextSegments newText = output;
+        PageBudgetTracker budgetTracker = context == null ? null : context.getBudgetTracker();
         int lastPos = 0;
-        boolean replacementDone = false;
-        Iterator<MetadataMatchObject> it = metadataFinder(text);
-        while (it.hasNext()) {
-            MetadataMatchObject matchObj = it.next();
-            boolean firstNonBlank = matchObj.before.trim().isEmpty();
-            lastPos = matchObj.endPos;
-            String lookupMarker = matchObj.marker.toUpperCase();
-            List<PageMetadataHandler> handlers = this.markerHandlers.get(
-                    new MarkerKey(lookupMarker, firstNonBlank));
-            if (handlers == null && firstNonBlank) {
-                handlers = this.markerHandlers.get(
-                        new MarkerKey(lookupMarker, false));
+        MetadataScanner scanner = scan == null ? new MetadataScanner(text) : scan.scanner(text);
+        while (scanner.find()) {
+            int markerNode = this.markerDispatcher.resolve(text, scanner.markerStart(),
+                    scanner.markerEnd());
+            List<PageMetadataHandler> handlers = null;
+            boolean pageIndependent = false;
+            if (markerNode >= 0) {
+                if (this.markerDispatcher.pageStartHandlers(markerNode) != null &&
+                        scanner.isBlankBefore()) {
+                    handlers = this.markerDispatcher.pageStartHandlers(markerNode);
+                    pageIndependent =
+                            this.markerDispatcher.isPageStartHandlersPageIndependent(markerNode);
+                } else {
+                    handlers = this.markerDispatcher.handlers(markerNode);
+                    pageIndependent = this.markerDispatcher.isHandlersPageIndependent(markerNode);
+                }
             }
-            String replacement = matchObj.metadataBlock;
             if (handlers != null) {
-                for (PageMetadataHandler h : handlers) {
-                    replacement = h.acceptPageMetadata(document, lookupMarker,
-                            matchObj.metadata, matchObj.metadataBlock, visitedMarkers);
-                    replacementDone = true;
+                String lookupMarker = this.markerDispatcher.marker(markerNode);
+                String metadata = text.substring(scanner.markerEnd(), scanner.metadataEnd());
+                String metadataBlock = text.substring(scanner.blockStart(), scanner.blockEnd());
+                if (newText == null) {
+                    newText = new TextSegments();
+                }
+                newText.append(text, lastPos, scanner.blockStart());
+                if (pageIndependent && context != null) {
+                    expandReusable(handlers, context, lookupMarker, metadata, metadataBlock,
+                            visitedMarkers, newText);
+                } else {
+                    for (boolean[] pageDependent : REUSABLE_EXPANSIONS.get()) {
+                        pageDependent[0] = true;
+                    }
+                    applyHandlers(handlers, context, lookupMarker, metadata, metadataBlock,
+                            visitedMarkers, newText);
                 }
+                if (budgetTracker != null) {
+                    budgetTracker.checkExpandedSize(newText.length());
+                }
+                lastPos = scanner.blockEnd();
             }
-            newText.append(matchObj.before);
-            newText.append(replacement);
             if (allOnlyAtPageStart) {
                 break;
             }
@@ -122,37 +229,99 @@ public class PageMetadataHandlersWrapper {
             visitedMarkers.remove(recursiveMarker);
         }
 
-        if (replacementDone) {
-            newText.append(text.substring(lastPos));
-            return newText.toString();
+        if (newText != null) {
+            newText.append(text, lastPos, text.length());
+            return newText;
         } else {
             return text;
         }
     }
 
-    public String applyMetadataHandlers(String pageText, Document doc) {
-        return applyMetadataHandlers(pageText, doc, null, null);
+    /**
+     * Appends the result of the last of the `handlers` to the `output`. The results of the
+     * other handlers are discarded.
+     */
+    private static void applyHandlers(List<PageMetadataHandler> handlers,
+            PageContext context, String marker, String metadata, String metadataBlock,
+            Set<String> visitedMarkers, TextSegments output) {
+        PageBudgetTracker budgetTracker = context == null ? null : context.getBudgetTracker();
+        for (int i = 0; i < handlers.size(); i++) {
+            PageMetadataHandler h = handlers.get(i);
+            if (budgetTracker != null) {
+                budgetTracker.enterHandler(marker);
+            }
+            try (Profiler.Measurement ignored = Profiler.measure("metadata/" +
+                    marker + "/" + h.getClass().getSimpleName())) {
+                h.appendPageMetadata(context, marker, metadata, metadataBlock, visitedMarkers,
+                        i == handlers.size() - 1 ? output : new TextSegments());
+            } finally {
+                if (budgetTracker != null) {
+                    budgetTracker.exitHandler();
+                }
+            }
+        }
     }
 
-    @AllArgsConstructor
-    @Getter
-    private static class MarkerKey {
-        private final String marker;
-        private final boolean onlyAtPageStart;
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            MarkerKey markerKey = (MarkerKey) o;
-            return onlyAtPageStart == markerKey.onlyAtPageStart &&
-                    Objects.equals(marker, markerKey.marker);
+    /**
+     * Applies the page independent `handlers` appending the result to the `output`, reuses
+     * the result of the same block expanded before, on this or another page. The files the
+     * expansion depended on are added to the page dependencies in both cases. The result is
+     * kept only if no page dependent handler took part in the nested expansions.
+     * <br />
+     * A kept expansion contains no cycles as it would have failed otherwise, so reusing it
+     * doesn't skip the cycle detection.
+     */
+    private void expandReusable(List<PageMetadataHandler> handlers,
+            PageContext context, String marker, String metadata, String metadataBlock,
+            Set<String> visitedMarkers, TextSegments output) {
+        ExpandedBlockKey key = new ExpandedBlockKey(handlers, metadataBlock);
+        PageDependencies dependencies = context.getDependencies();
+        ExpandedBlock block = this.expandedBlocks.get(key);
+        if (block != null) {
+            EXPANDED_BLOCK_HITS.increment();
+            dependencies.addFiles(block.files);
+            output.append(block.text);
+            return;
         }
+        EXPANDED_BLOCK_MISSES.increment();
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(marker, onlyAtPageStart);
+        Deque<boolean[]> expansions = REUSABLE_EXPANSIONS.get();
+        boolean[] pageDependent = {false};
+        Set<String> files = dependencies.startRecording();
+        expansions.push(pageDependent);
+        TextSegments replacement = new TextSegments();
+        try {
+            applyHandlers(handlers, context, marker, metadata, metadataBlock, visitedMarkers,
+                    replacement);
+        } finally {
+            expansions.pop();
+            dependencies.stopRecording(files);
+        }
+        if (pageDependent[0] || this.expandedBlocks.size() >= MAX_EXPANDED_BLOCKS) {
+            output.append(replacement);
+            return;
         }
+        String text = replacement.toString();
+        this.expandedBlocks.putIfAbsent(key, new ExpandedBlock(text, files));
+        output.append(text);
+    }
+
+    /**
+     * Forgets the kept block expansions that depended on the changed `files`.
+     */
+    public void invalidateExpandedBlocks(Set<String> files) {
+        this.expandedBlocks.values().removeIf(block -> !Collections.disjoint(block.files, files));
+    }
+
+    private static Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", EXPANDED_BLOCK_HITS.sum());
+        stats.put("misses", EXPANDED_BLOCK_MISSES.sum());
+        return stats;
+    }
+
+    public String applyMetadataHandlers(String pageText, PageContext context) {
+        return applyMetadataHandlers(pageText, context, null, null);
     }
 
     @AllArgsConstructor
@@ -165,52 +334,38 @@ public class PageMetadataHandlersWrapper {
         private final int endPos;
     }
 
+    /**
+     * Returns the metadata blocks of the `text` as the objects holding the strings. The page
+     * processing uses {@link MetadataScanner} directly to avoid copying the text.
+     */
     public static Iterator<MetadataMatchObject> metadataFinder(String text) {
 
         return new Iterator<MetadataMatchObject>() {
 
-            private int done = 0;
-            private int begin = 0;
-            final Deque<Integer> stack = new ArrayDeque<>();
+            private final MetadataScanner scanner = new MetadataScanner(text);
             private MetadataMatchObject metadataMatchObject;
-            final Matcher delimiter = METADATA_DELIMITERS_PATTERN.matcher(text);
 
             @Override
             public boolean hasNext() {
-                while (delimiter.find()) {
-                    if (delimiter.group().equals(METADATA_START)) {
-                        stack.push(delimiter.start());
-                    } else if (delimiter.group().equals(METADATA_END)) {
-                        if (stack.isEmpty()) {
-                            continue;
-                        } else {
-                            begin = stack.pop();
-                        }
-                    }
-                    if (stack.isEmpty()) {
-                        int end = delimiter.end() - METADATA_END_LEN;
-                        Matcher matcher = METADATA_PATTERN
-                                .matcher(text.substring(begin + METADATA_START_LEN, end));
-                        if (matcher.find()) {
-                            metadataMatchObject =
-                                    new MetadataMatchObject(text.substring(done, begin),
-                                            matcher.group(1), matcher.group(2),
-                                            text.substring(begin, end + METADATA_END_LEN),
-                                            end + METADATA_END_LEN);
-                            done = end + METADATA_END_LEN;
-                            return true;
-                        }
-                    }
+                if (metadataMatchObject == null && scanner.find()) {
+                    metadataMatchObject = new MetadataMatchObject(
+                            text.substring(scanner.previousEnd(), scanner.blockStart()),
+                            text.substring(scanner.markerStart(), scanner.markerEnd()),
+                            text.substring(scanner.markerEnd(), scanner.metadataEnd()),
+                            text.substring(scanner.blockStart(), scanner.blockEnd()),
+                            scanner.blockEnd());
                 }
-                return false;
+                return metadataMatchObject != null;
             }
 
             @Override
             public MetadataMatchObject next() {
-                if (metadataMatchObject == null) {
-                    throw new IllegalStateException();
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
-                return metadataMatchObject;
+                MetadataMatchObject result = metadataMatchObject;
+                metadataMatchObject = null;
+                return result;
             }
         };
     }
@@ -6,7 +6,6 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.NullNode;
 import org.apache.commons.lang3.StringUtils;
 import world.md2html.options.argfile.ArgFileParseException;
-import world.md2html.options.model.Document;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -61,7 +60,7 @@ public class IgnorePlugin extends AbstractMd2HtmlPlugin implements PageMetadataH
 
     @Override
     public String acceptPageMetadata(
-            Document document, String marker, String metadata,
+            PageContext context, String marker, String metadata,
             String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
 
@@ -4,11 +4,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.networknt.schema.JsonSchema;
 import world.md2html.options.argfile.ArgFileParseException;
-import world.md2html.options.model.Document;
 import world.md2html.options.model.SessionOptions;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.utils.JsonUtils;
 import world.md2html.utils.SmartSubstringer;
+import world.md2html.utils.TextSegments;
 import world.md2html.utils.UserError;
 import world.md2html.utils.Utils;
 
@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -48,7 +49,7 @@ public class IncludeFilePlugin extends AbstractMd2HtmlPlugin implements PageMeta
         for (JsonNode item : data) {
             ObjectNode itemNode = (ObjectNode) item;
             for (JsonNode jsonNode : itemNode.get("markers")) {
-                String marker = jsonNode.asText().toUpperCase();
+                String marker = jsonNode.asText().toUpperCase(Locale.ROOT);
                 if (dataMap.containsKey(marker)) {
                     throw new UserError("Marker duplication (case-insensitively): " + marker);
                 }
@@ -84,13 +85,23 @@ public class IncludeFilePlugin extends AbstractMd2HtmlPlugin implements PageMeta
     @Override
     public List<PageMetadataHandlerInfo> pageMetadataHandlers() {
         return this.data.keySet().stream().map(marker ->
-                new PageMetadataHandlerInfo(this, marker, false)).collect(Collectors.toList());
+                new PageMetadataHandlerInfo(this, marker, false, true))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
+        TextSegments output = new TextSegments();
+        appendPageMetadata(context, marker, metadata, metadataSection, visitedMarkers, output);
+        return output.toString();
+    }
+
+    @Override
+    public void appendPageMetadata(PageContext context, String marker, String metadata,
+            String metadataSection, Set<String> visitedMarkers, TextSegments output
+    ) throws PageMetadataException {
 
         IncludeFileData markerData = this.data.get(marker);
         SmartSubstringer substringer = markerData.substringer;
@@ -103,7 +114,7 @@ public class IncludeFilePlugin extends AbstractMd2HtmlPlugin implements PageMeta
                     "file", this.metadataSchema));
         } catch (UserError e) {
             throw new UserError("Error in inclusion: " + e.getMessage() + ", page: '" +
-                    document.getInput());
+                    context.getDocument().getInput());
         }
 
         substringer = substringer.smartCopy(
@@ -114,6 +125,7 @@ public class IncludeFilePlugin extends AbstractMd2HtmlPlugin implements PageMeta
         );
         String filePath = ((String) metadataMap.get("file")).trim();
         Path includeFile = Paths.get(markerData.rootDir, filePath);
+        context.getDependencies().addFile(includeFile);
         String content = supplyWithFileExceptionAsUserError(
                 () -> getCachedString(includeFile, Utils::readStringFromUtf8File),
                 "Error processing page metadata block"
@@ -121,22 +133,38 @@ public class IncludeFilePlugin extends AbstractMd2HtmlPlugin implements PageMeta
 
         content = substringer.substring(content);
 
+        boolean recursive;
+        if (metadataMap.containsKey("recursive")) {
+            recursive = (Boolean) metadataMap.get("recursive");
+        } else {
+            recursive = markerData.recursive;
+        }
+
         String trim = (String) metadataMap.getOrDefault("trim", markerData.trim);
         if ("all".equals(trim)) {
+            if (!recursive) {
+                // The cached file content is appended without copying.
+                int start = 0;
+                int end = content.length();
+                while (start < end && content.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && content.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                output.append(content, start, end);
+                return;
+            }
             content = content.trim();
         } else if ("empty-lines".equals(trim)) {
             content = Utils.stripEmptyLines(content);
         }
 
-        boolean recursive;
-        if (metadataMap.containsKey("recursive")) {
-            recursive = (Boolean) metadataMap.get("recursive");
+        if (recursive) {
+            metadataHandlers.expandMetadataHandlers(content, context, visitedMarkers,
+                    "INCLUDE_FILE_PLUGIN:" + includeFile, output);
         } else {
-            recursive = markerData.recursive;
+            output.append(content);
         }
-        return recursive ?
-                metadataHandlers.applyMetadataHandlers(content, document, visitedMarkers,
-                        "INCLUDE_FILE_PLUGIN:" + includeFile) :
-                content;
     }
 }
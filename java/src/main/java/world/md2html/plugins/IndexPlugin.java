@@ -33,14 +33,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.text.StringEscapeUtils.escapeHtml4;
@@ -70,10 +73,26 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
         private boolean addLettersBlock;
         private ObjectNode documentJson;
         private Document document;
-        private String currentLinkPage;
-        private int currentAnchorNumber;
         private Map<String, List<IndexEntry>> indexCache;
-        private final Set<String> cachedPageResets = new HashSet<>();
+        /**
+         * The anchors of the pages processed since the last finalization, merged into the
+         * index cache when finalizing.
+         */
+        private final Map<String, List<IndexEntry>> processedPages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The state of the page being processed for a single index, kept in the page context.
+     */
+    private static class PageState {
+        private final String linkPage;
+        private final List<IndexEntry> anchors;
+        private int anchorNumber = 0;
+
+        private PageState(String linkPage, List<IndexEntry> anchors) {
+            this.linkPage = linkPage;
+            this.anchors = anchors;
+        }
     }
 
     private static final String INDEX_ENTRY_ANCHOR_PREFIX = "index_entry_";
@@ -84,6 +103,7 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
     private static final String INDEX_LETTERS_BLOCK_CLASS = "index_letters";
 
     private Map<String, IndexData> indexData;
+    private final Map<String, Integer> documentOrder = new HashMap<>();
 
     private SessionOptions options;
     private List<Md2HtmlPlugin> plugins;
@@ -125,7 +145,7 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
                 indexDataBuilder.addLettersBlock(lettersBlock.asBoolean());
             }
 
-            indexDataMap.put(marker.toUpperCase(), indexDataBuilder.build());
+            indexDataMap.put(marker.toUpperCase(Locale.ROOT), indexDataBuilder.build());
 
             indexData.remove("index-cache");
             indexData.remove("index-cache-relative");
@@ -209,6 +229,24 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
         this.plugins = plugins;
     }
 
+    @Override
+    public Set<String> templates() {
+        Set<String> templates = new HashSet<>();
+        for (IndexData indexData : this.indexData.values()) {
+            if (indexData.getDocument() != null) {
+                templates.add(indexData.getDocument().getTemplate());
+            }
+        }
+        return templates;
+    }
+
+    @Override
+    public void acceptDocumentList(List<Document> documents) {
+        for (int i = 0; i < documents.size(); i++) {
+            this.documentOrder.putIfAbsent(documents.get(i).getOutput(), i);
+        }
+    }
+
     @Override
     public List<PageMetadataHandlerInfo> pageMetadataHandlers() {
         return this.indexData.keySet().stream().map(marker ->
@@ -216,27 +254,31 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
     }
 
     @Override
-    public void newPage(Document document) {
+    public void newPage(PageContext context) {
         if (this.finalizationStarted) {
             return;
         }
-        for (IndexData indexData : this.indexData.values()) {
-            indexData.getIndexCache().put(document.getOutput(), new ArrayList<>());
-            indexData.getCachedPageResets().add(document.getOutput());
+        Document document = context.getDocument();
+        Map<String, PageState> pageStates = new HashMap<>();
+        for (Map.Entry<String, IndexData> indexDataEntry : this.indexData.entrySet()) {
+            IndexData indexData = indexDataEntry.getValue();
+            List<IndexEntry> anchors = new ArrayList<>();
+            // Only the page adds the anchors, they are merged after all pages are processed.
+            indexData.getProcessedPages().put(document.getOutput(), anchors);
             try {
-                indexData.setCurrentLinkPage(relativizeRelativeResource(document.getOutput(),
-                        indexData.getDocument().getOutput()));
+                pageStates.put(indexDataEntry.getKey(), new PageState(relativizeRelativeResource(
+                        document.getOutput(), indexData.getDocument().getOutput()), anchors));
             } catch (CheckedIllegalArgumentException e) {
                 throw new RuntimeException("Could not relativize '" +
                         indexData.getDocument().getOutput() + "' against '" +
                         document.getOutput() + "': " + e.getMessage(), e);
             }
-            indexData.setCurrentAnchorNumber(0);
         }
+        context.setPluginState(this, pageStates);
     }
 
     @Override
-    public Map<String, Object> variables(Document document) {
+    public Map<String, Object> variables(PageContext context) {
         return Collections.emptyMap();
     }
 
@@ -245,23 +287,25 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
         this.finalizationStarted = true;
 
         for (IndexData indexData : this.indexData.values()) {
-            if (indexData.getCachedPageResets().isEmpty()) {
+            if (indexData.getProcessedPages().isEmpty()) {
                 if (indexData.getDocument().isVerbose()) {
                     System.out.println("Index file is up-to-date. Skipping: "
                             + indexData.getDocument().getOutput());
                 }
-                return;
+                continue;
             }
+            PageContext context = new PageContext(indexData.getDocument());
             for (Md2HtmlPlugin plugin : this.plugins) {
-                plugin.newPage(indexData.getDocument());
+                plugin.newPage(context);
             }
 
+            mergeProcessedPages(indexData);
+
             Map<String, Object> substitutions = new HashMap<>();
             substitutions.put("content", generateIndexHtml(indexData.getIndexCache(),
                     indexData.isAddLetters(), indexData.isAddLettersBlock()));
 
-            Md2Html.outputPage(indexData.getDocument(), this.plugins, substitutions, this.options,
-                    null);
+            Md2Html.outputPage(context, this.plugins, substitutions, this.options, null);
 
             ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
             DefaultPrettyPrinter printer = new DefaultPrettyPrinter()
@@ -281,16 +325,28 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
             if (indexData.getDocument().isReport()) {
                 System.out.println(indexData.getDocument().getOutput());
             }
+
+            // In the watch mode the plugin continues collecting the changes.
+            indexData.getProcessedPages().clear();
         }
+
+        this.finalizationStarted = false;
     }
 
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
 
-        IndexData indexData = this.indexData.get(marker.toUpperCase());
-        Map<String, List<IndexEntry>> indexCache = indexData.getIndexCache();
+        Document document = context.getDocument();
+        Map<String, PageState> pageStates = context.getPluginState(this, () -> null);
+        PageState pageState = pageStates == null ? null :
+                pageStates.get(marker.toUpperCase(Locale.ROOT));
+        if (pageState == null) {
+            throw new PageMetadataException("Plugin '" + this.getClass().getSimpleName() +
+                    "': The page '" + document.getOutput() + "' was not started, " +
+                    "index entries cannot be added to it.");
+        }
 
         metadata = metadata.trim();
         List<String> terms;
@@ -301,23 +357,37 @@ public class IndexPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHa
             terms = Collections.singletonList(metadata);
         }
 
-        List<IndexEntry> anchors = indexCache.get(document.getOutput());
-        int currentAnchorNumber = indexData.getCurrentAnchorNumber() + 1;
-        String anchorName = INDEX_ENTRY_ANCHOR_PREFIX + marker.toLowerCase() + "_" +
-                currentAnchorNumber;
+        pageState.anchorNumber++;
+        String anchorName = INDEX_ENTRY_ANCHOR_PREFIX + marker.toLowerCase(Locale.ROOT) + "_" +
+                pageState.anchorNumber;
         String anchorText = "<a name=\"" + anchorName + "\"></a>";
-        indexData.setCurrentAnchorNumber(currentAnchorNumber);
 
         for (String term : terms) {
             String normalizedTerm = term.trim();
             IndexEntry indexEntry = new IndexEntry(normalizedTerm,
-                    indexData.getCurrentLinkPage() + "#" + anchorName, document.getTitle());
-            anchors.add(indexEntry);
+                    pageState.linkPage + "#" + anchorName, document.getTitle());
+            pageState.anchors.add(indexEntry);
         }
 
         return anchorText;
     }
 
+    /**
+     * Puts the anchors of the processed pages into the index cache. The pages that were
+     * already in the cache keep their places, the new pages are added to its end. As pages
+     * may be processed concurrently, they are merged in the documents order, that is the order
+     * a serial run would process them in.
+     */
+    private void mergeProcessedPages(IndexData indexData) {
+        List<String> pages = new ArrayList<>(indexData.getProcessedPages().keySet());
+        pages.sort(Comparator.comparing((String page) ->
+                this.documentOrder.getOrDefault(page, Integer.MAX_VALUE))
+                .thenComparing(Comparator.naturalOrder()));
+        for (String page : pages) {
+            indexData.getIndexCache().put(page, indexData.getProcessedPages().get(page));
+        }
+    }
+
     private static String generateIndexHtml(Map<String, List<IndexEntry>> indexCache,
                                             boolean addLetters, boolean addLettersBlock) {
 
@@ -11,6 +11,7 @@ import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface Md2HtmlPlugin {
 
@@ -52,20 +53,47 @@ public interface Md2HtmlPlugin {
     }
 
     /**
-     * Reacts to a new page. May be used to reset the plugin's state when a new page comes
-     * into processing.
+     * Reacts to a new page. May be used to initialize the plugin's page state in the `context`
+     * when a new page comes into processing. Pages may be processed concurrently, so the
+     * per-page state must be kept in the context rather than in the plugin's fields.
      */
-    default void newPage(Document document) {
+    default void newPage(PageContext context) {
     }
 
     default List<PageMetadataHandlerInfo> pageMetadataHandlers() {
         return Collections.emptyList();
     }
 
-    default Map<String, Object> variables(Document document) {
+    /**
+     * Returns the templates of the pages the plugin generates itself, so they may be compiled
+     * before the documents processing.
+     */
+    default Set<String> templates() {
+        return Collections.emptySet();
+    }
+
+    default Map<String, Object> variables(PageContext context) {
         return Collections.emptyMap();
     }
 
+    /**
+     * Returns the plugin data the `document` output depends on that doesn't come from the
+     * argument file, for example the data collected from other pages. When this value changes
+     * between runs the document is rebuilt. Is called for every document, including the
+     * up-to-date ones, so must be cheap. The value is expected to be short, like a hash of the
+     * data.
+     */
+    default String dependencyFact(Document document) {
+        return null;
+    }
+
+    /**
+     * Is called in the watch mode before the documents are processed again. A plugin that
+     * caches data derived from files must drop the data of the changed `files`.
+     */
+    default void filesChanged(Set<String> files) {
+    }
+
     /**
      * Executes after all pages processed.
      */
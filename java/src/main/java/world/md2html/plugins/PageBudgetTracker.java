@@ -0,0 +1,87 @@
+package world.md2html.plugins;
+
+import world.md2html.options.model.PageBudget;
+import world.md2html.utils.UserError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the resources the page uses and fails the page processing as soon as its
+ * {@link PageBudget} is exceeded. The error names the chain of the metadata markers being
+ * expanded at that moment, so a runaway recursive definition is easy to find. Only the page
+ * being processed fails, the other pages are still processed.
+ */
+public class PageBudgetTracker {
+
+    private final PageBudget budget;
+    private final long start;
+    /**
+     * `Long.MAX_VALUE` for the unlimited time.
+     */
+    private final long maxNanos;
+    private int handlerCalls = 0;
+    /**
+     * The markers of the metadata blocks being expanded, the outermost one is the first.
+     */
+    private final List<String> markerChain = new ArrayList<>();
+
+    public PageBudgetTracker(PageBudget budget) {
+        this.budget = budget;
+        this.start = System.nanoTime();
+        // Saturated to `Long.MAX_VALUE` for the unlimited time.
+        this.maxNanos = TimeUnit.MILLISECONDS.toNanos(budget.getMaxTime());
+    }
+
+    /**
+     * Called before a metadata handler processes a block with the `marker`.
+     */
+    public void enterHandler(String marker) {
+        this.markerChain.add(marker);
+        this.handlerCalls++;
+        if (this.handlerCalls > this.budget.getMaxHandlerCalls()) {
+            throw exceeded("more than " + this.budget.getMaxHandlerCalls() +
+                    " metadata handler calls");
+        }
+        checkTime();
+    }
+
+    public void exitHandler() {
+        this.markerChain.remove(this.markerChain.size() - 1);
+    }
+
+    /**
+     * Checks the length of the metadata expansion result so far.
+     */
+    public void checkExpandedSize(int length) {
+        if (length > this.budget.getMaxExpandedSize()) {
+            throw exceeded("expanded text longer than " + this.budget.getMaxExpandedSize() +
+                    " characters");
+        }
+    }
+
+    public void checkTime() {
+        // The difference of the `nanoTime` values doesn't overflow, unlike the values
+        // themselves.
+        if (this.maxNanos != Long.MAX_VALUE && System.nanoTime() - this.start > this.maxNanos) {
+            throw exceeded("processing took longer than " + this.budget.getMaxTime() + " ms");
+        }
+    }
+
+    private PageBudgetExceededError exceeded(String reason) {
+        return new PageBudgetExceededError("Page budget exceeded: " + reason +
+                (this.markerChain.isEmpty() ?
+                        "" : ", marker chain: " + String.join(" > ", this.markerChain)));
+    }
+
+    /**
+     * Fails only the page that exceeded its budget, the build goes on with the other pages.
+     */
+    public static class PageBudgetExceededError extends UserError {
+        public PageBudgetExceededError(String message) {
+            super(message);
+        }
+    }
+
+}
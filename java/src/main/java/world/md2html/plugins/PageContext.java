@@ -0,0 +1,81 @@
+package world.md2html.plugins;
+
+import lombok.Getter;
+import world.md2html.dependencies.DependencyGraph;
+import world.md2html.dependencies.PageDependencies;
+import world.md2html.options.model.Document;
+import world.md2html.options.model.PageBudget;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The state of a single page being processed. A context is created for every page and is used
+ * only by one thread at a time (the processing stages hand it over to each other), so plugins
+ * keep their per-page state here instead of their own fields. This allows processing several
+ * pages at the same time without locks.
+ */
+public class PageContext {
+
+    @Getter
+    private final Document document;
+    private final Map<Md2HtmlPlugin, Object> pluginStates;
+    @Getter
+    private final PageDependencies dependencies = new PageDependencies();
+    /**
+     * The build manifest or `null` if the outputs' dependencies are not tracked.
+     */
+    @Getter
+    private final DependencyGraph dependencyGraph;
+    /**
+     * The page resource usage or `null` if the page is not limited.
+     */
+    @Getter
+    private PageBudgetTracker budgetTracker;
+
+    public PageContext(Document document) {
+        this(document, null);
+    }
+
+    public PageContext(Document document, DependencyGraph dependencyGraph) {
+        this(document, new IdentityHashMap<>(), dependencyGraph);
+    }
+
+    private PageContext(Document document, Map<Md2HtmlPlugin, Object> pluginStates,
+            DependencyGraph dependencyGraph) {
+        this.document = document;
+        this.pluginStates = pluginStates;
+        this.dependencyGraph = dependencyGraph;
+    }
+
+    /**
+     * Creates a context of an additional page generated while processing this page (for
+     * example, a wrapped code file). The new context shares the plugins state with this one,
+     * but not the dependencies.
+     */
+    public PageContext withDocument(Document document) {
+        return new PageContext(document, this.pluginStates, this.dependencyGraph);
+    }
+
+    /**
+     * Starts counting the resources the page uses against the `budget` (may be `null`).
+     */
+    public void startBudget(PageBudget budget) {
+        this.budgetTracker = budget == null ? null : new PageBudgetTracker(budget);
+    }
+
+    /**
+     * Returns the page state of the `plugin` creating it with the `initializer` if the plugin
+     * has no state on this page yet.
+     */
+    public <T> T getPluginState(Md2HtmlPlugin plugin, Supplier<T> initializer) {
+        //noinspection unchecked
+        return (T) this.pluginStates.computeIfAbsent(plugin, p -> initializer.get());
+    }
+
+    public void setPluginState(Md2HtmlPlugin plugin, Object state) {
+        this.pluginStates.put(plugin, state);
+    }
+
+}
@@ -6,22 +6,29 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.networknt.schema.JsonSchema;
 import lombok.Getter;
+import world.md2html.dependencies.DependencyGraph;
 import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.model.Document;
 import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.Hashing;
 import world.md2html.utils.JsonUtils;
 import world.md2html.utils.UserError;
 import world.md2html.utils.Utils;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static world.md2html.utils.JsonUtils.NODE_FACTORY;
 import static world.md2html.utils.JsonUtils.loadJsonSchemaFromResource;
+import static world.md2html.utils.Utils.getCachedString;
 import static world.md2html.utils.Utils.relativizeRelativeResource;
 
 public class PageFlowsPlugin extends AbstractMd2HtmlPlugin {
@@ -31,6 +38,15 @@ public class PageFlowsPlugin extends AbstractMd2HtmlPlugin {
 
     private Map<String, PageFlowRaw> data = null;
     private ObjectNode jsonData = null;
+    /**
+     * The hashes of the page flows by their names.
+     */
+    private Map<String, String> pageFlowHashes = null;
+    /**
+     * The dependency facts by the template paths, a page depends only on the page flows its
+     * template may refer to.
+     */
+    private final Map<String, String> templateFacts = new ConcurrentHashMap<>();
 
     @Override
     public void acceptData(JsonNode data) throws ArgFileParseException {
@@ -112,6 +128,12 @@ public class PageFlowsPlugin extends AbstractMd2HtmlPlugin {
             addToEnd((ObjectNode) unifyData(extraPluginData));
         }
         parsePluginData(this.jsonData);
+        // Titles and links of the pages, some of them taken from the pages' metadata.
+        Map<String, String> pageFlowHashes = new HashMap<>();
+        this.jsonData.fields().forEachRemaining(pageFlowEntry ->
+                pageFlowHashes.put(pageFlowEntry.getKey(), DependencyGraph.hashToString(
+                        Hashing.hash64(pageFlowEntry.getValue().toString()))));
+        this.pageFlowHashes = pageFlowHashes;
     }
 
     private static class PageFlowRaw {
@@ -164,7 +186,55 @@ public class PageFlowsPlugin extends AbstractMd2HtmlPlugin {
         return this.data.isEmpty();
     }
 
-    public Map<String, Object> variables(Document document) {
+    /**
+     * Every page gets all the page flows, but only those the page template refers to by the
+     * page flow name or one of its group names are rendered. A page flow is rendered with all
+     * its pages, so the page depends on the whole page flow, not only on its neighbours.
+     * The template text is searched for the names as is, which may find more page flows than
+     * the template actually uses but never less.
+     */
+    @Override
+    public String dependencyFact(Document document) {
+        String template = document.getTemplate();
+        if (template == null) {
+            return null;
+        }
+        String fact = this.templateFacts.get(template);
+        if (fact == null) {
+            fact = templateFact(Paths.get(template));
+            this.templateFacts.put(template, fact);
+        }
+        return fact;
+    }
+
+    private String templateFact(Path template) {
+        String templateText;
+        try {
+            templateText = getCachedString(template, Utils::readStringFromUtf8File);
+        } catch (Exception e) {
+            // The template error will be reported when rendering, all page flows may be used.
+            templateText = null;
+        }
+        StringBuilder fact = new StringBuilder();
+        for (Map.Entry<String, PageFlowRaw> pageFlowEntry : this.data.entrySet()) {
+            String name = pageFlowEntry.getKey();
+            List<String> groups = pageFlowEntry.getValue().getGroups();
+            if (templateText == null || templateText.contains(name) ||
+                    groups.stream().anyMatch(templateText::contains)) {
+                fact.append(name).append('=').append(this.pageFlowHashes.get(name)).append(';');
+            }
+        }
+        return DependencyGraph.hashToString(Hashing.hash64(fact.toString()));
+    }
+
+    @Override
+    public void filesChanged(Set<String> files) {
+        this.templateFacts.keySet().removeIf(template ->
+                files.contains(Paths.get(template).normalize().toString()));
+    }
+
+    public Map<String, Object> variables(PageContext context) {
+        Document document = context.getDocument();
         Map<String, PageFlow> pageFlowVariables = new LinkedHashMap<>();
         Map<String, List<PageFlow>> pageFlowGroupVariables = new HashMap<>();
         this.data.forEach((k, v) -> {
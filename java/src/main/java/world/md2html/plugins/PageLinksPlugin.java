@@ -4,9 +4,11 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.NullNode;
+import world.md2html.dependencies.DependencyGraph;
 import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.model.Document;
 import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.Hashing;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -15,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static world.md2html.utils.JsonUtils.OBJECT_MAPPER;
@@ -25,6 +28,7 @@ public class PageLinksPlugin extends AbstractMd2HtmlPlugin implements PageMetada
     private List<String> markers;
     private List<PageMetadataHandlerInfo> pageLinksHandlers = new ArrayList<>();
     private Map<String, String> pages;
+    private String pagesFact;
 
     @Override
     public void acceptData(JsonNode data) throws ArgFileParseException {
@@ -62,11 +66,21 @@ public class PageLinksPlugin extends AbstractMd2HtmlPlugin implements PageMetada
         return this.pageLinksHandlers;
     }
 
+    /**
+     * The pages used by a page are known only after it's rendered, so every page depends on
+     * the codes and the outputs of all the pages with codes.
+     */
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String dependencyFact(Document document) {
+        return this.pagesFact;
+    }
+
+    @Override
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
 
+        Document document = context.getDocument();
         String destinationPageOutput = this.pages.get(metadata.trim());
         if (destinationPageOutput == null) {
             return metadataSection;
@@ -89,6 +103,8 @@ public class PageLinksPlugin extends AbstractMd2HtmlPlugin implements PageMetada
         this.pages = documents.stream().filter(d -> !Objects.isNull(d.getCode()))
                 .collect(Collectors.toMap(Document::getCode, Document::getOutput));
         if (!this.pages.isEmpty()) {
+            this.pagesFact = DependencyGraph.hashToString(
+                    Hashing.hash64(new TreeMap<>(this.pages).toString()));
             this.pageLinksHandlers = this.markers.stream()
                     .map(m -> new PageMetadataHandlerInfo(this, m, false))
                     .collect(Collectors.toList());
@@ -1,6 +1,7 @@
 package world.md2html.plugins;
 
-import world.md2html.options.model.Document;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.utils.TextSegments;
 import world.md2html.utils.UserError;
 
 import java.util.Set;
@@ -8,8 +9,8 @@ import java.util.Set;
 public interface PageMetadataHandler {
 
     /**
-     * Accepts document `doc` where the `metadata` was found, the metadata `marker`, the
-     * `metadata` itself and the whole section `metadata_section` from which the `metadata`
+     * Accepts the `context` of the page where the `metadata` was found, the metadata `marker`,
+     * the `metadata` itself and the whole section `metadata_section` from which the `metadata`
      * was extracted.
      * Returns the text that must replace the metadata section in the source text.
      *If the plugin itself processes metadata in its own content, it must:
@@ -17,10 +18,27 @@ public interface PageMetadataHandler {
      *and state the key that must be used for cycle detection
      *(see the existing plugins for examples).
      */
-    String acceptPageMetadata(Document document, String marker, String metadata,
+    String acceptPageMetadata(PageContext context, String marker, String metadata,
                               String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException;
 
+    /**
+     * Same as {@link #acceptPageMetadata}, but appends the result to the `output` instead of
+     * returning it. The page metadata processing calls this method. The handlers that produce
+     * large texts (e.g. include files) or process the metadata in their own content (see
+     * {@link PageMetadataHandlersWrapper#expandMetadataHandlers}) override it, so the texts
+     * are copied only once, when the whole page is converted into a string. Then
+     * {@link #acceptPageMetadata} may just call this method with a new {@link TextSegments}.
+     * <br />
+     * The appended texts must not change afterwards.
+     */
+    default void appendPageMetadata(PageContext context, String marker, String metadata,
+            String metadataSection, Set<String> visitedMarkers, TextSegments output
+    ) throws PageMetadataException {
+        output.append(acceptPageMetadata(context, marker, metadata, metadataSection,
+                visitedMarkers));
+    }
+
     class PageMetadataException extends UserError {
         public PageMetadataException(String message) {
             super(message);
@@ -14,5 +14,17 @@ public class PageMetadataHandlerInfo {
      * content on the page, if `false` then the handler accepts all metadata on the page.
      */
     private final boolean onlyAtPageStart;
+    /**
+     * If `true` then the handler result depends only on the metadata section and the handler
+     * configuration, not on the page. The handler must not change the page context except for
+     * adding the files the result depends on. Such sections are expanded once and the result
+     * is reused on the other pages (unless the expansion involves page dependent handlers).
+     */
+    private final boolean pageIndependent;
+
+    public PageMetadataHandlerInfo(PageMetadataHandler pageMetadataHandler, String marker,
+            boolean onlyAtPageStart) {
+        this(pageMetadataHandler, marker, onlyAtPageStart, false);
+    }
 
 }
@@ -5,13 +5,15 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.networknt.schema.JsonSchema;
 import world.md2html.options.argfile.ArgFileParseException;
-import world.md2html.options.model.Document;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static world.md2html.utils.JsonUtils.OBJECT_MAPPER;
 import static world.md2html.utils.JsonUtils.deJson;
@@ -19,16 +21,21 @@ import static world.md2html.utils.JsonUtils.loadJsonSchemaFromResource;
 
 public class PageVariablesPlugin extends AbstractMd2HtmlPlugin implements PageMetadataHandler {
 
+    private static final int MAX_PARSED_METADATA = 100_000;
+
     private List<PageMetadataHandlerInfo> handlers = new ArrayList<>();
-    private Map<String, Object> pageVariables;
 
     // We are going to validate multiple metadata blocks, so preloading the schema.
     private final JsonSchema metadataSchema =
             loadJsonSchemaFromResource("plugins/page_variables_metadata_schema.json");
 
-    public PageVariablesPlugin() {
-        resetPageVariables();
-    }
+    /**
+     * The GLOB documents metadata is read before the rendering to get the titles, codes or
+     * sort keys, so the same blocks are parsed twice. The parsed and validated blocks are kept
+     * for the session, beyond the limit the blocks are just parsed.
+     */
+    private final Map<String, ObjectNode> parsedMetadata = new ConcurrentHashMap<>();
+    private final AtomicInteger parsedMetadataCount = new AtomicInteger();
 
     @Override
     public void acceptData(JsonNode data) throws ArgFileParseException {
@@ -36,7 +43,7 @@ public class PageVariablesPlugin extends AbstractMd2HtmlPlugin implements PageMe
         List<PageMetadataHandlerInfo> handlers = new ArrayList<>();
         data.fields().forEachRemaining(entry -> {
             JsonNode valueNode = entry.getValue().get("only-at-page-start");
-            handlers.add(new PageMetadataHandlerInfo(this, entry.getKey().toUpperCase(),
+            handlers.add(new PageMetadataHandlerInfo(this, entry.getKey().toUpperCase(Locale.ROOT),
                     valueNode != null && valueNode.asBoolean()));
         });
         this.handlers = handlers;
@@ -56,17 +63,23 @@ public class PageVariablesPlugin extends AbstractMd2HtmlPlugin implements PageMe
     }
 
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
-        ObjectNode metadataNode;
-        try {
-            metadataNode = parseAndValidatePageVariableMetadata(metadata);
-        } catch (ArgFileParseException e) {
-            throw new PageMetadataException(e.getMessage());
+        ObjectNode metadataNode = this.parsedMetadata.get(metadata);
+        if (metadataNode == null) {
+            try {
+                metadataNode = parseAndValidatePageVariableMetadata(metadata);
+            } catch (ArgFileParseException e) {
+                throw new PageMetadataException(e.getMessage());
+            }
+            if (this.parsedMetadataCount.get() < MAX_PARSED_METADATA &&
+                    this.parsedMetadata.putIfAbsent(metadata, metadataNode) == null) {
+                this.parsedMetadataCount.incrementAndGet();
+            }
         }
         //noinspection unchecked
-        this.pageVariables.putAll((Map<String, Object>) deJson(metadataNode));
+        pageVariables(context).putAll((Map<String, Object>) deJson(metadataNode));
         return "";
     }
 
@@ -84,17 +97,17 @@ public class PageVariablesPlugin extends AbstractMd2HtmlPlugin implements PageMe
     }
 
     @Override
-    public Map<String, Object> variables(Document document) {
-        return this.pageVariables;
+    public Map<String, Object> variables(PageContext context) {
+        return pageVariables(context);
     }
 
     @Override
-    public void newPage(Document document) {
-        resetPageVariables();
+    public void newPage(PageContext context) {
+        context.setPluginState(this, new HashMap<String, Object>());
     }
 
-    private void resetPageVariables() {
-        this.pageVariables = new HashMap<>();
+    private Map<String, Object> pageVariables(PageContext context) {
+        return context.getPluginState(this, HashMap::new);
     }
 
 }
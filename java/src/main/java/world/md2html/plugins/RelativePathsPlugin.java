@@ -60,7 +60,8 @@ public class RelativePathsPlugin extends AbstractMd2HtmlPlugin implements PageMe
     }
 
     @Override
-    public Map<String, Object> variables(Document document) {
+    public Map<String, Object> variables(PageContext context) {
+        Document document = context.getDocument();
         Map<String, Object> variables = new HashMap<>();
         this.paths.forEach((k, v) -> {
             try {
@@ -74,10 +75,11 @@ public class RelativePathsPlugin extends AbstractMd2HtmlPlugin implements PageMe
     }
 
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
 
+        Document document = context.getDocument();
         String path = this.paths.get(metadata.trim());
         if (path == null) {
             return metadataSection;
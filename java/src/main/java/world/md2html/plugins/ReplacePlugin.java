@@ -6,9 +6,9 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import world.md2html.options.argfile.ArgFileParseException;
-import world.md2html.options.model.Document;
 import world.md2html.options.model.SessionOptions;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.utils.TextSegments;
 import world.md2html.utils.UserError;
 import world.md2html.utils.VariableReplacer;
 
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -66,10 +67,11 @@ public class ReplacePlugin extends AbstractMd2HtmlPlugin implements PageMetadata
                 if (recursiveNode != null) {
                     recursive = recursiveNode.asBoolean(false);
                 }
-                replacements.put(marker.toUpperCase(), new Replacement(replacer, recursive));
+                replacements.put(marker.toUpperCase(Locale.ROOT),
+                        new Replacement(replacer, recursive));
             }
             this.pageLinksHandlers.addAll(markers.stream()
-                    .map(m -> new PageMetadataHandlerInfo(this, m, false))
+                    .map(m -> new PageMetadataHandlerInfo(this, m, false, true))
                     .collect(Collectors.toList()));
         }
     }
@@ -91,24 +93,36 @@ public class ReplacePlugin extends AbstractMd2HtmlPlugin implements PageMetadata
     }
 
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
+        TextSegments output = new TextSegments();
+        appendPageMetadata(context, marker, metadata, metadataSection, visitedMarkers, output);
+        return output.toString();
+    }
+
+    @Override
+    public void appendPageMetadata(PageContext context, String marker, String metadata,
+            String metadataSection, Set<String> visitedMarkers, TextSegments output
+    ) throws PageMetadataException {
 
         String metadataStr = StringUtils.stripStart(metadata, null);
 
         List<String> values;
         if (metadataStr.startsWith("[")) {
             //noinspection unchecked
-            values = (List<String>) deJson(listFromStringOrArray(document, metadataStr));
+            values = (List<String>) deJson(listFromStringOrArray(context.getDocument(), metadataStr));
         } else {
             values = Collections.singletonList(metadataStr);
         }
         Replacement replacement = replacements.get(marker);
         String result = replacement.replacer.replace(values);
 
-        return replacement.recursive ?
-                metadataHandlers.applyMetadataHandlers(result, document, visitedMarkers, marker) :
-                result;
+        if (replacement.recursive) {
+            metadataHandlers.expandMetadataHandlers(result, context, visitedMarkers, marker,
+                    output);
+        } else {
+            output.append(result);
+        }
     }
 }
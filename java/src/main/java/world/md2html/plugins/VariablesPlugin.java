@@ -2,7 +2,6 @@ package world.md2html.plugins;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import world.md2html.options.argfile.ArgFileParseException;
-import world.md2html.options.model.Document;
 
 import java.util.Map;
 
@@ -25,7 +24,7 @@ public class VariablesPlugin extends AbstractMd2HtmlPlugin {
     }
 
     @Override
-    public Map<String, Object> variables(Document document) {
+    public Map<String, Object> variables(PageContext context) {
         return this.pageVariables;
     }
 
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import world.md2html.Md2Html;
+import world.md2html.dependencies.DependencyGraph;
 import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
@@ -14,6 +15,7 @@ import world.md2html.options.model.raw.ArgFileDocumentRaw;
 import world.md2html.options.model.raw.ArgFileRaw;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.utils.CheckedIllegalArgumentException;
+import world.md2html.utils.ConsoleBuffer;
 import world.md2html.utils.Utils;
 
 import java.io.IOException;
@@ -21,13 +23,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
 import static world.md2html.Md2HtmlUtils.generateHtml;
@@ -48,8 +57,23 @@ public class WrapCodePlugin extends AbstractMd2HtmlPlugin implements PageMetadat
         private Document documentObj;
     }
 
+    private static class ProcessedFile {
+        private final String input;
+        private final String output;
+        private final boolean upToDate;
+        private final boolean generated;
+
+        private ProcessedFile(String input, String output, boolean upToDate, boolean generated) {
+            this.input = input;
+            this.output = output;
+            this.upToDate = upToDate;
+            this.generated = generated;
+        }
+    }
+
     private Map<String, WrapCodeData> data;
-    private final Map<String, String> processedCache = new HashMap<>();
+    private final Map<String, ProcessedFile> processedCache = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<ProcessedFile>> processing = new ConcurrentHashMap<>();
 
     public void setDryRun(boolean dryRun) {
         this.dryRun = dryRun;
@@ -86,7 +110,7 @@ public class WrapCodePlugin extends AbstractMd2HtmlPlugin implements PageMetadat
             }
             markerDataNode.remove("style");
             markerDataNode.remove("variables");
-            dataMap.put(fieldEntry.getKey().toUpperCase(), wrapCodeData);
+            dataMap.put(fieldEntry.getKey().toUpperCase(Locale.ROOT), wrapCodeData);
         }
 
         this.data = dataMap;
@@ -141,6 +165,24 @@ public class WrapCodePlugin extends AbstractMd2HtmlPlugin implements PageMetadat
         this.plugins = plugins;
     }
 
+    @Override
+    public Set<String> templates() {
+        Set<String> templates = new HashSet<>();
+        for (WrapCodeData wrapCodeData : this.data.values()) {
+            if (wrapCodeData.documentObj != null) {
+                templates.add(wrapCodeData.documentObj.getTemplate());
+            }
+        }
+        return templates;
+    }
+
+    @Override
+    public void filesChanged(Set<String> files) {
+        this.processedCache.values().removeIf(processedFile ->
+                files.contains(processedFile.input) ||
+                files.contains(Paths.get(processedFile.output).normalize().toString()));
+    }
+
     @Override
     public List<PageMetadataHandlerInfo> pageMetadataHandlers() {
         return this.data.keySet().stream().map(marker ->
@@ -148,85 +190,165 @@ public class WrapCodePlugin extends AbstractMd2HtmlPlugin implements PageMetadat
     }
 
     @Override
-    public Map<String, Object> variables(Document document) {
+    public Map<String, Object> variables(PageContext context) {
         return Collections.emptyMap();
     }
 
+    private ProcessedFile processFile(PageContext context, WrapCodeData markerData,
+            String metadata, Path inputFile) {
+
+        Document documentObj = markerData.documentObj;
+        String inputFileStr = inputFile.toString().replace("\\", "/");
+        Path outputFile = Paths.get(documentObj.getOutput(), metadata + ".html");
+        String outputFileStr = outputFile.toString().replace("\\", "/");
+
+        documentObj = documentObj.toBuilder()
+                .input(inputFileStr)
+                .output(outputFileStr)
+                .build();
+        PageContext wrappedContext = context.withDocument(documentObj);
+        DependencyGraph dependencyGraph = context.getDependencyGraph();
+        if (dependencyGraph != null) {
+            wrappedContext.getDependencies().setFacts(
+                    dependencyGraph.pageFacts(documentObj, this.plugins));
+        }
+
+        boolean upToDate = false;
+        if (!documentObj.isForce() && Files.exists(outputFile) && dependencyGraph != null) {
+            upToDate = dependencyGraph.isUpToDate(outputFileStr,
+                    wrappedContext.getDependencies().getFacts());
+        } else if (!documentObj.isForce() && Files.exists(outputFile)) {
+            FileTime inputFileTime;
+            FileTime outputFileTime;
+            try {
+                inputFileTime = Files.getLastModifiedTime(inputFile);
+                outputFileTime = Files.getLastModifiedTime(outputFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            // Skipped whether the build is verbose or not, verbosity only affects the
+            // messages.
+            if (outputFileTime.compareTo(inputFileTime) > 0) {
+                upToDate = true;
+            }
+        }
+
+        boolean generated = false;
+        if (!upToDate && !this.dryRun) {
+            wrappedContext.getDependencies().addFile(inputFile);
+            String content = supplyWithFileExceptionAsUserError(
+                    () -> getCachedString(inputFile, Utils::readStringFromUtf8File),
+                    "Error processing page metadata block"
+            );
+            String docContent = "````" + markerData.style + "\n" +
+                     content + "\n" + "````";
+
+            Map<String, Object> substitutions = new HashMap<>();
+            substitutions.put("content", generateHtml(docContent,
+                    documentObj.getRenderingProfile()));
+
+            Map<String, Object> variables = new HashMap<>(markerData.variables);
+            String fileName = Paths.get(metadata).getFileName().toString();
+            variables.put("title", fileName);
+            variables.put("wrap_code_path", metadata);
+            variables.put("wrap_code_file_name", fileName);
+
+            Md2Html.outputPage(wrappedContext, this.plugins, substitutions, this.options,
+                    variables);
+            if (dependencyGraph != null) {
+                dependencyGraph.update(outputFileStr, wrappedContext.getDependencies());
+                // The pages referring to the output depend on its new content.
+                dependencyGraph.filesChanged(
+                        Collections.singleton(outputFile.normalize().toString()));
+            }
+            generated = true;
+        }
+        return new ProcessedFile(inputFile.normalize().toString(), outputFileStr, upToDate,
+                generated);
+    }
+
+    /**
+     * Processes the wrapped file once when several pages refer to it at the same time, the
+     * other threads wait for the result.
+     */
+    private ProcessedFile processFileOnce(String cacheKey, Callable<ProcessedFile> processor) {
+        FutureTask<ProcessedFile> task = new FutureTask<>(() -> {
+            // The file may have been processed after the cache was checked.
+            ProcessedFile processedFile = this.processedCache.get(cacheKey);
+            if (processedFile == null) {
+                processedFile = processor.call();
+                this.processedCache.put(cacheKey, processedFile);
+            }
+            return processedFile;
+        });
+        FutureTask<ProcessedFile> runningTask = this.processing.putIfAbsent(cacheKey, task);
+        if (runningTask == null) {
+            runningTask = task;
+            try {
+                task.run();
+            } finally {
+                this.processing.remove(cacheKey, task);
+            }
+        }
+
+        try {
+            return runningTask.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
-    public String acceptPageMetadata(Document document, String marker, String metadata,
+    public String acceptPageMetadata(PageContext context, String marker, String metadata,
                                      String metadataSection, Set<String> visitedMarkers
     ) throws PageMetadataException {
 
-        marker = marker.toUpperCase();
+        Document document = context.getDocument();
+        marker = marker.toUpperCase(Locale.ROOT);
         WrapCodeData markerData = this.data.get(marker);
-        metadata = metadata.trim();
+        String trimmedMetadata = metadata.trim();
         Document documentObj = markerData.documentObj;
 
-        Path inputFile = Paths.get(documentObj.getInput(), metadata);
-        String inputFileStr = inputFile.toString().replace("\\", "/");
-        String cacheKey = marker + "|" + inputFileStr;
-
-        String outputFileStr = this.processedCache.get(cacheKey);
-        if (outputFileStr == null) {
-            Path outputFile = Paths.get(documentObj.getOutput(), metadata + ".html");
-            outputFileStr = outputFile.toString().replace("\\", "/");
-
-            boolean needToGenerate = true;
-            if (!documentObj.isForce() && Files.exists(outputFile)) {
-                FileTime inputFileTime;
-                FileTime outputFileTime;
-                try {
-                    inputFileTime = Files.getLastModifiedTime(inputFile);
-                    outputFileTime = Files.getLastModifiedTime(outputFile);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                if (outputFileTime.compareTo(inputFileTime) > 0) {
-                    if (document.isVerbose()) {
-                        System.out.println("Wrapped output file is up-to-date. Skipping: "
-                                + document.getOutput());
-                        needToGenerate = false;
-                    }
-                }
-            }
+        Path inputFile = Paths.get(documentObj.getInput(), trimmedMetadata);
+        String cacheKey = marker + "|" + inputFile.toString().replace("\\", "/");
 
-            if (needToGenerate && !this.dryRun) {
-                documentObj = documentObj.toBuilder()
-                        .input(inputFileStr)
-                        .output(outputFileStr)
-                        .build();
-
-                String content = supplyWithFileExceptionAsUserError(
-                        () -> getCachedString(inputFile, Utils::readStringFromUtf8File),
-                        "Error processing page metadata block"
-                );
-                String docContent = "````" + markerData.style + "\n" +
-                         content + "\n" + "````";
-
-                Map<String, Object> substitutions = new HashMap<>();
-                substitutions.put("content", generateHtml(docContent));
-
-                Map<String, Object> variables = new HashMap<>(markerData.variables);
-                String fileName = Paths.get(metadata).getFileName().toString();
-                variables.put("title", fileName);
-                variables.put("wrap_code_path", metadata);
-                variables.put("wrap_code_file_name", fileName);
-
-                Md2Html.outputPage(documentObj, this.plugins, substitutions, this.options,
-                        variables);
-
-                if (documentObj.isVerbose()) {
-                    System.out.println("Wrapped output file generated: " + documentObj.getOutput());
-                }
-                if (documentObj.isReport()) {
-                    System.out.println(documentObj.getOutput());
-                }
+        ProcessedFile processedFile = this.processedCache.get(cacheKey);
+        if (processedFile == null) {
+            processedFile = processFileOnce(cacheKey,
+                    () -> processFile(context, markerData, trimmedMetadata, inputFile));
+        }
+        // The wrapped file is processed only when a page referring to it is processed, so
+        // the page must be processed again when the wrapped output changes.
+        context.getDependencies().addFile(inputFile);
+        context.getDependencies().addFile(Paths.get(processedFile.output));
+
+        List<String> messages = new ArrayList<>();
+        if (processedFile.upToDate && document.isVerbose()) {
+            messages.add("Wrapped output file is up-to-date. Skipping: " + document.getOutput());
+        }
+        if (processedFile.generated) {
+            if (documentObj.isVerbose()) {
+                messages.add("Wrapped output file generated: " + processedFile.output);
+            }
+            if (documentObj.isReport()) {
+                messages.add(processedFile.output);
             }
-            this.processedCache.put(cacheKey, outputFileStr);
         }
+        // Every page that refers to the file reports the same messages, but only the first
+        // page (in the documents order) will print them.
+        ConsoleBuffer.printOnce(this.getClass().getSimpleName() + "|" + cacheKey, messages);
 
         try {
-            return relativizeRelativeResource(outputFileStr, document.getOutput());
+            return relativizeRelativeResource(processedFile.output, document.getOutput());
         } catch (CheckedIllegalArgumentException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,97 @@
+package world.md2html.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the console messages of a document that is processed on a worker thread so that
+ * they can be printed later in the order of the documents, exactly as a serial run would print
+ * them.
+ * <br />
+ * When no buffer is active on the current thread the messages are printed immediately.
+ */
+public class ConsoleBuffer {
+
+    private static final ThreadLocal<ConsoleBuffer> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Keys of the messages that must be printed only once per run, see `printOnce`.
+     */
+    private static final Set<String> PRINTED_KEYS = ConcurrentHashMap.newKeySet();
+
+    private static class Entry {
+        private final String key;
+        private final List<String> lines;
+
+        private Entry(String key, List<String> lines) {
+            this.key = key;
+            this.lines = lines;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public static void println(String line) {
+        printOnce(null, Collections.singletonList(line));
+    }
+
+    /**
+     * Prints the `lines` only if no other lines with the same `key` were printed before. With
+     * buffers this check is done when the buffer is flushed, so the lines are attributed to the
+     * first document (in the documents order) that reported them.
+     */
+    public static void printOnce(String key, List<String> lines) {
+        ConsoleBuffer buffer = CURRENT.get();
+        if (buffer == null) {
+            print(key, lines);
+        } else {
+            buffer.entries.add(new Entry(key, lines));
+        }
+    }
+
+    /**
+     * Allows printing again the messages printed once. Is called in the watch mode before the
+     * documents are processed again.
+     */
+    public static void resetPrintedOnce() {
+        PRINTED_KEYS.clear();
+    }
+
+    private static void print(String key, List<String> lines) {
+        if (key == null || PRINTED_KEYS.add(key)) {
+            lines.forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Executes the `action` on the current thread with this buffer collecting its messages.
+     */
+    public void execute(Utils.RunnableWithException action) throws Exception {
+        ConsoleBuffer previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Prints the collected messages. Must be called in the order the messages are expected
+     * to appear.
+     */
+    public void flush() {
+        for (Entry entry : entries) {
+            print(entry.key, entry.lines);
+        }
+        entries.clear();
+    }
+
+}
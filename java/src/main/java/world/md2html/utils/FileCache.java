@@ -0,0 +1,198 @@
+package world.md2html.utils;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the content of the read files (pages, included files etc.) in memory within a byte
+ * budget. When the budget is exceeded, the least recently used files are evicted. The size of
+ * a file content is estimated as two bytes per character.
+ * <br />
+ * The cache may be used from several threads. When several threads request the same file that
+ * is not cached, it's read only once and the other threads wait for the result. With
+ * revalidation on (for the long-running modes), the file modification time and size are
+ * checked on every request and the file is read again if they changed.
+ */
+public class FileCache {
+
+    /**
+     * A quarter of the maximum heap size.
+     */
+    public static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+    private static class Entry {
+        private final String content;
+        private final long size;
+        /**
+         * The file attributes at the moment the file was read or `null` if not known.
+         */
+        private final BasicFileAttributes attributes;
+
+        private Entry(String content, BasicFileAttributes attributes) {
+            this.content = content;
+            this.size = 2L * content.length();
+            this.attributes = attributes;
+        }
+
+        private boolean isValid(Path path) {
+            if (this.attributes == null) {
+                return false;
+            }
+            BasicFileAttributes current = Utils.readAttributesOrNull(path);
+            return current != null && current.size() == this.attributes.size() &&
+                    current.lastModifiedTime().equals(this.attributes.lastModifiedTime());
+        }
+    }
+
+    /**
+     * Guarded by itself. Iterates from the least recently used entry.
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, FutureTask<Entry>> loading = new ConcurrentHashMap<>();
+    private long size = 0;
+    private long budget;
+    private volatile boolean revalidate = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FileCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the content of the file `path`. If the file is not cached, it's read by the
+     * `reader`. The exceptions thrown by the `reader` are rethrown.
+     */
+    public String get(Path path, Utils.FunctionWithException<Path, String> reader)
+            throws Exception {
+        Path key = path.normalize();
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+        if (entry != null && (!this.revalidate || entry.isValid(key))) {
+            this.hits.increment();
+            return entry.content;
+        }
+
+        FutureTask<Entry> task = new FutureTask<>(() -> load(key, path, reader));
+        FutureTask<Entry> runningTask = this.loading.putIfAbsent(key, task);
+        if (runningTask == null) {
+            this.misses.increment();
+            runningTask = task;
+            try {
+                task.run();
+            } finally {
+                this.loading.remove(key, task);
+            }
+        } else {
+            this.hits.increment();
+        }
+
+        try {
+            return runningTask.get().content;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private Entry load(Path key, Path path, Utils.FunctionWithException<Path, String> reader)
+            throws Exception {
+        // The attributes are read before the content, so if the file changes while it's
+        // being read, the next revalidation will notice it.
+        BasicFileAttributes attributes =
+                this.revalidate ? Utils.readAttributesOrNull(path) : null;
+        Entry entry = new Entry(reader.apply(path), attributes);
+        synchronized (this.entries) {
+            Entry previous = this.entries.remove(key);
+            if (previous != null) {
+                this.size -= previous.size;
+            }
+            if (entry.size <= this.budget) {
+                this.entries.put(key, entry);
+                this.size += entry.size;
+                evict();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Must be called while holding the entries lock.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.size > this.budget && iterator.hasNext()) {
+            this.size -= iterator.next().size;
+            iterator.remove();
+            this.evictions.increment();
+        }
+    }
+
+    /**
+     * Sets the byte budget evicting the files that don't fit in it.
+     */
+    public void setBudget(long budget) {
+        synchronized (this.entries) {
+            this.budget = budget;
+            evict();
+        }
+    }
+
+    /**
+     * Turns on or off checking of the cached files modification on every request.
+     */
+    public void setRevalidate(boolean revalidate) {
+        this.revalidate = revalidate;
+    }
+
+    /**
+     * Removes the `files` from the cache. The files are given as normalized path strings.
+     */
+    public void invalidate(Set<String> files) {
+        synchronized (this.entries) {
+            Iterator<Map.Entry<Path, Entry>> iterator = this.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Entry> entry = iterator.next();
+                if (files.contains(entry.getKey().toString())) {
+                    this.size -= entry.getValue().size;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the counters: the requests served from the cache (including the requests that
+     * waited for another thread reading the same file), the files read, the evicted files,
+     * the cached files and their estimated size.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", this.hits.sum());
+        stats.put("misses", this.misses.sum());
+        stats.put("evictions", this.evictions.sum());
+        synchronized (this.entries) {
+            stats.put("entries", (long) this.entries.size());
+            stats.put("bytes", this.size);
+        }
+        return stats;
+    }
+
+}
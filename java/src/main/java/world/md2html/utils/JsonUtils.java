@@ -20,6 +20,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class JsonUtils {
@@ -28,6 +29,13 @@ public class JsonUtils {
     public static final JsonNodeFactory NODE_FACTORY = OBJECT_MAPPER.getNodeFactory();
     public static final ObjectMapper OBJECT_MAPPER_FOR_BUILDERS = new ObjectMapper();
 
+    private static final JsonSchemaFactory SCHEMA_FACTORY =
+            JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4);
+    /**
+     * The bundled schemas compiled once per resource location and shared by all the callers.
+     */
+    private static final Map<String, JsonSchema> COMPILED_SCHEMAS = new ConcurrentHashMap<>();
+
     static {
         OBJECT_MAPPER_FOR_BUILDERS.setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
             @Override
@@ -117,15 +125,23 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * Returns the schema from the resource. The schema is read and compiled on the first call
+     * only, the next calls return the same instance.
+     */
     public static JsonSchema loadJsonSchemaFromResource(String schemaResourceLocation) {
-        String argumentFileSchema;
+        return COMPILED_SCHEMAS.computeIfAbsent(schemaResourceLocation,
+                JsonUtils::compileJsonSchemaFromResource);
+    }
+
+    private static JsonSchema compileJsonSchemaFromResource(String schemaResourceLocation) {
+        String schema;
         try {
-            argumentFileSchema = Utils.readStringFromResource(schemaResourceLocation);
+            schema = Utils.readStringFromResource(schemaResourceLocation);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        JsonSchemaFactory factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4);
-        return factory.getSchema(argumentFileSchema);
+        return SCHEMA_FACTORY.getSchema(schema);
     }
 
 }
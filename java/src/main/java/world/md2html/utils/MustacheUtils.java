@@ -3,6 +3,7 @@ package world.md2html.utils;
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
+import lombok.Value;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -10,47 +11,151 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Compiles the templates and keeps the compiled templates for reuse. A template file compiled
+ * in the legacy mode and in the normal mode is kept as two different templates. With
+ * revalidation on (for the long-running modes), the template file modification time and size
+ * are checked on every request and the template is compiled again if they changed.
+ */
 public class MustacheUtils {
 
-    private static final Map<Path, Mustache> CACHED_MUSTACHE_RENDERERS = new HashMap<>();
+    @Value
+    private static class TemplateKey {
+        Path path;
+        boolean legacy;
+    }
+
+    private static class CompiledTemplate {
+        private final Mustache mustache;
+        /**
+         * The file attributes at the moment the template was read or `null` if not known.
+         */
+        private final BasicFileAttributes attributes;
+
+        private CompiledTemplate(Mustache mustache, BasicFileAttributes attributes) {
+            this.mustache = mustache;
+            this.attributes = attributes;
+        }
+
+        private boolean isValid(Path path) {
+            if (this.attributes == null) {
+                return false;
+            }
+            BasicFileAttributes current = Utils.readAttributesOrNull(path);
+            return current != null && current.size() == this.attributes.size() &&
+                    current.lastModifiedTime().equals(this.attributes.lastModifiedTime());
+        }
+    }
+
+    private static final Map<TemplateKey, CompiledTemplate> CACHED_MUSTACHE_RENDERERS =
+            new ConcurrentHashMap<>();
     private static final MustacheFactory MUSTACHE_FACTORY = new DefaultMustacheFactory();
     private static final Pattern LEGACY_PLACEHOLDERS_REPLACEMENT_PATTERN =
             Pattern.compile("(^|[^$])\\$\\{([^}]+)\\}");
     private static final Pattern LEGACY_PLACEHOLDERS_UNESCAPED_REPLACEMENT_PATTERN =
             Pattern.compile("(^|[^$])\\$\\{(styles|content)\\}");
 
+    private static volatile boolean revalidate = false;
+
+    private MustacheUtils() {
+    }
+
     public static Mustache createCachedMustacheRenderer(Path templateFile) throws IOException {
-        Mustache result = CACHED_MUSTACHE_RENDERERS.get(templateFile);
-        if (result == null) {
-            try (Reader reader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(templateFile.toFile()), StandardCharsets.UTF_8))) {
-                result = MUSTACHE_FACTORY.compile(reader, templateFile.toString());
-                CACHED_MUSTACHE_RENDERERS.put(templateFile, result);
-            }
-        }
-        return result;
+        return cachedRenderer(templateFile, false);
     }
 
     public static Mustache createCachedMustacheRendererLegacy(Path templateFile)
             throws IOException {
-        Mustache result = CACHED_MUSTACHE_RENDERERS.get(templateFile);
-        if (result == null) {
+        return cachedRenderer(templateFile, true);
+    }
+
+    private static Mustache cachedRenderer(Path templateFile, boolean legacy)
+            throws IOException {
+        TemplateKey key = new TemplateKey(templateFile.normalize(), legacy);
+        CompiledTemplate template = CACHED_MUSTACHE_RENDERERS.get(key);
+        if (template != null && revalidate && !template.isValid(key.getPath())) {
+            CACHED_MUSTACHE_RENDERERS.remove(key, template);
+            template = null;
+        }
+        if (template == null) {
+            try {
+                // Concurrent requests of the same template wait for a single compilation.
+                template = CACHED_MUSTACHE_RENDERERS.computeIfAbsent(key, k -> {
+                    try {
+                        return compile(k);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return template.mustache;
+    }
+
+    private static CompiledTemplate compile(TemplateKey key) throws IOException {
+        Path templateFile = key.getPath();
+        // The attributes are read before the content, so if the file changes while it's
+        // being read, the next revalidation will notice it.
+        BasicFileAttributes attributes = Utils.readAttributesOrNull(templateFile);
+        Mustache mustache;
+        if (key.isLegacy()) {
             String template = Utils.readStringFromUtf8File(templateFile);
             Matcher matcher = LEGACY_PLACEHOLDERS_UNESCAPED_REPLACEMENT_PATTERN.matcher(template);
             template = matcher.replaceAll("$1{{{$2}}}");
             matcher = LEGACY_PLACEHOLDERS_REPLACEMENT_PATTERN.matcher(template);
             template = matcher.replaceAll("$1{{$2}}");
             Reader reader = new StringReader(template);
-            result = MUSTACHE_FACTORY.compile(reader, templateFile.toString());
-            CACHED_MUSTACHE_RENDERERS.put(templateFile, result);
+            mustache = MUSTACHE_FACTORY.compile(reader, templateFile.toString());
+        } else {
+            try (Reader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(templateFile.toFile()), StandardCharsets.UTF_8))) {
+                mustache = MUSTACHE_FACTORY.compile(reader, templateFile.toString());
+            }
         }
-        return result;
+        return new CompiledTemplate(mustache, attributes);
     }
+
+    /**
+     * Compiles the `templateFiles` in parallel, so the pages don't wait for the compilation.
+     * The templates that cannot be compiled are skipped, the error will be reported when a
+     * page uses the template.
+     */
+    public static void precompileTemplates(Collection<Path> templateFiles, boolean legacy) {
+        templateFiles.parallelStream().forEach(templateFile -> {
+            try {
+                cachedRenderer(templateFile, legacy);
+            } catch (IOException | RuntimeException e) {
+                // Reported on use.
+            }
+        });
+    }
+
+    /**
+     * Removes the templates compiled from the changed `files` from the cache.
+     */
+    public static void invalidateCachedRenderers(Set<String> files) {
+        CACHED_MUSTACHE_RENDERERS.keySet().removeIf(key ->
+                files.contains(key.getPath().toString()));
+    }
+
+    /**
+     * Turns on or off checking of the template files modification on every request.
+     */
+    public static void setRevalidate(boolean revalidate) {
+        MustacheUtils.revalidate = revalidate;
+    }
+
 }
@@ -0,0 +1,160 @@
+package world.md2html.utils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calculates the relative locations of the page resources, see
+ * {@link Utils#relativizeRelativeResource} and {@link Utils#relativizeRelativePath}.
+ * <br />
+ * The same locations are calculated for every page, e.g. the page flow links or the CSS files,
+ * so the results are kept per page directory and target location. Locations that consist of
+ * plain names are calculated by comparing their segments, the rest (with `.` or `..`
+ * segments, absolute locations etc.) are calculated with {@link Path} as before. Both ways
+ * give the same results.
+ */
+class PathRelativizer {
+
+    private static final int MAX_CACHED_RESULTS = 200_000;
+    private static final boolean IGNORE_CASE = File.separatorChar == '\\';
+
+    private static final Map<String, String> CACHED_RESULTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger CACHED_RESULT_COUNT = new AtomicInteger();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    static {
+        Profiler.registerCounters("path-relativizer", PathRelativizer::stats);
+    }
+
+    private PathRelativizer() {
+    }
+
+    /**
+     * Both arguments are validated and use '/' as the separator.
+     */
+    static String relativizeResource(String resource, String page) {
+        return relativize(resource, page, '\u0000');
+    }
+
+    /**
+     * Both arguments are validated and use '/' as the separator. The result is not yet
+     * completed with the trailing '/'.
+     */
+    static String relativizePath(String path, String page) {
+        return relativize(path, page, '\u0001');
+    }
+
+    /**
+     * The `kind` separates the page directory and the target in the cache key and keeps the
+     * results of the different methods apart. It cannot appear in the paths.
+     */
+    private static String relativize(String target, String page, char kind) {
+        String pageDirectory = pageDirectory(page);
+        String key = pageDirectory + kind + target;
+        String result = CACHED_RESULTS.get(key);
+        if (result != null) {
+            HITS.increment();
+            return result;
+        }
+        MISSES.increment();
+        String[] pageSegments = simpleSegments(page);
+        String[] targetSegments = simpleSegments(target);
+        if (pageSegments == null || targetSegments == null) {
+            result = relativizeWithPaths(target, page);
+        } else {
+            result = relativizeSegments(Arrays.copyOf(pageSegments, pageSegments.length - 1),
+                    targetSegments);
+        }
+        cache(key, result);
+        return result;
+    }
+
+    private static void cache(String key, String result) {
+        // Beyond the limit the results are just calculated.
+        if (CACHED_RESULT_COUNT.get() < MAX_CACHED_RESULTS &&
+                CACHED_RESULTS.putIfAbsent(key, result) == null) {
+            CACHED_RESULT_COUNT.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the page location without the file name, i.e. ending with '/' or empty.
+     */
+    private static String pageDirectory(String page) {
+        return page.substring(0, page.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the segments of the `location` if all of them are plain names, otherwise
+     * `null`. A trailing '/' is ignored.
+     */
+    private static String[] simpleSegments(String location) {
+        if (location.endsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        if (location.isEmpty()) {
+            return new String[0];
+        }
+        if (location.indexOf(':') >= 0) {
+            return null;
+        }
+        String[] segments = location.split("/", -1);
+        for (String segment : segments) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return null;
+            }
+        }
+        return segments;
+    }
+
+    private static String relativizeSegments(String[] directory, String[] target) {
+        int common = 0;
+        while (common < directory.length && common < target.length &&
+                (IGNORE_CASE ? directory[common].equalsIgnoreCase(target[common]) :
+                        directory[common].equals(target[common]))) {
+            common++;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = common; i < directory.length; i++) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append("..");
+        }
+        for (int i = common; i < target.length; i++) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append(target[i]);
+        }
+        return result.toString();
+    }
+
+    private static String relativizeWithPaths(String target, String page) {
+        Path basePath = Paths.get(page).getParent();
+        Path result;
+        if (basePath == null) {
+            result = Paths.get(target);
+        } else {
+            result = basePath.toAbsolutePath().relativize(Paths.get(target).toAbsolutePath());
+        }
+        return result.normalize().toString().replace('\\', '/');
+    }
+
+    static Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", HITS.sum());
+        stats.put("misses", MISSES.sum());
+        stats.put("entries", (long) CACHED_RESULT_COUNT.get());
+        return stats;
+    }
+
+}
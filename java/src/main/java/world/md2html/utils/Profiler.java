@@ -0,0 +1,295 @@
+package world.md2html.utils;
+
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects the wall-clock time and the allocated memory of the processing stages for the
+ * profile report.
+ * <br />
+ * A stage is measured from the moment {@link #measure} is called till the returned
+ * measurement is closed. The measurements are exclusive: the time and the memory of a stage
+ * nested into another stage (e.g. a template executed by a metadata handler) are not counted
+ * in the enclosing stage, so the stage values of a page add up to the page values. Nested
+ * measurements belong to the page of the enclosing measurement, the measurements outside any
+ * page belong to the session.
+ * <br />
+ * When profiling is off, a measurement costs a single volatile read.
+ * <br />
+ * The report also includes the registered counters, like the caches statistics.
+ */
+public class Profiler {
+
+    private static final int SLOWEST_PAGE_COUNT = 10;
+    private static final String SESSION = "";
+
+    private static final Measurement NO_MEASUREMENT = () -> {};
+    private static final ThreadLocal<PageMeasurement> CURRENT_MEASUREMENT = new ThreadLocal<>();
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+    private static final Map<String, Supplier<Map<String, Long>>> COUNTERS =
+            new ConcurrentHashMap<>();
+
+    private static volatile Profiler current;
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Map<String, StageStats>> pages = new ConcurrentHashMap<>();
+
+    /**
+     * A measured stage. Must be closed on the thread it was created on.
+     */
+    @FunctionalInterface
+    public interface Measurement extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class StageStats {
+        private long count;
+        private long nanos;
+        private long bytes;
+
+        private synchronized void add(long nanos, long bytes) {
+            this.count++;
+            this.nanos += nanos;
+            this.bytes += bytes;
+        }
+
+        private synchronized void add(StageStats stats) {
+            this.count += stats.count;
+            this.nanos += stats.nanos;
+            this.bytes += stats.bytes;
+        }
+    }
+
+    private static class PageMeasurement implements Measurement {
+
+        private final Profiler profiler;
+        private final String page;
+        private final String stage;
+        private final PageMeasurement parent;
+        private final long startNanos;
+        private final long startBytes;
+        private long childNanos;
+        private long childBytes;
+
+        private PageMeasurement(Profiler profiler, String page, String stage,
+                PageMeasurement parent) {
+            this.profiler = profiler;
+            this.page = page;
+            this.stage = stage;
+            this.parent = parent;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - this.startNanos;
+            long bytes = allocatedBytes() - this.startBytes;
+            this.profiler.record(this.page, this.stage, nanos - this.childNanos,
+                    bytes - this.childBytes);
+            if (this.parent != null) {
+                this.parent.childNanos += nanos;
+                this.parent.childBytes += bytes;
+                CURRENT_MEASUREMENT.set(this.parent);
+            } else {
+                CURRENT_MEASUREMENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Starts profiling. The measurements made before are not collected.
+     */
+    public static void start() {
+        current = new Profiler();
+    }
+
+    /**
+     * Stops profiling and returns the collected data, `null` if profiling was not started.
+     */
+    public static Profiler stop() {
+        Profiler profiler = current;
+        current = null;
+        return profiler;
+    }
+
+    /**
+     * Measures a `stage` of the `page`.
+     */
+    public static Measurement measurePage(String page, String stage) {
+        Profiler profiler = current;
+        if (profiler == null) {
+            return NO_MEASUREMENT;
+        }
+        return begin(profiler, page, stage);
+    }
+
+    /**
+     * Measures a `stage` of the page being processed on the current thread, or of the session
+     * if no page is being processed.
+     */
+    public static Measurement measure(String stage) {
+        Profiler profiler = current;
+        if (profiler == null) {
+            return NO_MEASUREMENT;
+        }
+        PageMeasurement parent = CURRENT_MEASUREMENT.get();
+        return begin(profiler, parent == null ? SESSION : parent.page, stage);
+    }
+
+    /**
+     * Registers the `counters` to be included into the report under the `name`.
+     */
+    public static void registerCounters(String name, Supplier<Map<String, Long>> counters) {
+        COUNTERS.put(name, counters);
+    }
+
+    private static Measurement begin(Profiler profiler, String page, String stage) {
+        PageMeasurement measurement = new PageMeasurement(profiler, page, stage,
+                CURRENT_MEASUREMENT.get());
+        CURRENT_MEASUREMENT.set(measurement);
+        return measurement;
+    }
+
+    private void record(String page, String stage, long nanos, long bytes) {
+        this.pages.computeIfAbsent(page, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(stage, key -> new StageStats())
+                .add(nanos, bytes);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (allocationBean.isThreadAllocatedMemorySupported() &&
+                    allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, `0` if the JVM doesn't
+     * support this.
+     */
+    private static long allocatedBytes() {
+        return ALLOCATION_BEAN == null ? 0 :
+                ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the report: the totals, the session stages, the stages summed over all the
+     * pages, the counters, the slowest pages and the stages of every page.
+     */
+    public Map<String, Object> report() {
+        long totalNanos = System.nanoTime() - this.startNanos;
+
+        Map<String, StageStats> pageStageTotals = new TreeMap<>();
+        List<Map<String, Object>> pageReports = new ArrayList<>();
+        long totalBytes = 0;
+        for (Map.Entry<String, Map<String, StageStats>> page : new TreeMap<>(this.pages)
+                .entrySet()) {
+            StageStats pageTotal = total(page.getValue());
+            totalBytes += pageTotal.bytes;
+            if (SESSION.equals(page.getKey())) {
+                continue;
+            }
+            page.getValue().forEach((stage, stats) -> pageStageTotals
+                    .computeIfAbsent(stage, key -> new StageStats()).add(stats));
+            Map<String, Object> pageReport = new LinkedHashMap<>();
+            pageReport.put("page", page.getKey());
+            putStats(pageReport, pageTotal);
+            pageReport.put("stages", stagesReport(page.getValue()));
+            pageReports.add(pageReport);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("time-ms", toMillis(totalNanos));
+        report.put("allocated-bytes", totalBytes);
+        report.put("page-count", pageReports.size());
+        report.put("session", stagesReport(this.pages.getOrDefault(SESSION,
+                new ConcurrentHashMap<>())));
+        report.put("stages", stagesReport(pageStageTotals));
+        Map<String, Object> countersReport = new TreeMap<>();
+        COUNTERS.forEach((name, counters) -> countersReport.put(name, counters.get()));
+        report.put("counters", countersReport);
+
+        List<Map<String, Object>> slowestPages = new ArrayList<>(pageReports);
+        slowestPages.sort(Comparator.comparing(
+                (Map<String, Object> pageReport) -> (Double) pageReport.get("time-ms"))
+                .reversed());
+        List<Map<String, Object>> slowestPagesReport = new ArrayList<>();
+        for (Map<String, Object> pageReport : slowestPages.subList(0,
+                Math.min(SLOWEST_PAGE_COUNT, slowestPages.size()))) {
+            Map<String, Object> slowestPage = new LinkedHashMap<>(pageReport);
+            slowestPage.remove("stages");
+            slowestPagesReport.add(slowestPage);
+        }
+        report.put("slowest-pages", slowestPagesReport);
+        report.put("pages", pageReports);
+        return report;
+    }
+
+    public void writeReport(Path file) {
+        ObjectMapper mapper = new ObjectMapper();
+        DefaultPrettyPrinter printer = new DefaultPrettyPrinter()
+                .withObjectIndenter(new DefaultIndenter("  ", "\n"));
+        try {
+            mapper.writer(printer).writeValue(file.toFile(), report());
+        } catch (IOException e) {
+            throw new UserError("Error writing profile file '" + file + "': " +
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private static StageStats total(Map<String, StageStats> stages) {
+        StageStats total = new StageStats();
+        stages.values().forEach(total::add);
+        return total;
+    }
+
+    /**
+     * Returns the stages report with the slowest stages first.
+     */
+    private static Map<String, Object> stagesReport(Map<String, StageStats> stages) {
+        List<Map.Entry<String, StageStats>> entries = new ArrayList<>(stages.entrySet());
+        entries.sort(Comparator.comparing(
+                (Map.Entry<String, StageStats> entry) -> entry.getValue().nanos).reversed()
+                .thenComparing(Map.Entry::getKey));
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (Map.Entry<String, StageStats> entry : entries) {
+            Map<String, Object> stageReport = new LinkedHashMap<>();
+            stageReport.put("count", entry.getValue().count);
+            putStats(stageReport, entry.getValue());
+            report.put(entry.getKey(), stageReport);
+        }
+        return report;
+    }
+
+    private static void putStats(Map<String, Object> report, StageStats stats) {
+        report.put("time-ms", toMillis(stats.nanos));
+        report.put("allocated-bytes", stats.bytes);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+}
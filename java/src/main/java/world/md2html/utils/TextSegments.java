@@ -0,0 +1,144 @@
+package world.md2html.utils;
+
+import java.util.Arrays;
+
+/**
+ * A text made of the ranges of other texts, e.g. the slices of a page between the metadata
+ * blocks and the block replacements. Appending doesn't copy the characters, they are copied
+ * only once when the whole text is converted into a string. The nested segments are copied
+ * directly into the result as well, so the nested expansions are not copied once per nesting
+ * level.
+ * <br />
+ * The source texts must not change while they are referenced.
+ */
+public class TextSegments implements CharSequence {
+
+    private CharSequence[] sources = new CharSequence[8];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    /**
+     * The offsets of the segments in this text.
+     */
+    private int[] offsets = new int[8];
+    private int count = 0;
+    private int length = 0;
+    /**
+     * The result of the last {@link #toString()} or `null` if it changed since.
+     */
+    private String string;
+
+    public TextSegments append(CharSequence source) {
+        return append(source, 0, source.length());
+    }
+
+    /**
+     * Appends the `source` characters from `start` to `end` (exclusive).
+     */
+    public TextSegments append(CharSequence source, int start, int end) {
+        if (start < 0 || start > end || end > source.length()) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+                    ") out of length " + source.length());
+        }
+        if (start == end) {
+            return this;
+        }
+        if (this.count == this.sources.length) {
+            int capacity = this.count * 2;
+            this.sources = Arrays.copyOf(this.sources, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+        }
+        this.sources[this.count] = source;
+        this.starts[this.count] = start;
+        this.ends[this.count] = end;
+        this.offsets[this.count] = this.length;
+        this.count++;
+        this.length += end - start;
+        this.string = null;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of length " +
+                    this.length);
+        }
+        int segment = segmentAt(index);
+        return this.sources[segment].charAt(
+                this.starts[segment] + index - this.offsets[segment]);
+    }
+
+    /**
+     * Returns the segment that contains the character at the `index`.
+     */
+    private int segmentAt(int index) {
+        int segment = Arrays.binarySearch(this.offsets, 0, this.count, index);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > this.length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+                    ") out of length " + this.length);
+        }
+        TextSegments result = new TextSegments();
+        if (start == end) {
+            return result;
+        }
+        for (int segment = segmentAt(start); segment < this.count &&
+                this.offsets[segment] < end; segment++) {
+            int segmentStart = this.starts[segment] +
+                    Math.max(0, start - this.offsets[segment]);
+            int segmentEnd = this.starts[segment] +
+                    Math.min(this.ends[segment] - this.starts[segment],
+                            end - this.offsets[segment]);
+            result.append(this.sources[segment], segmentStart, segmentEnd);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the characters from `start` to `end` (exclusive) to the `builder`.
+     */
+    private void appendTo(StringBuilder builder, int start, int end) {
+        for (int segment = segmentAt(start); segment < this.count &&
+                this.offsets[segment] < end; segment++) {
+            int segmentStart = this.starts[segment] +
+                    Math.max(0, start - this.offsets[segment]);
+            int segmentEnd = this.starts[segment] +
+                    Math.min(this.ends[segment] - this.starts[segment],
+                            end - this.offsets[segment]);
+            CharSequence source = this.sources[segment];
+            if (source instanceof TextSegments) {
+                ((TextSegments) source).appendTo(builder, segmentStart, segmentEnd);
+            } else {
+                builder.append(source, segmentStart, segmentEnd);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (this.string == null) {
+            if (this.count == 1 && this.sources[0] instanceof String) {
+                this.string = ((String) this.sources[0]).substring(this.starts[0], this.ends[0]);
+            } else {
+                StringBuilder builder = new StringBuilder(this.length);
+                if (this.length > 0) {
+                    appendTo(builder, 0, this.length);
+                }
+                this.string = builder.toString();
+            }
+        }
+        return this.string;
+    }
+
+}
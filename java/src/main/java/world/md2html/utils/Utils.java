@@ -11,9 +11,11 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +31,16 @@ public class Utils {
         R apply() throws Exception;
     }
 
-    public static final Map<Path, String> CACHED_FILES = new HashMap<>();
+    @FunctionalInterface
+    public interface RunnableWithException {
+        void run() throws Exception;
+    }
+
+    private static final FileCache FILE_CACHE = new FileCache(FileCache.DEFAULT_BUDGET);
+
+    static {
+        Profiler.registerCounters("file-cache", FILE_CACHE::stats);
+    }
 
     public static boolean isNullOrFalse(Object object) {
         return object instanceof Boolean && (Boolean) object;
@@ -68,16 +79,29 @@ public class Utils {
 
     public static String getCachedString(Path path,
             FunctionWithException<Path, String> stringProvider) throws Exception {
-        String lines = CACHED_FILES.get(path);
-        if (lines == null) {
-          //  try {
-                lines = stringProvider.apply(path);
-       //     } catch (Exception e) {
-     //           throw new RuntimeException(e);
-    //        }
-            CACHED_FILES.put(path, lines);
+        return FILE_CACHE.get(path, stringProvider);
+    }
+
+    public static FileCache fileCache() {
+        return FILE_CACHE;
+    }
+
+    /**
+     * Removes the changed `files` from the cache.
+     */
+    public static void invalidateCachedFiles(Set<String> files) {
+        FILE_CACHE.invalidate(files);
+    }
+
+    /**
+     * Returns the file attributes or `null` if they cannot be read.
+     */
+    public static BasicFileAttributes readAttributesOrNull(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
         }
-        return lines;
     }
 
     private static String readStringFromReader(Reader reader) throws IOException {
@@ -186,14 +210,7 @@ public class Utils {
             throw new CheckedIllegalArgumentException("Incorrect relatively located resource: " +
                     resource);
         }
-        Path basePath = Paths.get(page).getParent();
-        Path result;
-        if (basePath == null) {
-            result = Paths.get(resource);
-        } else {
-            result = basePath.toAbsolutePath().relativize(Paths.get(resource).toAbsolutePath());
-        }
-        return result.normalize().toString().replace('\\', '/');
+        return PathRelativizer.relativizeResource(resource, page);
     }
 
     /**
@@ -218,14 +235,7 @@ public class Utils {
         if (!path.isEmpty() && !path.endsWith("/") || path.equals("/")) {
             throw new CheckedIllegalArgumentException("Incorrect relative path: " + path);
         }
-        Path basePath = Paths.get(page).getParent();
-        Path resultPath;
-        if (basePath == null) {
-            resultPath = Paths.get(path);
-        } else {
-            resultPath = basePath.toAbsolutePath().relativize(Paths.get(path).toAbsolutePath());
-        }
-        String result = resultPath.normalize().toString().replace('\\', '/');
+        String result = PathRelativizer.relativizePath(path, page);
         if (result.isEmpty() || result.equals("./") || result.equals(".")) {
             return "";
         } else if (result.endsWith("/")) {
@@ -0,0 +1,163 @@
+package world.md2html;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import world.md2html.options.model.Document;
+import world.md2html.options.model.PipelineOptions;
+import world.md2html.options.model.SessionOptions;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
+import world.md2html.plugins.AbstractMd2HtmlPlugin;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageBudgetTracker.PageBudgetExceededError;
+import world.md2html.plugins.PageContext;
+import world.md2html.utils.UserError;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Document> documents(String... names) throws IOException {
+        Path template = this.tempDir.resolve("template.html");
+        Files.write(template, "{{{content}}}".getBytes(StandardCharsets.UTF_8));
+        List<Document> documents = new ArrayList<>();
+        for (String name : names) {
+            Path input = this.tempDir.resolve(name + ".txt");
+            Files.write(input, name.getBytes(StandardCharsets.UTF_8));
+            documents.add(Document.builder()
+                    .input(input.toString())
+                    .output(this.tempDir.resolve(name + ".html").toString())
+                    .template(template.toString())
+                    .noCss(true)
+                    .build());
+        }
+        return documents;
+    }
+
+    private static String name(Document document) {
+        String fileName = Paths.get(document.getInput()).getFileName().toString();
+        return fileName.substring(0, fileName.length() - 4);
+    }
+
+    private List<Document> process(List<Document> documents, int readThreads, int jobs,
+            Consumer<String> pageHook) throws IOException {
+        List<Md2HtmlPlugin> plugins = Collections.singletonList(new AbstractMd2HtmlPlugin() {
+            @Override
+            public void acceptData(JsonNode data) {
+            }
+
+            @Override
+            public boolean isBlank() {
+                return false;
+            }
+
+            @Override
+            public void newPage(PageContext context) {
+                pageHook.accept(name(context.getDocument()));
+            }
+        });
+        SessionOptions options = SessionOptions.builder()
+                .jobs(jobs)
+                .pipeline(PipelineOptions.DEFAULT.toBuilder().readThreads(readThreads).build())
+                .build();
+        List<Document> failed = new ArrayList<>();
+        try (BuildPipeline pipeline = new BuildPipeline(plugins,
+                PageMetadataHandlersWrapper.fromPlugins(plugins), options, null)) {
+            pipeline.process(documents, (document, error) -> failed.add(document));
+        }
+        return failed;
+    }
+
+    private boolean written(String name) {
+        return Files.exists(this.tempDir.resolve(name + ".html"));
+    }
+
+    @Test
+    public void earlierPagesCompletedAfterFailure() throws IOException {
+        List<Document> documents = documents("a", "bad");
+        CountDownLatch badFailed = new CountDownLatch(1);
+        List<Document> failed = process(documents, 2, 2, name -> {
+            if (name.equals("bad")) {
+                badFailed.countDown();
+                throw new UserError("Bad page.");
+            }
+            try {
+                // The page before the failed one is still being rendered when it fails.
+                assertTrue(badFailed.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertEquals(Collections.singletonList(documents.get(1)), failed);
+        assertTrue(written("a"));
+        assertFalse(written("bad"));
+    }
+
+    @Test
+    public void laterPagesCancelledAfterFailure() throws IOException, InterruptedException {
+        List<Document> documents = documents("a", "bad", "c", "d");
+        Set<String> rendered = ConcurrentHashMap.newKeySet();
+        CountDownLatch laterRendered = new CountDownLatch(1);
+        // Single reading and rendering threads take the pages in the documents order.
+        List<Document> failed = process(documents, 1, 1, name -> {
+            rendered.add(name);
+            if (name.equals("bad")) {
+                throw new UserError("Bad page.");
+            } else if (!name.equals("a")) {
+                laterRendered.countDown();
+            }
+        });
+        assertEquals(Collections.singletonList(documents.get(1)), failed);
+        assertFalse(laterRendered.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("a", "bad")), rendered);
+        assertTrue(written("a"));
+        assertFalse(written("c"));
+        assertFalse(written("d"));
+    }
+
+    @Test
+    public void pageBudgetErrorFailsOnlyThePage() throws IOException {
+        List<Document> documents = documents("a", "runaway", "c", "d");
+        CountDownLatch runawayFailed = new CountDownLatch(1);
+        List<Document> failed = process(documents, 2, 2, name -> {
+            if (name.equals("runaway")) {
+                runawayFailed.countDown();
+                throw new PageBudgetExceededError("Page budget exceeded.");
+            } else if (name.equals("c")) {
+                try {
+                    // The next page is still being rendered when the page fails.
+                    assertTrue(runawayFailed.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        assertEquals(Collections.singletonList(documents.get(1)), failed);
+        assertTrue(written("a"));
+        assertFalse(written("runaway"));
+        assertTrue(written("c"));
+        assertTrue(written("d"));
+    }
+
+}
@@ -0,0 +1,68 @@
+package world.md2html;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import world.md2html.options.model.Document;
+import world.md2html.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class Md2HtmlUtilsTest {
+
+    private static final List<String> LINK_CSS = Arrays.asList("layout/main.css", "theme.css");
+
+    @TempDir
+    Path tempDir;
+
+    private static Document document(String output, List<String> includeCss) {
+        return Document.builder().output(output).linkCss(LINK_CSS).includeCss(includeCss)
+                .build();
+    }
+
+    @Test
+    public void stylesSharedWithinOutputDirectory() {
+        String styles = Md2HtmlUtils.generateDocumentStyles(
+                document("doc/index.html", Collections.emptyList()));
+        assertEquals("<link rel=\"stylesheet\" type=\"text/css\" href=\"../layout/main.css\">\n" +
+                "<link rel=\"stylesheet\" type=\"text/css\" href=\"../theme.css\">", styles);
+        assertSame(styles, Md2HtmlUtils.generateDocumentStyles(
+                document("doc/about.html", Collections.emptyList())));
+        assertEquals("<link rel=\"stylesheet\" type=\"text/css\" href=\"layout/main.css\">\n" +
+                        "<link rel=\"stylesheet\" type=\"text/css\" href=\"theme.css\">",
+                Md2HtmlUtils.generateDocumentStyles(
+                        document("index.html", Collections.emptyList())));
+    }
+
+    @Test
+    public void includedCssFollowsFileCache() throws Exception {
+        Path css = this.tempDir.resolve("include.css");
+        Files.write(css, "p {}".getBytes(StandardCharsets.UTF_8));
+        List<String> includeCss = Collections.singletonList(css.toString());
+        String styles = Md2HtmlUtils.generateDocumentStyles(document("page.html", includeCss));
+        assertEquals("<link rel=\"stylesheet\" type=\"text/css\" href=\"layout/main.css\">\n" +
+                "<link rel=\"stylesheet\" type=\"text/css\" href=\"theme.css\">\n" +
+                "<style>\np {}\n</style>", styles);
+
+        Files.write(css, "div {}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(styles,
+                Md2HtmlUtils.generateDocumentStyles(document("page.html", includeCss)));
+        assertEquals("<link rel=\"stylesheet\" type=\"text/css\" href=\"../layout/main.css\">\n" +
+                        "<link rel=\"stylesheet\" type=\"text/css\" href=\"../theme.css\">\n" +
+                        "<style>\np {}\n</style>",
+                Md2HtmlUtils.generateDocumentStyles(document("doc/page.html", includeCss)));
+        Utils.invalidateCachedFiles(Collections.singleton(css.normalize().toString()));
+        assertEquals("<link rel=\"stylesheet\" type=\"text/css\" href=\"layout/main.css\">\n" +
+                        "<link rel=\"stylesheet\" type=\"text/css\" href=\"theme.css\">\n" +
+                        "<style>\ndiv {}\n</style>",
+                Md2HtmlUtils.generateDocumentStyles(document("page.html", includeCss)));
+    }
+
+}
@@ -0,0 +1,50 @@
+package world.md2html;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RenderingProfileTest {
+
+    private static final String TOC_PAGE = "[TOC]\n\n# Header 1\n\n## Header 2\n";
+
+    @Test
+    public void defaultProfile() {
+        String html = RenderingProfile.defaultProfile().render(TOC_PAGE);
+        assertThat(html, containsString("href=\"#header-1\""));
+        assertThat(html, containsString("href=\"#header-2\""));
+        assertThat(html, not(containsString("[TOC]")));
+    }
+
+    @Test
+    public void tocLevels() {
+        RenderingProfile profile = RenderingProfile.forSettings(RenderingProfile.DEFAULT_SETTINGS
+                .toBuilder().tocLevels(Collections.singleton(1)).build());
+        String html = profile.render(TOC_PAGE);
+        assertThat(html, containsString("href=\"#header-1\""));
+        assertThat(html, not(containsString("href=\"#header-2\"")));
+    }
+
+    @Test
+    public void withoutToc() {
+        RenderingProfile profile = RenderingProfile.forSettings(RenderingProfile.DEFAULT_SETTINGS
+                .toBuilder().extensions(EnumSet.of(RenderingProfile.MarkdownExtension.TABLES))
+                .build());
+        assertThat(profile.render(TOC_PAGE), containsString("[TOC]"));
+    }
+
+    @Test
+    public void sameSettingsSameProfile() {
+        RenderingProfile.Settings settings = RenderingProfile.DEFAULT_SETTINGS.toBuilder()
+                .typographicQuotes(true).build();
+        assertSame(RenderingProfile.forSettings(settings), RenderingProfile.forSettings(
+                RenderingProfile.DEFAULT_SETTINGS.toBuilder().typographicQuotes(true).build()));
+    }
+
+}
@@ -0,0 +1,197 @@
+package world.md2html.dependencies;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import world.md2html.options.argfile.ArgFileParseException;
+import world.md2html.options.model.ArgFile;
+import world.md2html.options.model.CliOptions;
+import world.md2html.options.model.Document;
+import world.md2html.plugins.Md2HtmlPlugin;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static world.md2html.options.TestUtils.parseArgumentFile;
+
+class DependencyGraphTest {
+
+    private static final List<Md2HtmlPlugin> NO_PLUGINS = Collections.emptyList();
+    private static final Map<String, String> CONFIGURATION =
+            Collections.singletonMap("plugin:variables", "{\"title\": \"Title\"}");
+
+    @TempDir
+    Path tempDir;
+
+    private Document document(String output) {
+        return Document.builder().input("index.txt").output(output).template("t.html").build();
+    }
+
+    @Test
+    public void upToDateAfterReload() throws Exception {
+        Path dependencyFile = tempDir.resolve("deps.bin");
+        Path includedFile = tempDir.resolve("included.txt");
+        Files.write(includedFile, "text".getBytes(StandardCharsets.UTF_8));
+
+        DependencyGraph graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        Document document = document("index.html");
+        Map<String, String> facts = graph.pageFacts(document, NO_PLUGINS);
+        assertFalse(graph.isUpToDate("index.html", facts));
+
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.addFile(includedFile);
+        dependencies.setFacts(facts);
+        graph.update("index.html", dependencies);
+        graph.save();
+
+        graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        assertTrue(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+        assertFalse(graph.isUpToDate("other.html", graph.pageFacts(document, NO_PLUGINS)));
+
+        // Same content with another modification time.
+        Files.setLastModifiedTime(includedFile, FileTime.fromMillis(
+                Files.getLastModifiedTime(includedFile).toMillis() + 1000));
+        graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        assertTrue(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+
+        graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        Files.write(includedFile, "changed text".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(includedFile, FileTime.fromMillis(
+                Files.getLastModifiedTime(includedFile).toMillis() + 2000));
+        assertFalse(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+    }
+
+    @Test
+    public void configurationChange() {
+        Path dependencyFile = tempDir.resolve("deps.bin");
+        DependencyGraph graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        Document document = document("index.html");
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.setFacts(graph.pageFacts(document, NO_PLUGINS));
+        graph.update("index.html", dependencies);
+        graph.save();
+
+        graph = DependencyGraph.load(dependencyFile,
+                Collections.singletonMap("plugin:variables", "{\"title\": \"Other\"}"));
+        assertFalse(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+    }
+
+    @Test
+    public void documentFlagsDoNotAffectFacts() {
+        DependencyGraph graph = DependencyGraph.load(tempDir.resolve("deps.bin"), CONFIGURATION);
+        Document document = document("index.html");
+        assertEquals(graph.pageFacts(document, NO_PLUGINS), graph.pageFacts(
+                document.toBuilder().force(true).verbose(true).build(), NO_PLUGINS));
+        assertNotEquals(graph.pageFacts(document, NO_PLUGINS), graph.pageFacts(
+                document.toBuilder().title("New title").build(), NO_PLUGINS));
+    }
+
+    @Test
+    public void linkedPageOutputChange() throws ArgFileParseException {
+        String argFileTemplate = "{\"documents\": [ \n" +
+                "    {\"input\": \"index.txt\", \"code\": \"index\"}, \n" +
+                "    {\"input\": \"about.txt\", \"output\": \"%s\", \"code\": \"about\"} \n" +
+                "], \n" +
+                "\"plugins\": {\"page-links\": {}}}";
+        CliOptions cliOptions = CliOptions.builder().build();
+        ArgFile argFile = parseArgumentFile(String.format(argFileTemplate, "about.html"),
+                cliOptions);
+        DependencyGraph graph = DependencyGraph.inMemory(CONFIGURATION);
+        Document document = argFile.getDocuments().get(0);
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.setFacts(graph.pageFacts(document, argFile.getPlugins()));
+        graph.update("index.html", dependencies);
+
+        argFile = parseArgumentFile(String.format(argFileTemplate, "about.html"), cliOptions);
+        assertTrue(graph.isUpToDate("index.html",
+                graph.pageFacts(argFile.getDocuments().get(0), argFile.getPlugins())));
+
+        // The page linking to the moved page must be rebuilt although the page itself and the
+        // configuration didn't change.
+        argFile = parseArgumentFile(String.format(argFileTemplate, "pages/about.html"),
+                cliOptions);
+        assertEquals(document, argFile.getDocuments().get(0));
+        assertFalse(graph.isUpToDate("index.html",
+                graph.pageFacts(argFile.getDocuments().get(0), argFile.getPlugins())));
+    }
+
+    @Test
+    public void missingDependency() throws Exception {
+        Path dependencyFile = tempDir.resolve("deps.bin");
+        Path includedFile = tempDir.resolve("included.txt");
+        Files.write(includedFile, "text".getBytes(StandardCharsets.UTF_8));
+        DependencyGraph graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        Document document = document("index.html");
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.addFile(includedFile);
+        dependencies.setFacts(graph.pageFacts(document, NO_PLUGINS));
+        graph.update("index.html", dependencies);
+        graph.save();
+
+        Files.delete(includedFile);
+        graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        assertFalse(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+    }
+
+    @Test
+    public void watchModeChanges() throws Exception {
+        Path includedFile = tempDir.resolve("included.txt");
+        Files.write(includedFile, "text".getBytes(StandardCharsets.UTF_8));
+        DependencyGraph graph = DependencyGraph.inMemory(CONFIGURATION);
+        Document document = document("index.html");
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.addFile(includedFile);
+        dependencies.setFacts(graph.pageFacts(document, NO_PLUGINS));
+        graph.update("index.html", dependencies);
+        graph.update("other.html", new PageDependencies());
+        graph.save();
+        assertFalse(Files.exists(tempDir.resolve("deps.bin")));
+
+        Set<String> changedFiles = Collections.singleton(includedFile.toString());
+        assertEquals(Collections.singleton("index.html"), graph.outputsDependingOn(changedFiles));
+        assertEquals(changedFiles, graph.dependencyFiles());
+
+        // The file state is cached until the file is reported as changed.
+        Files.write(includedFile, "changed text".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(includedFile, FileTime.fromMillis(
+                Files.getLastModifiedTime(includedFile).toMillis() + 2000));
+        assertTrue(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+        graph.filesChanged(changedFiles);
+        assertFalse(graph.isUpToDate("index.html", graph.pageFacts(document, NO_PLUGINS)));
+
+        DependencyGraph reconfigured = graph.withConfiguration(
+                Collections.singletonMap("plugin:variables", "{\"title\": \"Other\"}"));
+        assertEquals(graph.outputs(), reconfigured.outputs());
+    }
+
+    @Test
+    public void largeManifest() {
+        Path dependencyFile = tempDir.resolve("deps.bin");
+        DependencyGraph graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        PageDependencies dependencies = new PageDependencies();
+        dependencies.addFile(tempDir.resolve("template.html"));
+        for (int i = 0; i < 100_000; i++) {
+            graph.update("page" + i + ".html", dependencies);
+        }
+        graph.save();
+        assertEquals(100_000, DependencyGraph.load(dependencyFile, CONFIGURATION).size());
+    }
+
+    @Test
+    public void corruptedFileIsIgnored() throws Exception {
+        Path dependencyFile = tempDir.resolve("deps.bin");
+        Files.write(dependencyFile, "not a manifest".getBytes(StandardCharsets.UTF_8));
+        DependencyGraph graph = DependencyGraph.load(dependencyFile, CONFIGURATION);
+        assertEquals(0, graph.size());
+    }
+
+}
@@ -4,18 +4,23 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import world.md2html.RenderingProfile;
 import world.md2html.options.cli.CliParser;
 import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
 import world.md2html.options.model.Document;
+import world.md2html.options.model.PageBudget;
+import world.md2html.options.model.PipelineOptions;
 import world.md2html.options.model.SessionOptions;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageContext;
 import world.md2html.plugins.PageVariablesPlugin;
 import world.md2html.utils.UserError;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +28,8 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static world.md2html.options.TestUtils.parseArgumentFile;
@@ -270,6 +277,7 @@ public class ArgFileParsingTest {
         SessionOptions options = argFile.getOptions();
         assertFalse(options.isLegacyMode());
         assertFalse(options.isVerbose());
+        assertEquals(1, options.getJobs());
     }
 
     @Test
@@ -283,6 +291,117 @@ public class ArgFileParsingTest {
         assertTrue(options.isVerbose());
     }
 
+    @Test
+    public void jobs_PositiveScenario() throws Exception {
+        ArgFile argFile = parseArgumentFile(
+                "{\"options\": {\"jobs\": 4}, \"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        assertEquals(4, argFile.getOptions().getJobs());
+
+        argFile = parseArgumentFile(
+                "{\"options\": {\"jobs\": 0}, \"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                argFile.getOptions().getJobs());
+
+        argFile = parseArgumentFile(
+                "{\"options\": {\"jobs\": 4}, \"documents\": [{\"input\": \"index.txt\"}]}",
+                cliParser.parse(new String[]{"--argument-file", "unknown_arg_file.json",
+                        "--jobs", "2"}));
+        assertEquals(2, argFile.getOptions().getJobs());
+    }
+
+    @Test
+    public void negativeJobs_NegativeScenario() {
+        assertThrows(ArgFileParseException.class, () -> parseArgumentFile(
+                "{\"options\": {\"jobs\": -1}, \"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS));
+    }
+
+    @Test
+    public void renderingProfiles_PositiveScenario() throws Exception {
+        String argFileContent = "{\"options\": {\"rendering-profiles\": {" +
+                "\"light\": {\"extensions\": [\"tables\"], \"toc-levels\": [1, 2]}}}, " +
+                "\"default\": {\"rendering-profile\": \"light\"}, " +
+                "\"documents\": [{\"input\": \"index.txt\"}, " +
+                "{\"input\": \"about.txt\", \"rendering-profile\": \"default\"}]}";
+        ArgFile argFile = parseArgumentFile(argFileContent, DUMMY_CLI_OPTIONS);
+
+        RenderingProfile lightProfile = argFile.getDocuments().get(0).getRenderingProfile();
+        assertEquals(Collections.singleton(RenderingProfile.MarkdownExtension.TABLES),
+                lightProfile.getSettings().getExtensions());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)),
+                lightProfile.getSettings().getTocLevels());
+        assertSame(RenderingProfile.defaultProfile(),
+                argFile.getDocuments().get(1).getRenderingProfile());
+
+        // Profiles with the same settings are built only once.
+        argFile = parseArgumentFile(argFileContent, DUMMY_CLI_OPTIONS);
+        assertSame(lightProfile, argFile.getDocuments().get(0).getRenderingProfile());
+    }
+
+    @Test
+    public void renderingProfiles_NoProfile_PositiveScenario() throws Exception {
+        ArgFile argFile = parseArgumentFile("{\"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        assertSame(RenderingProfile.defaultProfile(),
+                argFile.getDocuments().get(0).getRenderingProfile());
+    }
+
+    @Test
+    public void undefinedRenderingProfile_NegativeScenario() {
+        UserError e = assertThrows(UserError.class, () -> parseArgumentFile(
+                "{\"documents\": [{\"input\": \"index.txt\", " +
+                        "\"rendering-profile\": \"unknown\"}]}", DUMMY_CLI_OPTIONS));
+        assertThat(e.getMessage(), Matchers.containsString("'unknown'"));
+    }
+
+    @Test
+    public void unknownRenderingExtension_NegativeScenario() {
+        assertThrows(ArgFileParseException.class, () -> parseArgumentFile(
+                "{\"options\": {\"rendering-profiles\": {" +
+                        "\"light\": {\"extensions\": [\"strikethrough\"]}}}, " +
+                        "\"documents\": [{\"input\": \"index.txt\"}]}", DUMMY_CLI_OPTIONS));
+    }
+
+    @Test
+    public void pipeline_PositiveScenario() throws Exception {
+        ArgFile argFile = parseArgumentFile(
+                "{\"options\": {\"pipeline\": {\"read-threads\": 3, \"queue-size\": 100}}, " +
+                        "\"documents\": [{\"input\": \"index.txt\"}]}", DUMMY_CLI_OPTIONS);
+        PipelineOptions pipeline = argFile.getOptions().getPipeline();
+        assertEquals(3, pipeline.getReadThreads());
+        assertEquals(PipelineOptions.DEFAULT.getWriteThreads(), pipeline.getWriteThreads());
+        assertEquals(100, pipeline.getQueueSize());
+
+        argFile = parseArgumentFile("{\"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        assertNull(argFile.getOptions().getPipeline());
+    }
+
+    @Test
+    public void pageBudget_PositiveScenario() throws Exception {
+        ArgFile argFile = parseArgumentFile(
+                "{\"options\": {\"page-budget\": {\"max-handler-calls\": 1000, " +
+                        "\"max-time\": 5000}}, \"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        PageBudget pageBudget = argFile.getOptions().getPageBudget();
+        assertEquals(PageBudget.UNLIMITED.getMaxExpandedSize(), pageBudget.getMaxExpandedSize());
+        assertEquals(1000, pageBudget.getMaxHandlerCalls());
+        assertEquals(5000, pageBudget.getMaxTime());
+
+        argFile = parseArgumentFile("{\"documents\": [{\"input\": \"index.txt\"}]}",
+                DUMMY_CLI_OPTIONS);
+        assertNull(argFile.getOptions().getPageBudget());
+    }
+
+    @Test
+    public void pipeline_ZeroQueueSize_NegativeScenario() {
+        assertThrows(ArgFileParseException.class, () -> parseArgumentFile(
+                "{\"options\": {\"pipeline\": {\"queue-size\": 0}}, " +
+                        "\"documents\": [{\"input\": \"index.txt\"}]}", DUMMY_CLI_OPTIONS));
+    }
+
     @Test
     public void legacyMode_inCommandLine_PositiveScenario() throws Exception {
         ArgFile argFile = parseArgumentFile(
@@ -300,8 +419,9 @@ public class ArgFileParsingTest {
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(plugins);
         String pageContent = "<!--METADATA {\"key\": \"value\"}-->";
-        metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("value", variables.get("key"));
     }
 
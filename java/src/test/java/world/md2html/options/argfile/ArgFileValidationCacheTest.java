@@ -0,0 +1,56 @@
+package world.md2html.options.argfile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static world.md2html.options.argfile.ArgFileParsingHelper.readArgumentFileNode;
+
+class ArgFileValidationCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String argumentFile(Path cacheFile, int jobs) {
+        return "{\"options\": {\"validation-cache\": \"" +
+                cacheFile.toString().replace('\\', '/') + "\", \"jobs\": " + jobs + "}, " +
+                "\"documents\": [{}]}";
+    }
+
+    @Test
+    public void validatedContentRecorded() throws Exception {
+        Path cacheFile = this.tempDir.resolve("cache/validation.txt");
+        String content = argumentFile(cacheFile, 2);
+        assertEquals(2, readArgumentFileNode(content).getOptions().getJobs());
+        assertTrue(ArgFileValidationCache.isValidated(cacheFile, content));
+        assertFalse(ArgFileValidationCache.isValidated(cacheFile, argumentFile(cacheFile, 3)));
+    }
+
+    @Test
+    public void changedContentValidated() throws Exception {
+        Path cacheFile = this.tempDir.resolve("validation.txt");
+        readArgumentFileNode(argumentFile(cacheFile, 2));
+        String invalidContent = argumentFile(cacheFile, -1);
+        assertThrows(ArgFileParseException.class, () -> readArgumentFileNode(invalidContent));
+        assertFalse(ArgFileValidationCache.isValidated(cacheFile, invalidContent));
+    }
+
+    @Test
+    public void unchangedContentNotValidated() throws Exception {
+        Path cacheFile = this.tempDir.resolve("validation.txt");
+        String invalidContent = argumentFile(cacheFile, -1);
+        // Pretends the content was validated before, the schema would reject it.
+        ArgFileValidationCache.recordValidated(cacheFile, invalidContent);
+        assertEquals(-1, readArgumentFileNode(invalidContent).getOptions().getJobs());
+
+        Files.delete(cacheFile);
+        assertThrows(ArgFileParseException.class, () -> readArgumentFileNode(invalidContent));
+    }
+
+}
@@ -0,0 +1,120 @@
+package world.md2html.options.argfile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DirectoryListingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Path> expand(GlobWalker.Glob glob, Path cacheFile) throws IOException {
+        DirectoryListingCache cache = DirectoryListingCache.load(cacheFile);
+        List<Path> files = GlobWalker.expand(Collections.singletonList(glob), cache).get(glob);
+        cache.save();
+        return files;
+    }
+
+    private static void create(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[0]);
+    }
+
+    @Test
+    public void unchangedDirectoriesNotListed() throws IOException {
+        Path root = this.tempDir.resolve("root");
+        Path cacheFile = this.tempDir.resolve("listings.bin");
+        create(root.resolve("a.txt"));
+        create(root.resolve("sub/b.txt"));
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() -
+                TimeUnit.HOURS.toMillis(1));
+        Files.setLastModifiedTime(root, old);
+        Files.setLastModifiedTime(root.resolve("sub"), old);
+        GlobWalker.Glob glob = new GlobWalker.Glob("**/*.txt", root, null);
+
+        List<Path> fresh = GlobWalker.expand(Collections.singletonList(glob)).get(glob);
+        assertEquals(fresh, expand(glob, cacheFile));
+        assertEquals(fresh, expand(glob, cacheFile));
+
+        // The cached listing is used while the modification time is the same.
+        create(root.resolve("sub/c.txt"));
+        Files.setLastModifiedTime(root.resolve("sub"), old);
+        assertEquals(fresh, expand(glob, cacheFile));
+
+        Files.setLastModifiedTime(root.resolve("sub"),
+                FileTime.fromMillis(old.toMillis() + 1000));
+        assertEquals(GlobWalker.expand(Collections.singletonList(glob)).get(glob),
+                expand(glob, cacheFile));
+        assertEquals(fresh.size() + 1, expand(glob, cacheFile).size());
+    }
+
+    @Test
+    public void recentlyModifiedDirectoriesNotKept() throws IOException {
+        Path root = this.tempDir.resolve("root");
+        Path cacheFile = this.tempDir.resolve("listings.bin");
+        create(root.resolve("a.txt"));
+        FileTime recent = Files.getLastModifiedTime(root);
+        GlobWalker.Glob glob = new GlobWalker.Glob("*.txt", root, null);
+        assertEquals(1, expand(glob, cacheFile).size());
+
+        // Another change within the time resolution.
+        create(root.resolve("b.txt"));
+        Files.setLastModifiedTime(root, recent);
+        assertEquals(2, expand(glob, cacheFile).size());
+    }
+
+    @Test
+    public void corruptedFileIgnored() throws IOException {
+        Path root = this.tempDir.resolve("root");
+        Path cacheFile = this.tempDir.resolve("listings.bin");
+        create(root.resolve("a.txt"));
+        Files.write(cacheFile, "garbage".getBytes(StandardCharsets.UTF_8));
+        GlobWalker.Glob glob = new GlobWalker.Glob("*.txt", root, null);
+        assertEquals(1, expand(glob, cacheFile).size());
+    }
+
+    @Test
+    public void invalidCountsIgnored() throws IOException {
+        Path root = this.tempDir.resolve("root");
+        Path cacheFile = this.tempDir.resolve("listings.bin");
+        create(root.resolve("a.txt"));
+        GlobWalker.Glob glob = new GlobWalker.Glob("*.txt", root, null);
+        for (int count : new int[] {-1, Integer.MAX_VALUE}) {
+            // Magic, version and the directory count.
+            Files.write(cacheFile, ByteBuffer.allocate(12).putInt(0x4D44324C).putInt(1)
+                    .putInt(count).array());
+            assertEquals(1, expand(glob, cacheFile).size());
+            // The directory path length.
+            Files.write(cacheFile, ByteBuffer.allocate(16).putInt(0x4D44324C).putInt(1)
+                    .putInt(1).putInt(count).array());
+            assertEquals(1, expand(glob, cacheFile).size());
+            // The entry count of a directory with an empty path.
+            Files.write(cacheFile, ByteBuffer.allocate(28).putInt(0x4D44324C).putInt(1)
+                    .putInt(1).putInt(0).putLong(0).putInt(count).array());
+            assertEquals(1, expand(glob, cacheFile).size());
+        }
+    }
+
+    @Test
+    public void writeErrorNotFatal() throws IOException {
+        Path root = this.tempDir.resolve("root");
+        create(root.resolve("a.txt"));
+        // The cache file parent is a file.
+        Path cacheFile = root.resolve("a.txt").resolve("listings.bin");
+        GlobWalker.Glob glob = new GlobWalker.Glob("*.txt", root, null);
+        assertEquals(1, expand(glob, cacheFile).size());
+    }
+
+}
@@ -0,0 +1,124 @@
+package world.md2html.options.argfile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlobWalkerTest {
+
+    private static final String[] FILES = {"top.txt", "top.md", "a/x.md", "a/b/c.txt",
+            "a/b/d/e.txt", "docs/d1.txt", "docs/sub/d2.txt", "docs/sub/deeper/d3.txt",
+            "node_modules/m/y.txt", ".git/h.txt"};
+
+    @TempDir
+    Path root;
+
+    /**
+     * The GLOB expansion as it was implemented before the tree was walked once for all the
+     * GLOBs.
+     */
+    private static List<Path> expandWithWalkFileTree(String glob, Path relativeTo)
+            throws IOException {
+        List<Path> pathList = new ArrayList<>();
+        PathMatcher pathMatcher = FileSystems.getDefault()
+                .getPathMatcher("glob:" + glob.replace("**/", "**"));
+        Files.walkFileTree(relativeTo, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                Path relativePath = relativeTo.toAbsolutePath().relativize(path.toAbsolutePath());
+                if (pathMatcher.matches(relativePath)) {
+                    pathList.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return pathList;
+    }
+
+    private void createFiles() throws IOException {
+        for (String file : FILES) {
+            Path path = this.root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.write(path, new byte[0]);
+        }
+    }
+
+    private List<String> relative(List<Path> paths) {
+        return paths.stream().map(path -> this.root.relativize(path).toString())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void sameFilesAsWalkFileTree() throws IOException {
+        createFiles();
+        List<GlobWalker.Glob> globs = new ArrayList<>();
+        for (String glob : Arrays.asList("*.txt", "**/*.txt", "**.md", "docs/*.txt",
+                "docs/**/*.txt", "docs/**", "docs/sub/*.txt", "a/b/c.txt", "{docs,a}/*.txt",
+                "?ocs/*.txt", "a/*/*.txt", "docs/[s]ub/*.txt", "missing/*.txt")) {
+            globs.add(new GlobWalker.Glob(glob, this.root, null));
+        }
+        Map<GlobWalker.Glob, List<Path>> result = GlobWalker.expand(globs);
+        for (GlobWalker.Glob glob : globs) {
+            assertEquals(expandWithWalkFileTree(glob.getGlob(), this.root),
+                    result.get(glob), glob.getGlob());
+        }
+    }
+
+    @Test
+    public void excludedDirectoriesSkipped() throws IOException {
+        createFiles();
+        GlobWalker.Glob glob = new GlobWalker.Glob("**/*.txt", this.root,
+                Arrays.asList("node_modules", ".git", "**/deeper", "a/b/c.txt"));
+        GlobWalker.Glob otherGlob = new GlobWalker.Glob("**/y.txt", this.root, null);
+        Map<GlobWalker.Glob, List<Path>> result = GlobWalker.expand(
+                Arrays.asList(glob, otherGlob));
+
+        List<String> files = relative(result.get(glob));
+        Collections.sort(files);
+        assertEquals(Arrays.asList("a/b/d/e.txt", "docs/d1.txt", "docs/sub/d2.txt", "top.txt")
+                .stream().map(file -> this.root.getFileSystem().getPath(file).toString())
+                .collect(Collectors.toList()), files);
+        // The other GLOB still sees the directory excluded by the first one.
+        assertEquals(1, result.get(otherGlob).size());
+    }
+
+    @Test
+    public void documentGlobMatcher() {
+        DocumentGlobMatcher matcher = new DocumentGlobMatcher(Arrays.asList(
+                new GlobWalker.Glob("docs/**/*.txt", this.root,
+                        Collections.singletonList("**/drafts")),
+                new GlobWalker.Glob("*.md", this.root.resolve("a"), null)));
+        assertTrue(matcher.mayMatch(this.root.resolve("docs/new.txt"), false));
+        assertTrue(matcher.mayMatch(this.root.resolve("docs/sub/new.txt"), false));
+        assertTrue(matcher.mayMatch(this.root.resolve("a/new.md"), false));
+        assertFalse(matcher.mayMatch(this.root.resolve("docs/.new.txt.swp"), false));
+        assertFalse(matcher.mayMatch(this.root.resolve("docs/drafts/new.txt"), false));
+        assertFalse(matcher.mayMatch(this.root.resolve("a/b/new.md"), false));
+        assertFalse(matcher.mayMatch(this.root.resolve("new.txt"), false));
+
+        assertTrue(matcher.mayMatch(this.root.resolve("docs/sub"), true));
+        assertTrue(matcher.mayMatch(this.root.resolve("docs"), true));
+        assertFalse(matcher.mayMatch(this.root.resolve("docs/drafts"), true));
+        assertFalse(matcher.mayMatch(this.root.resolve(".git"), true));
+        assertFalse(matcher.mayMatch(this.root.resolve("a/b"), true));
+    }
+
+}
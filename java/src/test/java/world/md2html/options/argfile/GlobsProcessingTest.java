@@ -47,6 +47,17 @@ public class GlobsProcessingTest {
                 "for_globs_processing_test/file01.txt"));
     }
 
+    @Test
+    public void recursive_with_excludes() throws ArgFileParseException {
+        ArgFile argFile = parseArgumentFile("{\"documents\": [{\"input-glob\": \"" + THIS_DIR +
+                "for_globs_processing_test/**/*.txt\", \"input-glob-exclude\": [\"" + THIS_DIR +
+                "for_globs_processing_test/recursive\", \"**/file02.txt\"]}]}",
+                DUMMY_CLI_OPTIONS);
+        List<String> inputFilesToCheck = argFile.getDocuments().stream()
+                .map(d -> d.getInput().substring(THIS_DIR.length())).collect(Collectors.toList());
+        assertThat(inputFilesToCheck, contains("for_globs_processing_test/file01.txt"));
+    }
+
     @Test
     public void sort_by_file_path() throws ArgFileParseException {
         ArgFile argFile = parseArgumentFile("{\"documents\": [{\"input-glob\": \"" + THIS_DIR +
@@ -184,4 +184,48 @@ class CliParserTest {
         assertTrue(options.isLegacyMode());
     }
 
+    @Test
+    public void jobs() throws CliArgumentsException {
+        assertNull(getParsingResult("-i", "input.md").getJobs());
+        assertEquals(4, getParsingResult("-i", "input.md", "--jobs", "4").getJobs());
+        assertEquals(0, getParsingResult("-i", "input.md", "-j", "0").getJobs());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"-1", "many", "1.5"})
+    public void wrongJobs(String jobs) {
+        assertThrows(CliArgumentsException.class,
+                () -> getParsingResult("-i", "input.md", "--jobs", jobs));
+    }
+
+    @Test
+    public void watch() throws CliArgumentsException {
+        assertFalse(getParsingResult("-i", "input.md").isWatch());
+        assertTrue(getParsingResult("-i", "input.md", "--watch").isWatch());
+    }
+
+    @Test
+    public void serve() throws CliArgumentsException {
+        assertNull(getParsingResult("-i", "input.md").getServePort());
+        assertEquals(8000, getParsingResult("-i", "input.md", "--serve").getServePort());
+        assertEquals(8080, getParsingResult("-i", "input.md", "--serve", "8080")
+                .getServePort());
+        assertEquals(8080, getParsingResult("-i", "input.md", "--serve=8080", "-v")
+                .getServePort());
+    }
+
+    @Test
+    public void profile() throws CliArgumentsException {
+        assertNull(getParsingResult("-i", "input.md").getProfile());
+        assertEquals("profile.json", getParsingResult("-i", "input.md", "--profile",
+                "profile.json").getProfile());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"-1", "port", "65536"})
+    public void wrongServePort(String port) {
+        assertThrows(CliArgumentsException.class,
+                () -> getParsingResult("-i", "input.md", "--serve", port));
+    }
+
 }
@@ -0,0 +1,107 @@
+package world.md2html.pagemetadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import world.md2html.plugins.Md2HtmlPlugin;
+import world.md2html.plugins.PageContext;
+import world.md2html.plugins.PageMetadataHandlerInfo;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpandedBlockReuseTest {
+
+    /**
+     * The `INCLUDE` blocks depend only on their metadata and on the file named there, their
+     * content is expanded recursively. The `PAGE` blocks are replaced with the number of the
+     * call.
+     */
+    private static class TestPlugin implements Md2HtmlPlugin {
+
+        private final AtomicInteger includeCalls = new AtomicInteger();
+        private final AtomicInteger pageCalls = new AtomicInteger();
+        private PageMetadataHandlersWrapper wrapper;
+
+        @Override
+        public void acceptData(JsonNode data) {
+        }
+
+        @Override
+        public boolean isBlank() {
+            return false;
+        }
+
+        @Override
+        public List<PageMetadataHandlerInfo> pageMetadataHandlers() {
+            return Arrays.asList(
+                    new PageMetadataHandlerInfo((context, marker, metadata, metadataBlock,
+                            visitedMarkers) -> {
+                        this.includeCalls.incrementAndGet();
+                        context.getDependencies().addFile(Paths.get(metadata.trim()));
+                        return this.wrapper.applyMetadataHandlers(
+                                "[" + metadata.trim().replace('(', '<').replace(')', '>') + "]",
+                                context, visitedMarkers, "INCLUDE:" + metadata.trim());
+                    }, "include", false, true),
+                    new PageMetadataHandlerInfo((context, marker, metadata, metadataBlock,
+                            visitedMarkers) -> String.valueOf(this.pageCalls.incrementAndGet()),
+                            "page", false));
+        }
+    }
+
+    private static TestPlugin plugin() {
+        TestPlugin plugin = new TestPlugin();
+        plugin.wrapper = PageMetadataHandlersWrapper.fromPlugins(
+                Collections.singletonList(plugin));
+        return plugin;
+    }
+
+    @Test
+    public void pageIndependentBlockExpandedOnce() {
+        TestPlugin plugin = plugin();
+        for (int i = 0; i < 3; i++) {
+            PageContext context = new PageContext(null);
+            assertEquals("text [footer.txt]", plugin.wrapper.applyMetadataHandlers(
+                    "text <!--include footer.txt-->", context));
+            assertEquals(Collections.singleton(Paths.get("footer.txt").toString()),
+                    context.getDependencies().getFiles());
+        }
+        assertEquals(1, plugin.includeCalls.get());
+
+        plugin.wrapper.invalidateExpandedBlocks(
+                Collections.singleton(Paths.get("other.txt").toString()));
+        plugin.wrapper.applyMetadataHandlers("<!--include footer.txt-->", new PageContext(null));
+        assertEquals(1, plugin.includeCalls.get());
+
+        plugin.wrapper.invalidateExpandedBlocks(
+                Collections.singleton(Paths.get("footer.txt").toString()));
+        plugin.wrapper.applyMetadataHandlers("<!--include footer.txt-->", new PageContext(null));
+        assertEquals(2, plugin.includeCalls.get());
+    }
+
+    @Test
+    public void nestedPageDependentBlockPreventsReuse() {
+        TestPlugin plugin = plugin();
+        // The included text contains a `PAGE` block.
+        String text = "<!--include a.txt(!--page--)-->";
+        assertEquals("[a.txt1]", plugin.wrapper.applyMetadataHandlers(text,
+                new PageContext(null)));
+        assertEquals("[a.txt2]", plugin.wrapper.applyMetadataHandlers(text,
+                new PageContext(null)));
+        assertEquals(2, plugin.includeCalls.get());
+
+        // The nested page independent blocks are still reused.
+        text = "<!--include b.txt(!--include c.txt--)(!--page--)-->";
+        PageContext context = new PageContext(null);
+        assertEquals("[b.txt[c.txt]3]", plugin.wrapper.applyMetadataHandlers(text, context));
+        assertEquals("[b.txt[c.txt]4]", plugin.wrapper.applyMetadataHandlers(text,
+                new PageContext(null)));
+        assertEquals(5, plugin.includeCalls.get());
+        assertEquals(2, context.getDependencies().getFiles().size());
+    }
+
+}
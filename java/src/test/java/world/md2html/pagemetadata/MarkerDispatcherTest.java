@@ -0,0 +1,64 @@
+package world.md2html.pagemetadata;
+
+import org.junit.jupiter.api.Test;
+import world.md2html.plugins.PageMetadataHandler;
+import world.md2html.plugins.PageMetadataHandlerInfo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkerDispatcherTest {
+
+    private static final PageMetadataHandler HANDLER_1 =
+            (context, marker, metadata, metadataBlock, visitedMarkers) -> "1";
+    private static final PageMetadataHandler HANDLER_2 =
+            (context, marker, metadata, metadataBlock, visitedMarkers) -> "2";
+
+    private static List<PageMetadataHandlerInfo> infos(PageMetadataHandler handler,
+            boolean pageIndependent) {
+        return Collections.singletonList(
+                new PageMetadataHandlerInfo(handler, "", false, pageIndependent));
+    }
+
+    private static int resolve(MarkerDispatcher dispatcher, String marker) {
+        String text = "<!--" + marker + "-->";
+        return dispatcher.resolve(text, 4, 4 + marker.length());
+    }
+
+    @Test
+    public void markersResolvedIgnoringCase() {
+        Map<String, List<PageMetadataHandlerInfo>> pageStartHandlers = new HashMap<>();
+        pageStartHandlers.put("METADATA", infos(HANDLER_1, false));
+        Map<String, List<PageMetadataHandlerInfo>> handlers = new HashMap<>();
+        handlers.put("META", infos(HANDLER_2, true));
+        handlers.put("METADATA", infos(HANDLER_2, true));
+        handlers.put("INCLUDE-FILE", infos(HANDLER_2, true));
+        MarkerDispatcher dispatcher = new MarkerDispatcher(pageStartHandlers, handlers);
+
+        int node = resolve(dispatcher, "metaData");
+        assertEquals("METADATA", dispatcher.marker(node));
+        assertSame(HANDLER_1, dispatcher.pageStartHandlers(node).get(0));
+        assertSame(HANDLER_2, dispatcher.handlers(node).get(0));
+        assertFalse(dispatcher.isPageStartHandlersPageIndependent(node));
+        assertTrue(dispatcher.isHandlersPageIndependent(node));
+
+        node = resolve(dispatcher, "meta");
+        assertEquals("META", dispatcher.marker(node));
+        assertNull(dispatcher.pageStartHandlers(node));
+
+        assertEquals(-1, resolve(dispatcher, "met"));
+        assertEquals(-1, resolve(dispatcher, "metadata_"));
+        assertEquals(-1, resolve(dispatcher, "other"));
+        // Cannot appear as a marker in the page text.
+        assertEquals(-1, resolve(dispatcher, "include-file"));
+    }
+
+}
@@ -0,0 +1,142 @@
+package world.md2html.pagemetadata;
+
+import org.junit.jupiter.api.Test;
+import world.md2html.pagemetadata.PageMetadataHandlersWrapper.MetadataMatchObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataScannerTest {
+
+    private static final Pattern METADATA_PATTERN =
+            Pattern.compile("^([\\w_][\\w\\d_]*)([^\\w\\d_]*.*)$", Pattern.DOTALL);
+    private static final Pattern METADATA_DELIMITERS_PATTERN = Pattern.compile("<!--|-->");
+
+    private static final String[] TOKENS = {"<!--", "-->", "<!-", "--", "-", "<", ">", "m1",
+            "M_2", "é", " ", "\n", "\t", "{\"a\": 1}", "x"};
+
+    /**
+     * The search as it was implemented with the regular expressions before the scanner.
+     */
+    private static List<String> findWithRegex(String text) {
+        List<String> results = new ArrayList<>();
+        int done = 0;
+        int begin = 0;
+        Deque<Integer> stack = new ArrayDeque<>();
+        Matcher delimiter = METADATA_DELIMITERS_PATTERN.matcher(text);
+        while (delimiter.find()) {
+            if (delimiter.group().equals("<!--")) {
+                stack.push(delimiter.start());
+            } else {
+                if (stack.isEmpty()) {
+                    continue;
+                }
+                begin = stack.pop();
+            }
+            if (stack.isEmpty()) {
+                int end = delimiter.end() - 3;
+                Matcher matcher = METADATA_PATTERN.matcher(text.substring(begin + 4, end));
+                if (matcher.find()) {
+                    results.add(format(text.substring(done, begin), matcher.group(1),
+                            matcher.group(2), text.substring(begin, end + 3), end + 3));
+                    done = end + 3;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static String format(String before, String marker, String metadata,
+            String metadataBlock, int endPos) {
+        return "[" + before + "|" + marker + "|" + metadata + "|" + metadataBlock + "|" +
+                endPos + "]";
+    }
+
+    private static List<String> findWithScanner(String text) {
+        List<String> results = new ArrayList<>();
+        Iterator<MetadataMatchObject> iterator = PageMetadataHandlersWrapper.metadataFinder(text);
+        while (iterator.hasNext()) {
+            MetadataMatchObject match = iterator.next();
+            results.add(format(match.getBefore(), match.getMarker(), match.getMetadata(),
+                    match.getMetadataBlock(), match.getEndPos()));
+        }
+        return results;
+    }
+
+    @Test
+    public void sameResultsAsRegex() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int tokens = random.nextInt(16);
+            for (int j = 0; j < tokens; j++) {
+                text.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            assertEquals(findWithRegex(text.toString()), findWithScanner(text.toString()),
+                    text.toString());
+        }
+    }
+
+    @Test
+    public void offsets() {
+        String text = " \n<!--m1 <!--n d--> d1--> b<!--- c --><!--M_2-->";
+        MetadataScanner scanner = new MetadataScanner(text);
+        assertTrue(scanner.find());
+        assertEquals(0, scanner.previousEnd());
+        assertEquals(2, scanner.blockStart());
+        assertEquals("m1", text.substring(scanner.markerStart(), scanner.markerEnd()));
+        assertEquals(" <!--n d--> d1", text.substring(scanner.markerEnd(),
+                scanner.metadataEnd()));
+        assertTrue(scanner.isBlankBefore());
+        assertTrue(scanner.find());
+        assertEquals(25, scanner.previousEnd());
+        assertEquals("M_2", text.substring(scanner.markerStart(), scanner.markerEnd()));
+        assertEquals(text.length(), scanner.blockEnd());
+        assertFalse(scanner.isBlankBefore());
+        assertFalse(scanner.find());
+    }
+
+    @Test
+    public void textWithoutBlocksReturnedAsIs() {
+        PageMetadataHandlersWrapper wrapper =
+                PageMetadataHandlersWrapper.fromPlugins(Collections.emptyList());
+        String text = "No metadata --> here";
+        assertSame(text, wrapper.applyMetadataHandlers(text, null));
+        String textWithBlocks = "<!--m1 d1--> text";
+        assertSame(textWithBlocks, wrapper.applyMetadataHandlers(textWithBlocks, null));
+    }
+
+    @Test
+    public void scanReplayed() {
+        String text = "a <!--m1 d1--> b <!-- c --> <!--m2 d2-->";
+        MetadataScan scan = MetadataScan.of(text);
+        assertEquals(2, scan.blockCount());
+        assertTrue(scan.isFor(text));
+        assertFalse(scan.isFor(new String(text)));
+
+        MetadataScanner scanner = new MetadataScanner(text);
+        MetadataScanner replayingScanner = scan.scanner(text);
+        while (scanner.find()) {
+            assertTrue(replayingScanner.find());
+            assertEquals(scanner.previousEnd(), replayingScanner.previousEnd());
+            assertEquals(scanner.blockStart(), replayingScanner.blockStart());
+            assertEquals(scanner.markerEnd(), replayingScanner.markerEnd());
+            assertEquals(scanner.blockEnd(), replayingScanner.blockEnd());
+            assertEquals(scanner.isBlankBefore(), replayingScanner.isBlankBefore());
+        }
+        assertFalse(replayingScanner.find());
+    }
+
+}
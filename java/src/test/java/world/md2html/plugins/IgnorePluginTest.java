@@ -39,11 +39,12 @@ class IgnorePluginTest {
                 "    \"ignore\": {} \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning<!--ignore \t  some context-->ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning<!--some context-->ending", processedPage);
     }
 
@@ -58,13 +59,14 @@ class IgnorePluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
 
         String pageText = "beginning <!--marker1 some context--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning <!--some context--> ending", processedPage);
 
         pageText = "beginning <!--ignore some context--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning <!--ignore some context--> ending", processedPage);
     }
 
@@ -79,17 +81,18 @@ class IgnorePluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
 
         String pageText = "beginning <!--marker1 some context--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning <!--some context--> ending", processedPage);
 
         pageText = "beginning <!--marker2 some context--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning <!--some context--> ending", processedPage);
 
         pageText = "beginning <!--ignore some context--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning <!--ignore some context--> ending", processedPage);
     }
 
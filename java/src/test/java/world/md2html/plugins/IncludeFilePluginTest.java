@@ -60,11 +60,12 @@ class IncludeFilePluginTest {
                         "     \"root-dir\": \"" + THIS_DIR + "for_include_file_plugin_test/\"}" +
                         "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1  code1.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before Sample text 1 after", processedPage);
     }
 
@@ -80,10 +81,11 @@ class IncludeFilePluginTest {
                         "    }" +
                         "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
         String  pageText = "before <!--marker1  code1.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before \nSample text 1\n\n after", processedPage
                 .replace("\r\n", "\n")
                 .replace("\r", "\n"));
@@ -99,15 +101,16 @@ class IncludeFilePluginTest {
                         "     \"root-dir\": \"" + THIS_DIR + "for_include_file_plugin_test/\"}" +
                         "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1  code1.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before Sample text 1 after", processedPage);
 
          pageText = "before <!--marker2  code1.txt --> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before Sample text 1 after", processedPage);
     }
 
@@ -125,15 +128,16 @@ class IncludeFilePluginTest {
                         "    }" +
                         "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1  code1.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before Sample text 1 after", processedPage);
 
          pageText = "before <!--marker2  code2.txt --> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before Sample text 2 after", processedPage);
     }
 
@@ -163,11 +167,12 @@ class IncludeFilePluginTest {
             "     \"recursive\": true}" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1 recursive.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before text 1, [[text 2]] after", processedPage);
     }
 
@@ -184,13 +189,14 @@ class IncludeFilePluginTest {
             "     \"recursive\": true}" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1 recursive.txt --> after";
 
         UserError e = assertThrows(UserError.class,
-                () -> metadataHandlers.applyMetadataHandlers(pageText, doc));
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context));
         String message = e.getMessage().toUpperCase();
         assertTrue(message.contains("CYCLE"));
         assertTrue(message.contains("INCLUDE_FILE_PLUGIN"));
@@ -210,13 +216,14 @@ class IncludeFilePluginTest {
             "     \"recursive\": true}" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1 recursive.txt --> after";
 
         UserError e = assertThrows(UserError.class,
-                () -> metadataHandlers.applyMetadataHandlers(pageText, doc));
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context));
         String message = e.getMessage().toUpperCase();
         assertTrue(message.contains("CYCLE"));
         assertTrue(message.contains("INCLUDE_FILE_PLUGIN"));
@@ -235,11 +242,12 @@ class IncludeFilePluginTest {
             "     \"recursive\": true}" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--include recursive1.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before text 3, text 1, [[text 2]] after", processedPage);
     }
 
@@ -257,15 +265,16 @@ class IncludeFilePluginTest {
                 "     \"start-marker\": \"<body>\", \"end-marker\": \"</body>\"}" +
                 "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--include_text substrings.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before <body>BODY</body> after", processedPage);
 
          pageText = "before <!--include_marker substrings.txt --> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before BODY after", processedPage);
     }
 
@@ -281,11 +290,12 @@ class IncludeFilePluginTest {
             "    }" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before<!--marker1  trim_empty_lines.txt -->after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before   Sample text 1   after", processedPage);
     }
 
@@ -300,18 +310,19 @@ class IncludeFilePluginTest {
             "     \"start-marker\": \"// START HERE\", \"end-marker\": \"// END HERE\"}" +
             "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--include {\"file\": \"per_file_delimiters.txt\", " +
                 "\"start-marker\": \"\", \"start-with\": \"<body>\", " +
                 "\"end-with\": \"</body>\"}--> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before <body>BODY</body> after", processedPage);
 
         pageText = "before <!--include {\"file\": \"per_file_delimiters.txt\", " +
                 "\"start-marker\": \"<body>\", \"end-marker\": \"</body>\"}--> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before BODY after", processedPage);
     }
 
@@ -326,15 +337,16 @@ class IncludeFilePluginTest {
                     "     \"root-dir\": \"" + THIS_DIR + "for_include_file_plugin_test/\"}" +
                 "]}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1 recursive.txt --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before text 1, <!--replace text 2--> after", processedPage);
 
          pageText = "before <!--marker1 {\"file\": \"recursive.txt\", \"recursive\": true}--> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before text 1, [[text 2]] after", processedPage);
     }
 }
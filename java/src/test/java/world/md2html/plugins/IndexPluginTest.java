@@ -13,6 +13,8 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static world.md2html.options.TestUtils.parseArgumentFile;
 
 class IndexPluginTest {
@@ -55,18 +57,21 @@ class IndexPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--index entry 1--> after";
-        plugin.newPage(doc);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        PageContext context = new PageContext(doc);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertNotEquals(processedPage, pageText);
 
         pageText = "before <!--index1 entry 1--> after";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals(processedPage, pageText);
 
         pageText = "before <!--index [\"entry 1\", \"entry 2\"] --> after";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertNotEquals(processedPage, pageText);
     }
 
@@ -87,21 +92,42 @@ class IndexPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--index1 entry 1--> after";
-        plugin.newPage(doc);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        PageContext context = new PageContext(doc);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertNotEquals(processedPage, pageText);
 
          pageText = "before <!--index2 entry 1--> after";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertNotEquals(processedPage, pageText);
 
         pageText = "before <!--index5 entry 1--> after";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals(processedPage, pageText);
     }
 
+    @Test
+    public void test_page_not_started() throws ArgFileParseException {
+        ArgFile argFile = parseArgumentFile(
+                "{\"documents\": [{\"input\": \"whatever.txt\"}], " +
+                        "\"plugins\": {" +
+                        "\"index\": {\"index\": {\"output\": \"index_page.html\", " +
+                        "\"index-cache\": \"index_cache.json\"}}" +
+                        "}}", DUMMY_CLI_OPTIONS);
+        Document doc = argFile.getDocuments().get(0);
+        PageMetadataHandlersWrapper metadataHandlers =
+                PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
+
+        PageMetadataHandler.PageMetadataException e = assertThrows(
+                PageMetadataHandler.PageMetadataException.class, () -> metadataHandlers
+                        .applyMetadataHandlers("<!--index entry 1-->", new PageContext(doc)));
+        assertTrue(e.getMessage().contains("was not started"));
+    }
+
     // TODO Also test page flows with index.
 
 }
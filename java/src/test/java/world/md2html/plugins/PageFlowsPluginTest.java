@@ -2,6 +2,7 @@ package world.md2html.plugins;
 
 import lombok.Getter;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -11,7 +12,11 @@ import world.md2html.options.model.Document;
 import world.md2html.testutils.PluginTestUtils;
 import world.md2html.utils.UserError;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +25,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -128,7 +134,8 @@ class PageFlowsPluginTest {
                         "]}}}", DUMMY_CLI_OPTIONS).getPlugins();
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
         Document doc = documentWithOutputLocation("about.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(3, pages.size());
         assertPageEquals("index.html", "Home", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", true, false, PagePosition.BETWEEN, pages.get(1));
@@ -146,7 +153,8 @@ class PageFlowsPluginTest {
                         "]}}}", DUMMY_CLI_OPTIONS).getPlugins();
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
         Document doc = documentWithOutputLocation("about.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(1, pages.size());
         assertEquals("custom string value", pages.get(0).get("custom_string"));
         assertEquals(101.4, pages.get(0).get("custom_number"));
@@ -163,13 +171,15 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
         
         Document doc = documentWithOutputLocation("index.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(2, pages.size());
         assertPageEquals("index.html", "Home", true, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", false, false, PagePosition.LAST, pages.get(1));
 
         doc = documentWithOutputLocation("no-page-flow.html");
-        pages = extractPages(plugin.variables(doc).get("sections"));
+        context = new PageContext(doc);
+        pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(2, pages.size());
         assertPageEquals("index.html", "Home", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", false, false, PagePosition.LAST, pages.get(1));
@@ -187,7 +197,8 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("other.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(3, pages.size());
         assertPageEquals("index.html", "Home", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", false, false, PagePosition.BETWEEN, pages.get(1));
@@ -221,14 +232,16 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("narration.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(3, pages.size());
         assertPageEquals("index.html", "Home", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", false, false, PagePosition.BETWEEN, pages.get(1));
         assertPageEquals("narration.html", "Narration", true, false, PagePosition.LAST, pages.get(2));
 
         doc = documentWithOutputLocation("other1.html");
-        pages = extractPages(plugin.variables(doc).get("other_links"));
+        context = new PageContext(doc);
+        pages = extractPages(plugin.variables(context).get("other_links"));
         assertEquals(2, pages.size());
         assertPageEquals("other1.html", "OtherLink1", true, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("other2.html", "OtherLink2", false, false, PagePosition.LAST, pages.get(1));
@@ -248,13 +261,14 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("other.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(3, pages.size());
         assertPageEquals("index.html", "Home", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("about.html", "About", false, false, PagePosition.BETWEEN, pages.get(1));
         assertPageEquals("other.html", "OtherLink", true, false, PagePosition.LAST, pages.get(2));
 
-        pages = extractPages(plugin.variables(doc).get("other_links"));
+        pages = extractPages(plugin.variables(context).get("other_links"));
         assertEquals(3, pages.size());
         assertPageEquals("about.html", "About", false, false, PagePosition.FIRST, pages.get(0));
         assertPageEquals("other.html", "Other", true, false, PagePosition.BETWEEN, pages.get(1));
@@ -272,7 +286,8 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("index.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals(2, pages.size());
         assertPageEquals("index.html", "HomeLinkExternal", false, true, PagePosition.FIRST, pages.get(0));
         assertPageEquals("index.html", "HomeLink", true, false, PagePosition.LAST, pages.get(1));
@@ -307,7 +322,8 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("page1.html");
-        TestPageFlow pageFlow = new TestPageFlow(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        TestPageFlow pageFlow = new TestPageFlow(plugin.variables(context).get("sections"));
         assertTrue(pageFlow.isHas_navigation());
         assertTrue(pageFlow.isNot_empty());
         assertNull(pageFlow.getPrevious());
@@ -315,7 +331,8 @@ class PageFlowsPluginTest {
         assertPageEquals("page2.html", "Title2", false, false, pageFlow.getNext());
 
         doc = documentWithOutputLocation("page2.html");
-        pageFlow = new TestPageFlow(plugin.variables(doc).get("sections"));
+        context = new PageContext(doc);
+        pageFlow = new TestPageFlow(plugin.variables(context).get("sections"));
         assertTrue(pageFlow.isHas_navigation());
         assertTrue(pageFlow.isNot_empty());
         assertPageEquals("page1.html", "Title1", false, false, pageFlow.getPrevious());
@@ -323,7 +340,8 @@ class PageFlowsPluginTest {
         assertPageEquals("page3.html", "Title3", false, false, pageFlow.getNext());
 
         doc = documentWithOutputLocation("page3.html");
-        pageFlow = new TestPageFlow(plugin.variables(doc).get("sections"));
+        context = new PageContext(doc);
+        pageFlow = new TestPageFlow(plugin.variables(context).get("sections"));
         assertTrue(pageFlow.isHas_navigation());
         assertTrue(pageFlow.isNot_empty());
         assertPageEquals("page2.html", "Title2", false, false, pageFlow.getPrevious());
@@ -388,7 +406,8 @@ class PageFlowsPluginTest {
 
         for (int i = 1; i <= pageCount; ++i) {
             Document doc = documentWithOutputLocation("page" + i + ".html");
-            TestPageFlow pageFlow = new TestPageFlow(plugin.variables(doc).get("sections"));
+            PageContext context = new PageContext(doc);
+            TestPageFlow pageFlow = new TestPageFlow(plugin.variables(context).get("sections"));
             assertEquals(pageCount > 1, pageFlow.isHas_navigation());
             assertTrue(pageFlow.isNot_empty());
             if (i < 2) { // for the first page, the previous page is always absent
@@ -423,21 +442,24 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("root1.html");
-        List<Map<String, Object>> pages = extractPages(plugin.variables(doc).get("sections"));
+        PageContext context = new PageContext(doc);
+        List<Map<String, Object>> pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals("root1.html", pages.get(0).get("link"));
         assertEquals("root2.html", pages.get(1).get("link"));
         assertEquals("doc/sub1.html", pages.get(2).get("link"));
         assertEquals("doc/ch01/sub-sub-1.html", pages.get(4).get("link"));
 
         doc = documentWithOutputLocation("doc/sub1.html");
-        pages = extractPages(plugin.variables(doc).get("sections"));
+        context = new PageContext(doc);
+        pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals("../root1.html", pages.get(0).get("link"));
         assertEquals("sub1.html", pages.get(2).get("link"));
         assertEquals("sub2.html", pages.get(3).get("link"));
         assertEquals("ch01/sub-sub-1.html", pages.get(4).get("link"));
 
         doc = documentWithOutputLocation("doc/ch01/sub-sub-1.html");
-        pages = extractPages(plugin.variables(doc).get("sections"));
+        context = new PageContext(doc);
+        pages = extractPages(plugin.variables(context).get("sections"));
         assertEquals("../../root1.html", pages.get(0).get("link"));
         assertEquals("../sub2.html", pages.get(3).get("link"));
         assertEquals("sub-sub-1.html", pages.get(4).get("link"));
@@ -460,7 +482,8 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("page1.html");
-        Object pageFlowObject = plugin.variables(doc).get("sections");
+        PageContext context = new PageContext(doc);
+        Object pageFlowObject = plugin.variables(context).get("sections");
         TestPageFlow pageFlow = new TestPageFlow(pageFlowObject);
         assertEquals("Sections", pageFlow.getTitle());
         List<Map<String, Object>> pages = extractPages(pageFlowObject);
@@ -470,7 +493,7 @@ class PageFlowsPluginTest {
         assertEquals("title2", pages.get(1).get("title"));
 
         //noinspection unchecked
-        List<Object> groupObject = (List<Object>) plugin.variables(doc).get("gr1");
+        List<Object> groupObject = (List<Object>) plugin.variables(context).get("gr1");
         pages = extractPages(groupObject.get(0));
         assertEquals("link1.html", pages.get(0).get("link"));
         assertEquals("title1", pages.get(0).get("title"));
@@ -494,7 +517,8 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("page1.html");
-        Object pageFlowObject = plugin.variables(doc).get("sections");
+        PageContext context = new PageContext(doc);
+        Object pageFlowObject = plugin.variables(context).get("sections");
         TestPageFlow pageFlow = new TestPageFlow(pageFlowObject);
         assertEquals("Sections", pageFlow.getTitle());
         List<Map<String, Object>> pages = extractPages(pageFlowObject);
@@ -503,7 +527,7 @@ class PageFlowsPluginTest {
         assertEquals("link1.html", pages.get(2).get("link"));
 
         //noinspection unchecked
-        List<Object> groupObject = (List<Object>) plugin.variables(doc).get("gr1");
+        List<Object> groupObject = (List<Object>) plugin.variables(context).get("gr1");
         pages = extractPages(groupObject.get(0));
         assertEquals(1, groupObject.size());
         assertEquals("page1.html", pages.get(0).get("link"));
@@ -532,8 +556,9 @@ class PageFlowsPluginTest {
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
 
         Document doc = documentWithOutputLocation("page1.html");
+        PageContext context = new PageContext(doc);
 
-        Object groupAsObject = plugin.variables(doc).get("gr1");
+        Object groupAsObject = plugin.variables(context).get("gr1");
         //noinspection unchecked
         List<Object> groupAsList = (List<Object>) groupAsObject;
         assertEquals(2, groupAsList.size());
@@ -545,7 +570,7 @@ class PageFlowsPluginTest {
         pages = extractPages(groupAsList.get(1));
         assertEquals("link2.html", pages.get(0).get("link"));
 
-        groupAsObject = plugin.variables(doc).get("gr2");
+        groupAsObject = plugin.variables(context).get("gr2");
         //noinspection unchecked
         groupAsList = (List<Object>) groupAsObject;
         assertEquals(2, groupAsList.size());
@@ -572,7 +597,40 @@ class PageFlowsPluginTest {
                 "}", DUMMY_CLI_OPTIONS).getPlugins();
         PageFlowsPlugin plugin = findSinglePlugin(plugins);
         Document doc = documentWithOutputLocation("page1.html");
-        UserError e = assertThrows(UserError.class, () -> plugin.variables(doc));
+        PageContext context = new PageContext(doc);
+        UserError e = assertThrows(UserError.class, () -> plugin.variables(context));
         assertTrue(e.getMessage().contains("Variable duplication"));
     }
+
+    private String dependencyFact(String sectionsTitle, String otherTitle, Path template)
+            throws ArgFileParseException {
+        PageFlowsPlugin plugin = findSinglePlugin(parseArgumentFile("{" +
+                "   \"documents\": [{\"input\": \"page1.txt\"}]," +
+                "   \"plugins\": {\"page-flows\": {" +
+                "       \"sections\": {\"groups\": [\"sidebar\"], \"items\": [" +
+                "           {\"link\": \"page1.html\", \"title\": \"" + sectionsTitle + "\"}]}," +
+                "       \"other\": [" +
+                "           {\"link\": \"page2.html\", \"title\": \"" + otherTitle + "\"}]" +
+                "   }}" +
+                "}", DUMMY_CLI_OPTIONS).getPlugins());
+        return plugin.dependencyFact(Document.builder().output("page1.html")
+                .template(template.toString()).build());
+    }
+
+    @Test
+    public void dependencyFact_onlyTemplatePageFlows(@TempDir Path tempDir)
+            throws ArgFileParseException, IOException {
+        Path template = tempDir.resolve("template.html");
+        Files.write(template, "{{#sidebar}}{{title}}{{/sidebar}}".getBytes(StandardCharsets.UTF_8));
+        String fact = dependencyFact("Page 1", "Page 2", template);
+        assertEquals(fact, dependencyFact("Page 1", "Page 2 changed", template));
+        assertNotEquals(fact, dependencyFact("Page 1 changed", "Page 2", template));
+
+        Path otherTemplate = tempDir.resolve("other_template.html");
+        Files.write(otherTemplate, "{{#other}}{{title}}{{/other}}"
+                .getBytes(StandardCharsets.UTF_8));
+        fact = dependencyFact("Page 1", "Page 2", otherTemplate);
+        assertEquals(fact, dependencyFact("Page 1 changed", "Page 2", otherTemplate));
+        assertNotEquals(fact, dependencyFact("Page 1", "Page 2 changed", otherTemplate));
+    }
 }
@@ -54,8 +54,9 @@ class PageLinksPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "[](<!--page page1-->#anchor)";
-        plugin.newPage(doc);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        PageContext context = new PageContext(doc);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](page1.html#anchor)", processedPage);
     }
 
@@ -76,15 +77,15 @@ class PageLinksPluginTest {
         Document doc2 = argFile.getDocuments().get(1);
 
         String pageText = "[](<!--page page2-->#anchor)";
-        plugin.newPage(doc1);
-        plugin.newPage(doc2);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        PageContext context = new PageContext(doc1);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](subdir/page2.html#anchor)", processedPage);
 
         pageText = "[](<!--page page1-->#anchor)";
-        plugin.newPage(doc1);
-        plugin.newPage(doc2);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc2);
+        context = new PageContext(doc2);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](../page1.html#anchor)", processedPage);
     }
 
@@ -104,8 +105,9 @@ class PageLinksPluginTest {
         Document doc1 = argFile.getDocuments().get(0);
 
         String pageText = "[](<!--page page2-->#anchor)";
-        plugin.newPage(doc1);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        PageContext context = new PageContext(doc1);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](<!--page page2-->#anchor)", processedPage);
     }
 
@@ -124,13 +126,15 @@ class PageLinksPluginTest {
         Document doc = argFile.getDocuments().get(0);
 
         String pageText = "[](<!--marker1 page2-->#anchor)";
-        plugin.newPage(doc);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        PageContext context = new PageContext(doc);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](page2.html#anchor)", processedPage);
 
         pageText = "[](<!--page page2-->#anchor)";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](<!--page page2-->#anchor)", processedPage);
     }
 
@@ -149,18 +153,21 @@ class PageLinksPluginTest {
         Document doc = argFile.getDocuments().get(0);
 
         String pageText = "[](<!--marker1 page2-->#anchor)";
-        plugin.newPage(doc);
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        PageContext context = new PageContext(doc);
+        plugin.newPage(context);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](page2.html#anchor)", processedPage);
 
         pageText = "[](<!--marker2 page2-->#anchor)";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](page2.html#anchor)", processedPage);
 
         pageText = "[](<!--page page2-->#anchor)";
-        plugin.newPage(doc);
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        context = new PageContext(doc);
+        plugin.newPage(context);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("[](<!--page page2-->#anchor)", processedPage);
     }
 
@@ -57,27 +57,30 @@ class PageVariablesPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageContent = "<!--METADATA {\"title\": \"About\"}-->other content";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("About", variables.get("title"));
         assertEquals("other content", result);
 
         pageContent = "  \r\n \t \n   <!--METADATA{\"title\":\"About1\" } -->";
-        plugin.newPage(null);
-        result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        variables = plugin.variables(ANY_DOCUMENT);
+        context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        variables = plugin.variables(context);
         assertEquals("About1", variables.get("title"));
         assertEquals("  \r\n \t \n   ", result);
 
         pageContent = "  \r\n \t \n  no metadata blocks  ";
-        result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        variables = plugin.variables(ANY_DOCUMENT);
+        result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        variables = plugin.variables(context);
         assertEquals("About1", variables.get("title")); // that"s because the plugin was not reset
         assertEquals("  \r\n \t \n  no metadata blocks  ", result);
-        plugin.newPage(null); // reset
-        result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        variables = plugin.variables(ANY_DOCUMENT);
+        context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context); // reset
+        result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        variables = plugin.variables(context);
         assertNull(variables.get("title"));
         assertEquals("  \r\n \t \n  no metadata blocks  ", result);
     }
@@ -90,9 +93,10 @@ class PageVariablesPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageContent = "<!--variables{ \"key\":\"value\" }-->other content";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("value", variables.get("key"));
         assertEquals("other content", result);
     }
@@ -106,9 +110,10 @@ class PageVariablesPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageContent = "start text <!--metadata{ \"logo\":\"COOL!\" }-->other content";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("COOL!", variables.get("logo"));
         assertEquals("start text other content", result);
     }
@@ -122,9 +127,10 @@ class PageVariablesPluginTest {
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageContent = "start text <!--variables\n{\"key\": \"value\"}\r\n-->\n other content";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("value", variables.get("key"));
         assertEquals("start text \n other content", result);
     }
@@ -137,9 +143,10 @@ class PageVariablesPluginTest {
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
         String pageContent = "start text<!--metadata{\"key\":\"value\"}-->";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertTrue(variables.isEmpty());
         assertEquals("start text<!--metadata{\"key\":\"value\"}-->", result);
     }
@@ -154,11 +161,31 @@ class PageVariablesPluginTest {
 
         String pageContent = "    <!--metadata1{\"key\": \"value\"}--> other " +
                 "text <!--variables1{\"question\": \"answer\"} --> some more text";
-        plugin.newPage(null);
-        String result = metadataHandlers.applyMetadataHandlers(pageContent, ANY_DOCUMENT);
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context);
+        String result = metadataHandlers.applyMetadataHandlers(pageContent, context);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("value", variables.get("key"));
         assertEquals("answer", variables.get("question"));
         assertEquals("     other text  some more text", result);
     }
+
+    @Test
+    public void interleavedPages() throws ArgFileParseException {
+        ArgFile argFile = parsePluginData("{\"METADATA\": { }}");
+        PageVariablesPlugin plugin = findSinglePlugin(argFile.getPlugins());
+        PageMetadataHandlersWrapper metadataHandlers =
+                PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
+
+        PageContext context1 = new PageContext(ANY_DOCUMENT);
+        PageContext context2 = new PageContext(ANY_DOCUMENT);
+        plugin.newPage(context1);
+        plugin.newPage(context2);
+        metadataHandlers.applyMetadataHandlers("<!--METADATA {\"title\": \"Page 1\"}-->",
+                context1);
+        metadataHandlers.applyMetadataHandlers("<!--METADATA {\"title\": \"Page 2\"}-->",
+                context2);
+        assertEquals("Page 1", plugin.variables(context1).get("title"));
+        assertEquals("Page 2", plugin.variables(context2).get("title"));
+    }
 }
@@ -14,7 +14,7 @@ import java.util.Map;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static world.md2html.options.TestUtils.parseArgumentFile;
-import static world.md2html.testutils.PluginTestUtils.documentWithOutputLocation;
+import static world.md2html.testutils.PluginTestUtils.pageContextWithOutputLocation;
 
 class RelativePathsPluginTest {
 
@@ -50,7 +50,7 @@ class RelativePathsPluginTest {
                 "        \"paths\": {\"pict\": \"doc/pict/\"}}" +
                 "}}", DUMMY_CLI_OPTIONS);
         RelativePathsPlugin plugin = findSinglePlugin(argFile.getPlugins());
-        Map<String, Object> relPaths = plugin.variables(documentWithOutputLocation("root.html"));
+        Map<String, Object> relPaths = plugin.variables(pageContextWithOutputLocation("root.html"));
         assertEquals("doc/pict/", relPaths.get("pict"));
     }
 
@@ -63,7 +63,7 @@ class RelativePathsPluginTest {
                 "\"root\": \"\", \"up1\": \"../\", \"up2\": \"../../\" }}}", DUMMY_CLI_OPTIONS);
         RelativePathsPlugin plugin = findSinglePlugin(argFile.getPlugins());
 
-        Map<String, Object> relPaths = plugin.variables(documentWithOutputLocation("root.html"));
+        Map<String, Object> relPaths = plugin.variables(pageContextWithOutputLocation("root.html"));
         assertEquals("down1/", relPaths.get("down1"));
         assertEquals("down1/down11/", relPaths.get("down11"));
         assertEquals("down2/", relPaths.get("down2"));
@@ -72,7 +72,7 @@ class RelativePathsPluginTest {
         assertEquals("../", relPaths.get("up1"));
         assertEquals("../../", relPaths.get("up2"));
 
-        relPaths = plugin.variables(documentWithOutputLocation("down1/doc.html"));
+        relPaths = plugin.variables(pageContextWithOutputLocation("down1/doc.html"));
         assertEquals("", relPaths.get("down1"));
         assertEquals("down11/", relPaths.get("down11"));
         assertEquals("../down2/", relPaths.get("down2"));
@@ -81,7 +81,7 @@ class RelativePathsPluginTest {
         assertEquals("../../", relPaths.get("up1"));
         assertEquals("../../../", relPaths.get("up2"));
 
-        relPaths = plugin.variables(documentWithOutputLocation("down2/down22/doc.html"));
+        relPaths = plugin.variables(pageContextWithOutputLocation("down2/down22/doc.html"));
         assertEquals("../../down1/", relPaths.get("down1"));
         assertEquals("../../down1/down11/", relPaths.get("down11"));
         assertEquals("../", relPaths.get("down2"));
@@ -99,11 +99,12 @@ class RelativePathsPluginTest {
                 "        \"paths\": {\"pict1\": \"doc/pict/\"}} \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "![](<!--path1 pict1-->img1.png)";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("![](doc/pict/img1.png)", processedPage);
     }
 
@@ -118,15 +119,17 @@ class RelativePathsPluginTest {
                 "        \"paths\": {\"pict2\": \"doc/pict/\"}} \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc1 = argFile.getDocuments().get(0);
+        PageContext context1 = new PageContext(doc1);
         Document doc2 = argFile.getDocuments().get(1);
+        PageContext context2 = new PageContext(doc2);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "![](<!--path2 pict2-->img2.png)";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](doc/pict/img2.png)", processedPage);
 
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc2);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context2);
         assertEquals("![](../doc/pict/img2.png)", processedPage);
     }
 
@@ -138,11 +141,12 @@ class RelativePathsPluginTest {
                 "        \"paths\": {\"pict2\": \"doc/pict/\"}} \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc1 = argFile.getDocuments().get(0);
+        PageContext context1 = new PageContext(doc1);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "![](<!--path2 unknown-->img2.png)";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](<!--path2 unknown-->img2.png)", processedPage);
     }
 
@@ -155,23 +159,24 @@ class RelativePathsPluginTest {
                 "                    \"pict3\": \"doc/layout/pict/\"}} \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc1 = argFile.getDocuments().get(0);
+        PageContext context1 = new PageContext(doc1);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "![](<!--p1 pict2-->img.png)";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](doc/pict/img.png)", processedPage);
 
         pageText = "![](<!--p2 pict2-->img.png)";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](doc/pict/img.png)", processedPage);
 
         pageText = "![](<!--p1 pict3-->img.png)";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](doc/layout/pict/img.png)", processedPage);
 
         pageText = "![](<!--p2 pict3-->img.png)";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc1);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context1);
         assertEquals("![](doc/layout/pict/img.png)", processedPage);
     }
 }
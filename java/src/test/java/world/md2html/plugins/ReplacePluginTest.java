@@ -5,11 +5,13 @@ import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
 import world.md2html.options.model.Document;
+import world.md2html.options.model.PageBudget;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.testutils.PluginTestUtils;
 import world.md2html.utils.UserError;
 
 import java.util.List;
+import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -45,14 +47,39 @@ class ReplacePluginTest {
                         "}}", DUMMY_CLI_OPTIONS);
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--marker1  some context  --> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning [[some context  ]] ending", processedPage);
     }
 
+    @Test
+    public void test_markers_in_turkish_locale() throws ArgFileParseException {
+        Locale defaultLocale = Locale.getDefault();
+        // Upper-cases `i` to the dotted `İ` that can never be in a marker.
+        Locale.setDefault(new Locale("tr"));
+        try {
+            ArgFile argFile = parseArgumentFile(
+                    "{\"documents\": [{\"input\": \"page1.txt\"}], \n" +
+                            "\"plugins\": { \n" +
+                            "    \"replace\": [\n" +
+                            "        {\"markers\": [\"insert\"], \"replace-with\": \"[[${1}]]\"} \n" +
+                            "    ]\n" +
+                            "}}", DUMMY_CLI_OPTIONS);
+            PageContext context = new PageContext(argFile.getDocuments().get(0));
+            PageMetadataHandlersWrapper metadataHandlers =
+                    PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
+
+            assertEquals("a [[b]] c [[d]]", metadataHandlers.applyMetadataHandlers(
+                    "a <!--insert b--> c <!--INSERT d-->", context));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
     @Test
     public void test_several_values() throws ArgFileParseException {
         ArgFile argFile = parseArgumentFile(
@@ -63,15 +90,16 @@ class ReplacePluginTest {
                         "    ]\n" +
                         "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--marker1 [\"A\", \"B\"]--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning [[A-B]] ending", processedPage);
 
         pageText = "beginning <!--marker1 [\"C\", \"D\"]--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning [[C-D]] ending", processedPage);
     }
 
@@ -85,15 +113,16 @@ class ReplacePluginTest {
                         "    ]\n" +
                         "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--marker1 some-value--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning [[some-value]] ending", processedPage);
 
         pageText = "beginning <!--marker2 some-value--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning [[some-value]] ending", processedPage);
     }
 
@@ -108,15 +137,16 @@ class ReplacePluginTest {
                 "    ] \n" +
                 "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--marker1 VALUE--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning s1 VALUE e1 ending", processedPage);
 
         pageText = "beginning <!--marker2 VALUE--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning s2 VALUE e2 ending", processedPage);
     }
 
@@ -132,15 +162,16 @@ class ReplacePluginTest {
                         "    ] \n" +
                         "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--m2 V2--> ending";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning V2 m2 v1 m1 ending", processedPage);
 
         pageText = "beginning <!--m3 V3--> ending";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("beginning V3 m3 <!--m1 v1--> ending", processedPage);
     }
 
@@ -154,13 +185,14 @@ class ReplacePluginTest {
                         "    ] \n" +
                         "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--m1 V1--> ending";
 
         UserError e = assertThrows(UserError.class,
-                () -> metadataHandlers.applyMetadataHandlers(pageText, doc));
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context));
         String message = e.getMessage().toUpperCase();
         assertTrue(message.contains("CYCLE"));
         assertTrue(message.contains("M1"));
@@ -178,15 +210,51 @@ class ReplacePluginTest {
                         "    ] \n" +
                         "}}", DUMMY_CLI_OPTIONS);
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "beginning <!--m1 V1--> ending";
 
         UserError e = assertThrows(UserError.class,
-                () -> metadataHandlers.applyMetadataHandlers(pageText, doc));
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context));
         String message = e.getMessage().toUpperCase();
         assertTrue(message.contains("CYCLE"));
         assertTrue(message.contains("M1,M2,M3"));
     }
+
+    @Test
+    public void test_page_budget_exceeded() throws ArgFileParseException {
+        ArgFile argFile = parseArgumentFile(
+                "{\"documents\": [{\"input\": \"page1.txt\"}], \n" +
+                        "\"plugins\": { \n" +
+                        "    \"replace\": [\n" +
+                        "        {\"markers\": [\"m1\"], \"replace-with\": \"<!--m2--><!--m2-->\", \"recursive\": true},\n" +
+                        "        {\"markers\": [\"m2\"], \"replace-with\": \"<!--m3--><!--m3-->\", \"recursive\": true},\n" +
+                        "        {\"markers\": [\"m3\"], \"replace-with\": \"<!--m4--><!--m4-->\", \"recursive\": true},\n" +
+                        "        {\"markers\": [\"m4\"], \"replace-with\": \"0123456789\"}\n" +
+                        "    ] \n" +
+                        "}}", DUMMY_CLI_OPTIONS);
+        Document doc = argFile.getDocuments().get(0);
+        PageMetadataHandlersWrapper metadataHandlers = argFile.getMetadataHandlers();
+        String pageText = "<!--m1-->";
+
+        PageContext context = new PageContext(doc);
+        context.startBudget(PageBudget.UNLIMITED.toBuilder().maxHandlerCalls(3).build());
+        UserError e = assertThrows(UserError.class,
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context));
+        assertEquals("Page budget exceeded: more than 3 metadata handler calls, " +
+                "marker chain: M1 > M2 > M3 > M4", e.getMessage());
+
+        PageContext context2 = new PageContext(doc);
+        context2.startBudget(PageBudget.UNLIMITED.toBuilder().maxExpandedSize(79).build());
+        e = assertThrows(UserError.class,
+                () -> metadataHandlers.applyMetadataHandlers(pageText, context2));
+        assertEquals("Page budget exceeded: expanded text longer than 79 characters, " +
+                "marker chain: M1", e.getMessage());
+
+        PageContext context3 = new PageContext(doc);
+        context3.startBudget(PageBudget.UNLIMITED.toBuilder().maxExpandedSize(80).build());
+        assertEquals(80, metadataHandlers.applyMetadataHandlers(pageText, context3).length());
+    }
 }
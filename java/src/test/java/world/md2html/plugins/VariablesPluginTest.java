@@ -38,7 +38,8 @@ class VariablesPluginTest {
                         "    \"strange\": \"Don't do it yourself! -\\u002D>\" }" +
                         "}}", DUMMY_CLI_OPTIONS);
         VariablesPlugin plugin = findSinglePlugin(argFile.getPlugins());
-        Map<String, Object> variables = plugin.variables(ANY_DOCUMENT);
+        PageContext context = new PageContext(ANY_DOCUMENT);
+        Map<String, Object> variables = plugin.variables(context);
         assertEquals("val1", variables.get("var1"));
         assertEquals("val2", variables.get("_var2"));
         assertEquals("Don't do it yourself! -->", variables.get("strange"));
@@ -1,6 +1,7 @@
 package world.md2html.plugins;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import world.md2html.options.argfile.ArgFileParseException;
 import world.md2html.options.model.ArgFile;
 import world.md2html.options.model.CliOptions;
@@ -8,6 +9,11 @@ import world.md2html.options.model.Document;
 import world.md2html.pagemetadata.PageMetadataHandlersWrapper;
 import world.md2html.testutils.PluginTestUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -52,11 +58,12 @@ class WrapCodePluginTest {
         plugin.setDryRun(true);
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String  pageText = "before <!--marker1  path/to/file.csv --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before output/path/path/to/file.csv.html after", processedPage);
     }
 
@@ -74,15 +81,16 @@ class WrapCodePluginTest {
         plugin.setDryRun(true);
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "before <!--marker1  path/to/file1.csv --> after";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before output/path1/path/to/file1.csv.html after", processedPage);
 
         pageText = "before <!--marker2  path/to/file2.csv --> after";
-        processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("before output/path2/path/to/file2.csv.html after", processedPage);
     }
 
@@ -98,12 +106,45 @@ class WrapCodePluginTest {
         plugin.setDryRun(true);
 
         Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
         PageMetadataHandlersWrapper metadataHandlers =
                 PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
 
         String pageText = "<!--marker1 path/to/file.csv--> <!--marker1 path/to/file.csv-->";
-        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, doc);
+        String processedPage = metadataHandlers.applyMetadataHandlers(pageText, context);
         assertEquals("output/path/path/to/file.csv.html output/path/path/to/file.csv.html",
                 processedPage);
     }
+
+    @Test
+    public void test_up_to_date_skipped_when_not_verbose(@TempDir Path tempDir)
+            throws ArgFileParseException, IOException {
+        Path inputFile = tempDir.resolve("input/file.csv");
+        Path outputFile = tempDir.resolve("output/file.csv.html");
+        Files.createDirectories(inputFile.getParent());
+        Files.createDirectories(outputFile.getParent());
+        Files.write(inputFile, "a,b".getBytes(StandardCharsets.UTF_8));
+        Files.write(outputFile, "previous output".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(inputFile, FileTime.fromMillis(1_000_000_000L));
+        Files.setLastModifiedTime(outputFile, FileTime.fromMillis(2_000_000_000L));
+
+        String root = tempDir.toString().replace("\\", "/");
+        ArgFile argFile = parseArgumentFile("{\"documents\": [{\"input\": \"whatever.txt\"}], " +
+                "\"plugins\": {" +
+                "\"wrap-code\": {" +
+                "    \"marker1\": {\"input-root\": \"" + root + "/input/\", " +
+                "                  \"output-root\": \"" + root + "/output/\"}" +
+                "}}}", DUMMY_CLI_OPTIONS);
+
+        Document doc = argFile.getDocuments().get(0);
+        PageContext context = new PageContext(doc);
+        PageMetadataHandlersWrapper metadataHandlers =
+                PageMetadataHandlersWrapper.fromPlugins(argFile.getPlugins());
+
+        // The output is newer than the input, it is not generated again even though neither
+        // the page nor the wrapped file is verbose.
+        metadataHandlers.applyMetadataHandlers("<!--marker1 file.csv-->", context);
+        assertEquals("previous output",
+                new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+    }
 }
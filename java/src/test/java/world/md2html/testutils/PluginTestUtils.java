@@ -1,6 +1,7 @@
 package world.md2html.testutils;
 
 import world.md2html.options.model.Document;
+import world.md2html.plugins.PageContext;
 
 import java.util.List;
 
@@ -26,4 +27,8 @@ public final class PluginTestUtils {
         return Document.builder().output(outputLocation).build();
     }
 
+    public static PageContext pageContextWithOutputLocation(String outputLocation) {
+        return new PageContext(documentWithOutputLocation(outputLocation));
+    }
+
 }
@@ -0,0 +1,139 @@
+package world.md2html.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private String read(Path path) {
+        this.reads.incrementAndGet();
+        return path.getFileName().toString();
+    }
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        FileCache cache = new FileCache(1000);
+        assertEquals("a.txt", cache.get(Paths.get("a.txt"), this::read));
+        assertEquals("a.txt", cache.get(Paths.get("dir/../a.txt"), this::read));
+        assertEquals("b.txt", cache.get(Paths.get("b.txt"), this::read));
+        assertEquals(2, this.reads.get());
+        Map<String, Long> stats = cache.stats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(2L, stats.get("misses"));
+        assertEquals(2L, stats.get("entries"));
+        assertEquals(20L, stats.get("bytes"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() throws Exception {
+        // Every file name takes 10 bytes, 3 of them fit.
+        FileCache cache = new FileCache(35);
+        cache.get(Paths.get("1.txt"), this::read);
+        cache.get(Paths.get("2.txt"), this::read);
+        cache.get(Paths.get("3.txt"), this::read);
+        cache.get(Paths.get("1.txt"), this::read);
+        cache.get(Paths.get("4.txt"), this::read);
+        assertEquals(4, this.reads.get());
+        cache.get(Paths.get("1.txt"), this::read);
+        assertEquals(4, this.reads.get());
+        cache.get(Paths.get("2.txt"), this::read);
+        assertEquals(5, this.reads.get());
+        assertEquals(2L, cache.stats().get("evictions"));
+
+        cache.setBudget(0);
+        assertEquals(0L, cache.stats().get("bytes"));
+        cache.get(Paths.get("1.txt"), this::read);
+        assertEquals(6, this.reads.get());
+    }
+
+    @Test
+    public void concurrentRequestsReadOnce() throws Exception {
+        FileCache cache = new FileCache(1000);
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch readAllowed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get(Paths.get("a.txt"), path -> {
+                readStarted.countDown();
+                readAllowed.await();
+                return read(path);
+            }));
+            readStarted.await();
+            Future<String> second = executor.submit(() -> cache.get(Paths.get("a.txt"),
+                    this::read));
+            // Gives the second request time to find the running read.
+            Thread.sleep(50);
+            readAllowed.countDown();
+            assertEquals("a.txt", first.get(5, TimeUnit.SECONDS));
+            assertEquals("a.txt", second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, this.reads.get());
+    }
+
+    @Test
+    public void readErrorsNotCached() throws Exception {
+        FileCache cache = new FileCache(1000);
+        assertThrows(IOException.class, () -> cache.get(Paths.get("a.txt"), path -> {
+            throw new IOException("Failed");
+        }));
+        assertEquals("a.txt", cache.get(Paths.get("a.txt"), this::read));
+    }
+
+    @Test
+    public void revalidation() throws Exception {
+        Path file = this.tempDir.resolve("page.txt");
+        Files.write(file, "version 1".getBytes(StandardCharsets.UTF_8));
+        FileCache cache = new FileCache(1000);
+        cache.setRevalidate(true);
+        assertEquals("version 1", cache.get(file, Utils::readStringFromUtf8File));
+
+        Files.write(file, "version 22".getBytes(StandardCharsets.UTF_8));
+        assertEquals("version 22", cache.get(file, Utils::readStringFromUtf8File));
+
+        // Same size, different modification time.
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, "version 33".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+        assertEquals("version 33", cache.get(file, Utils::readStringFromUtf8File));
+
+        assertEquals("version 33", cache.get(file, Utils::readStringFromUtf8File));
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        FileCache cache = new FileCache(1000);
+        cache.get(Paths.get("dir/a.txt"), this::read);
+        cache.get(Paths.get("dir/b.txt"), this::read);
+        cache.invalidate(Collections.singleton(Paths.get("dir/a.txt").toString()));
+        cache.get(Paths.get("dir/a.txt"), this::read);
+        cache.get(Paths.get("dir/b.txt"), this::read);
+        assertEquals(3, this.reads.get());
+    }
+
+}
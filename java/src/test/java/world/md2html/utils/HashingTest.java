@@ -0,0 +1,18 @@
+package world.md2html.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HashingTest {
+
+    @Test
+    void knownValues() {
+        assertEquals(0xEF46DB3751D8E999L, Hashing.hash64(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, Hashing.hash64("a"));
+        assertEquals(0x44BC2CF5AD770999L, Hashing.hash64("abc"));
+        assertEquals(0xFBCEA83C8A378BF1L,
+                Hashing.hash64("Nobody inspects the spammish repetition"));
+    }
+
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static world.md2html.utils.JsonUtils.OBJECT_MAPPER;
 
 class JsonUtilsTest {
@@ -23,4 +24,10 @@ class JsonUtilsTest {
         assertEquals("newValue", node.get("key2").asText());
     }
 
+    @Test
+    void schemaCompiledOnce() {
+        assertSame(JsonUtils.loadJsonSchemaFromResource("args_file_schema.json"),
+                JsonUtils.loadJsonSchemaFromResource("args_file_schema.json"));
+    }
+
 }
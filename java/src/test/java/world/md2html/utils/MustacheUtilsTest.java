@@ -0,0 +1,81 @@
+package world.md2html.utils;
+
+import com.github.mustachejava.Mustache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MustacheUtilsTest {
+
+    private static final Map<String, Object> SUBSTITUTIONS =
+            Collections.singletonMap("title", "Home");
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    public void tearDown() {
+        MustacheUtils.setRevalidate(false);
+    }
+
+    @Test
+    public void legacyModeCompiledSeparately() throws Exception {
+        Path template = writeTemplate("template.html", "{{title}} ${title}");
+        assertEquals("Home ${title}",
+                execute(MustacheUtils.createCachedMustacheRenderer(template)));
+        assertEquals("Home Home",
+                execute(MustacheUtils.createCachedMustacheRendererLegacy(template)));
+        assertSame(MustacheUtils.createCachedMustacheRenderer(template),
+                MustacheUtils.createCachedMustacheRenderer(template.getParent()
+                        .resolve("dir/../template.html")));
+    }
+
+    @Test
+    public void invalidation() throws Exception {
+        Path template = writeTemplate("invalidated.html", "{{title}} 1");
+        assertEquals("Home 1", execute(MustacheUtils.createCachedMustacheRenderer(template)));
+        writeTemplate("invalidated.html", "{{title}} 2");
+        assertEquals("Home 1", execute(MustacheUtils.createCachedMustacheRenderer(template)));
+        MustacheUtils.invalidateCachedRenderers(
+                Collections.singleton(template.normalize().toString()));
+        assertEquals("Home 2", execute(MustacheUtils.createCachedMustacheRenderer(template)));
+    }
+
+    @Test
+    public void revalidation() throws Exception {
+        MustacheUtils.setRevalidate(true);
+        Path template = writeTemplate("revalidated.html", "{{title}} 1");
+        MustacheUtils.precompileTemplates(Collections.singleton(template), false);
+        Mustache mustache = MustacheUtils.createCachedMustacheRenderer(template);
+        assertSame(mustache, MustacheUtils.createCachedMustacheRenderer(template));
+
+        FileTime modified = Files.getLastModifiedTime(template);
+        writeTemplate("revalidated.html", "{{title}} 2");
+        Files.setLastModifiedTime(template, FileTime.fromMillis(modified.toMillis() + 2000));
+        assertEquals("Home 2", execute(MustacheUtils.createCachedMustacheRenderer(template)));
+    }
+
+    private Path writeTemplate(String name, String content) throws Exception {
+        Path template = this.tempDir.resolve(name);
+        Files.write(template, content.getBytes(StandardCharsets.UTF_8));
+        return template;
+    }
+
+    private static String execute(Mustache mustache) {
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, SUBSTITUTIONS);
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,76 @@
+package world.md2html.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PathRelativizerTest {
+
+    private static final String[] SEGMENTS = {"doc", "pict", "a", ".", "..", "doc"};
+
+    /**
+     * The relativization as it was implemented before the results were cached and the plain
+     * locations were compared by segments.
+     */
+    private static String relativizeWithPaths(String target, String page) {
+        Path basePath = Paths.get(page).getParent();
+        Path result;
+        if (basePath == null) {
+            result = Paths.get(target);
+        } else {
+            result = basePath.toAbsolutePath().relativize(Paths.get(target).toAbsolutePath());
+        }
+        return result.normalize().toString().replace('\\', '/');
+    }
+
+    private static List<String> locations(int maxDepth) {
+        List<String> locations = new ArrayList<>();
+        locations.add("");
+        List<String> previousLevel = locations;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            List<String> level = new ArrayList<>();
+            for (String parent : previousLevel) {
+                for (String segment : SEGMENTS) {
+                    level.add(parent.isEmpty() ? segment : parent + "/" + segment);
+                }
+            }
+            locations.addAll(level);
+            previousLevel = level;
+        }
+        return locations;
+    }
+
+    @Test
+    public void sameResultsAsPaths() {
+        List<String> directories = locations(3);
+        for (String directory : directories) {
+            String page = directory.isEmpty() ? "index.html" : directory + "/index.html";
+            for (String target : directories) {
+                String resource = target.isEmpty() ? "styles.css" : target + "/styles.css";
+                String expected = relativizeWithPaths(resource, page);
+                assertEquals(expected, PathRelativizer.relativizeResource(resource, page),
+                        resource + " from " + page);
+                // Cached.
+                assertEquals(expected, PathRelativizer.relativizeResource(resource, page));
+
+                String path = target.isEmpty() ? "" : target + "/";
+                assertEquals(relativizeWithPaths(path, page),
+                        PathRelativizer.relativizePath(path, page), path + " from " + page);
+            }
+        }
+    }
+
+    @Test
+    public void absoluteLocations() {
+        assertEquals(relativizeWithPaths("/doc/styles.css", "index.html"),
+                PathRelativizer.relativizeResource("/doc/styles.css", "index.html"));
+        assertEquals(relativizeWithPaths("doc/styles.css", "/index.html"),
+                PathRelativizer.relativizeResource("doc/styles.css", "/index.html"));
+    }
+
+}
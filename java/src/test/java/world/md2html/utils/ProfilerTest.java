@@ -0,0 +1,87 @@
+package world.md2html.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfilerTest {
+
+    @AfterEach
+    public void tearDown() {
+        Profiler.stop();
+    }
+
+    @Test
+    public void nestedStagesAreExclusive() throws Exception {
+        Profiler.start();
+        try (Profiler.Measurement ignored = Profiler.measure("parse-arguments")) {
+            try (Profiler.Measurement ignored1 = Profiler.measure("glob-expansion")) {
+                Thread.sleep(5);
+            }
+        }
+        for (String page : new String[] {"a.html", "b.html"}) {
+            try (Profiler.Measurement ignored = Profiler.measurePage(page, "render-page")) {
+                try (Profiler.Measurement ignored1 = Profiler.measure("template")) {
+                    Thread.sleep(page.equals("b.html") ? 20 : 5);
+                }
+            }
+        }
+        Map<String, Object> report = Profiler.stop().report();
+
+        assertEquals(2, report.get("page-count"));
+        assertEquals("[glob-expansion, parse-arguments]", sortedKeys(report.get("session")));
+        assertEquals("[render-page, template]", sortedKeys(report.get("stages")));
+
+        List<Map<String, Object>> slowestPages = list(report.get("slowest-pages"));
+        assertEquals("b.html", slowestPages.get(0).get("page"));
+        assertEquals("a.html", slowestPages.get(1).get("page"));
+
+        Map<String, Object> page = list(report.get("pages")).get(1);
+        Map<String, Map<String, Object>> stages = map(page.get("stages"));
+        double renderPageTime = (Double) stages.get("render-page").get("time-ms");
+        double templateTime = (Double) stages.get("template").get("time-ms");
+        assertTrue(templateTime >= 20);
+        assertTrue(renderPageTime < 20);
+        assertEquals((Double) page.get("time-ms"), renderPageTime + templateTime, 0.01);
+        assertEquals(1L, stages.get("template").get("count"));
+    }
+
+    @Test
+    public void counters() {
+        Profiler.registerCounters("test-cache", () -> Collections.singletonMap("hits", 5L));
+        Profiler.start();
+        Map<String, Object> report = Profiler.stop().report();
+        Map<String, Map<String, Long>> counters = map(report.get("counters"));
+        assertEquals(5L, counters.get("test-cache").get("hits"));
+    }
+
+    @Test
+    public void notStarted() {
+        try (Profiler.Measurement ignored = Profiler.measurePage("a.html", "read")) {
+            assertNull(Profiler.stop());
+        }
+    }
+
+    private static String sortedKeys(Object map) {
+        return new TreeSet<>(map(map).keySet()).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<String, T> map(Object map) {
+        return (Map<String, T>) map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Object list) {
+        return (List<Map<String, Object>>) list;
+    }
+
+}
@@ -0,0 +1,40 @@
+package world.md2html.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TextSegmentsTest {
+
+    @Test
+    public void nestedSegments() {
+        TextSegments inner = new TextSegments().append("<a>").append("[text]", 1, 5)
+                .append("</a>");
+        TextSegments outer = new TextSegments().append("before ", 0, 7).append(inner)
+                .append("", 0, 0).append(inner, 3, 7).append(" after");
+        String expected = "before <a>text</a>text after";
+        assertEquals(expected.length(), outer.length());
+        String result = outer.toString();
+        assertEquals(expected, result);
+        assertSame(result, outer.toString());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.charAt(i), outer.charAt(i));
+            for (int j = i; j <= expected.length(); j++) {
+                assertEquals(expected.substring(i, j), outer.subSequence(i, j).toString());
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> outer.charAt(expected.length()));
+    }
+
+    @Test
+    public void appendingInvalidatesString() {
+        TextSegments segments = new TextSegments().append("a");
+        assertEquals("a", segments.toString());
+        segments.append("b");
+        assertEquals("ab", segments.toString());
+        assertEquals("", new TextSegments().toString());
+    }
+
+}